@@ -0,0 +1,88 @@
+package com.android.sample.exoplayer;
+
+import android.content.res.AssetManager;
+
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP server standing in for a remote media host. It serves the bundled assets with
+ * plain 200 responses and counts the requests it answered.
+ */
+final class AssetHttpServer implements Runnable {
+
+    private final AssetManager mAssetManager;
+    private final ServerSocket mServerSocket;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    AssetHttpServer(AssetManager assetManager) throws IOException {
+        mAssetManager = assetManager;
+        mServerSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(this, "AssetHttpServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param asset The asset file name.
+     * @return The URL serving the asset.
+     */
+    String getUrl(String asset) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/" + asset;
+    }
+
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    void shutdown() throws IOException {
+        mServerSocket.close();
+    }
+
+    @Override
+    public void run() {
+        while (!mServerSocket.isClosed()) {
+            try (Socket socket = mServerSocket.accept()) {
+                serve(socket);
+            } catch (IOException e) {
+                // Closed by shutdown() or by the client.
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+        String requestLine = reader.readLine();
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && !line.isEmpty());
+        if (requestLine == null) {
+            return;
+        }
+        mRequestCount.incrementAndGet();
+        String asset = requestLine.split(" ")[1].substring(1);
+        OutputStream outputStream = socket.getOutputStream();
+        byte[] body;
+        try (InputStream inputStream = mAssetManager.open(asset)) {
+            body = Util.toByteArray(inputStream);
+        } catch (IOException e) {
+            outputStream.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                    .getBytes("US-ASCII"));
+            return;
+        }
+        outputStream.write(("HTTP/1.1 200 OK\r\nContent-Type: audio/mpeg\r\nContent-Length: "
+                + body.length + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+        outputStream.write(body);
+        outputStream.flush();
+    }
+}
@@ -0,0 +1,89 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class MediaCacheTest {
+
+    private static final String ASSET = "hungarian_dance.mp3";
+    private Context mContext;
+    private File mCacheDirectory;
+    private AssetHttpServer mServer;
+    private MediaCache mMediaCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mCacheDirectory = new File(mContext.getCacheDir(), "media_cache_test");
+        Util.recursiveDelete(mCacheDirectory);
+        mServer = new AssetHttpServer(mContext.getAssets());
+        mMediaCache = new MediaCache(mContext, mCacheDirectory, 64L * 1024 * 1024, "MediaCacheTest");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mMediaCache.release();
+        mServer.shutdown();
+        Util.recursiveDelete(mCacheDirectory);
+    }
+
+    @Test
+    public void replay_isServedFromCache() throws IOException {
+        byte[] expected = readAsset();
+        Uri uri = Uri.parse(mServer.getUrl(ASSET));
+
+        assertArrayEquals(expected, read(uri));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(expected.length, mMediaCache.getMissBytes());
+        assertEquals(0, mMediaCache.getHitBytes());
+
+        assertArrayEquals(expected, read(uri));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(expected.length, mMediaCache.getMissBytes());
+        assertEquals(expected.length, mMediaCache.getHitBytes());
+        assertTrue(mMediaCache.getCacheSpace() >= expected.length);
+    }
+
+    @Test
+    public void assets_bypassCache() throws IOException {
+        byte[] expected = readAsset();
+
+        assertArrayEquals(expected, read(Uri.parse("asset:///" + ASSET)));
+        assertEquals(0, mMediaCache.getCacheSpace());
+        assertEquals(0, mMediaCache.getMissBytes());
+    }
+
+    private byte[] read(Uri uri) throws IOException {
+        try (InputStream inputStream = new DataSourceInputStream(
+                mMediaCache.getDataSourceFactory().createDataSource(), new DataSpec(uri))) {
+            return Util.toByteArray(inputStream);
+        }
+    }
+
+    private byte[] readAsset() throws IOException {
+        try (InputStream inputStream = mContext.getAssets().open(ASSET)) {
+            return Util.toByteArray(inputStream);
+        }
+    }
+}
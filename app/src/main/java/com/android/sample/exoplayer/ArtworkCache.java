@@ -0,0 +1,148 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Composer portraits shared by the service and the activity. Portraits are decoded at the size
+ * they are displayed at and kept in an LRU cache bounded by their size in bytes.
+ */
+class ArtworkCache {
+
+    private static final int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+    private static final int MEMORY_CLASS_FRACTION = 16;
+    private static ArtworkCache sInstance;
+    private final Context mContext;
+    private final Map<String, Integer> mResourceIDs = new HashMap<>();
+    private final LruCache<Long, Bitmap> mBitmaps;
+    private final int mMaxBytes;
+    private final int mNotificationWidth;
+    private final int mNotificationHeight;
+
+    private ArtworkCache(Context context) {
+        mContext = context;
+        mMaxBytes = (int) Math.min(MAX_CACHE_BYTES,
+                Runtime.getRuntime().maxMemory() / MEMORY_CLASS_FRACTION);
+        mBitmaps = new LruCache<Long, Bitmap>(mMaxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        Resources resources = context.getResources();
+        mNotificationWidth = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        mNotificationHeight = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+    }
+
+    public synchronized static ArtworkCache getInstance(Context context) {
+        if (sInstance == null) {
+            //Use application Context to prevent leak.
+            sInstance = new ArtworkCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Gets portrait of the composer for a sample, sized for a notification large icon.
+     * @param sample The sample object.
+     * @return The portrait Bitmap.
+     */
+    Bitmap getNotificationArt(Sample sample) {
+        return getComposerArt(sample, mNotificationWidth, mNotificationHeight);
+    }
+
+    /**
+     * Gets portrait of the composer for a sample, decoded no larger than needed for the
+     * requested size.
+     * @param sample The sample object.
+     * @param width  The width the portrait is displayed at, in pixels.
+     * @param height The height the portrait is displayed at, in pixels.
+     * @return The portrait Bitmap.
+     */
+    Bitmap getComposerArt(Sample sample, int width, int height) {
+        int resID = getResourceID(sample.getAlbumArtID());
+        long key = ((long) resID << 32) | ((width & 0xFFFFL) << 16) | (height & 0xFFFFL);
+        Bitmap bitmap = mBitmaps.get(key);
+        if (bitmap == null) {
+            Resources resources = mContext.getResources();
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(resources, resID, options);
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                    width, height);
+            options.inJustDecodeBounds = false;
+            bitmap = BitmapFactory.decodeResource(resources, resID, options);
+            if (bitmap != null) {
+                mBitmaps.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Shrinks the cache to a fraction of its full size or grows it back, the least recently used
+     * portraits are evicted first.
+     * @param divisor The fraction of the full size to keep, 1 for the full size.
+     * @return The bytes evicted.
+     */
+    long setSizeDivisor(int divisor) {
+        int size = mBitmaps.size();
+        mBitmaps.resize(Math.max(1, mMaxBytes / divisor));
+        return size - mBitmaps.size();
+    }
+
+    /**
+     * Evicts the portraits decoded at any size other than the notification icon's. Only the
+     * activity displays those, and it decodes them again when shown.
+     * @return The bytes evicted.
+     */
+    long evictScreenArt() {
+        long evicted = 0;
+        for (Map.Entry<Long, Bitmap> entry : mBitmaps.snapshot().entrySet()) {
+            long key = entry.getKey();
+            if (((key >>> 16) & 0xFFFFL) != mNotificationWidth
+                    || (key & 0xFFFFL) != mNotificationHeight) {
+                if (mBitmaps.remove(key) != null) {
+                    evicted += entry.getValue().getByteCount();
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Memoizes the reflective drawable lookup of an album art ID.
+     * @param albumArtID The album art ID from the catalog.
+     * @return The drawable resource ID, or 0 if there is none.
+     */
+    private synchronized int getResourceID(String albumArtID) {
+        Integer resID = mResourceIDs.get(albumArtID);
+        if (resID == null) {
+            resID = mContext.getResources().getIdentifier(albumArtID, "drawable",
+                    mContext.getPackageName());
+            mResourceIDs.put(albumArtID, resID);
+        }
+        return resID;
+    }
+
+    /**
+     * Calculates the largest power of two sample size that keeps both dimensions at least as
+     * large as requested.
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
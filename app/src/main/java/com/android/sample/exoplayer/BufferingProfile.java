@@ -0,0 +1,76 @@
+package com.android.sample.exoplayer;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+/**
+ * Named buffering configurations for the player's load control. What each profile actually used
+ * is kept per service by {@link BufferingUsage}.
+ */
+enum BufferingProfile {
+
+    /**
+     * Small buffers for low RAM devices playing local or reliable media.
+     */
+    LOW_MEMORY(5_000, 15_000, 1_000, 2_000, 1024 * 1024, 0),
+
+    /**
+     * ExoPlayer's default durations with an explicit byte target sized for audio.
+     */
+    BALANCED(15_000, 50_000, 2_500, 5_000, 4 * 1024 * 1024, 10_000),
+
+    /**
+     * Long buffers that ride out flaky networks.
+     */
+    AGGRESSIVE(60_000, 180_000, 2_500, 5_000, 16 * 1024 * 1024, 30_000);
+
+    private final int mMinBufferMs;
+    private final int mMaxBufferMs;
+    private final int mBufferForPlaybackMs;
+    private final int mBufferForPlaybackAfterRebufferMs;
+    private final int mTargetBufferBytes;
+    private final int mBackBufferMs;
+
+    BufferingProfile(int minBufferMs, int maxBufferMs, int bufferForPlaybackMs,
+                     int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, int backBufferMs) {
+        mMinBufferMs = minBufferMs;
+        mMaxBufferMs = maxBufferMs;
+        mBufferForPlaybackMs = bufferForPlaybackMs;
+        mBufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        mTargetBufferBytes = targetBufferBytes;
+        mBackBufferMs = backBufferMs;
+    }
+
+    /**
+     * @param context The application context.
+     * @return The profile suited to the device.
+     */
+    static BufferingProfile getDefault(Context context) {
+        ActivityManager activityManager = (ActivityManager)
+                context.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager != null && activityManager.isLowRamDevice() ? LOW_MEMORY : BALANCED;
+    }
+
+    /**
+     * Creates a load control with this profile's thresholds.
+     * @param allocator The allocator, shared between profiles so they can be switched.
+     * @return The load control.
+     */
+    DefaultLoadControl createLoadControl(DefaultAllocator allocator) {
+        return new DefaultLoadControl.Builder()
+                .setAllocator(allocator)
+                .setBufferDurationsMs(mMinBufferMs, mMaxBufferMs, mBufferForPlaybackMs,
+                        mBufferForPlaybackAfterRebufferMs)
+                .setTargetBufferBytes(mTargetBufferBytes)
+                .setPrioritizeTimeOverSizeThresholds(this == AGGRESSIVE)
+                .setBackBuffer(mBackBufferMs, true)
+                .createDefaultLoadControl();
+    }
+
+    int getTargetBufferBytes() {
+        return mTargetBufferBytes;
+    }
+}
@@ -0,0 +1,36 @@
+package com.android.sample.exoplayer;
+
+/**
+ * How much of the allocator each {@link BufferingProfile} used while it was active, kept by the
+ * service that owns the player. Recorded on the playback thread and read from any thread.
+ */
+final class BufferingUsage {
+
+    private final long[] mAllocatedBytes = new long[BufferingProfile.values().length];
+    private final long[] mPeakAllocatedBytes = new long[BufferingProfile.values().length];
+
+    /**
+     * Records the allocator usage observed while a profile was active.
+     * @param profile        The active profile.
+     * @param allocatedBytes The bytes currently allocated.
+     */
+    synchronized void record(BufferingProfile profile, long allocatedBytes) {
+        mAllocatedBytes[profile.ordinal()] = allocatedBytes;
+        mPeakAllocatedBytes[profile.ordinal()] =
+                Math.max(mPeakAllocatedBytes[profile.ordinal()], allocatedBytes);
+    }
+
+    /**
+     * @return The bytes allocated when the profile was last active.
+     */
+    synchronized long getAllocatedBytes(BufferingProfile profile) {
+        return mAllocatedBytes[profile.ordinal()];
+    }
+
+    /**
+     * @return The most bytes allocated at once while the profile was active.
+     */
+    synchronized long getPeakAllocatedBytes(BufferingProfile profile) {
+        return mPeakAllocatedBytes[profile.ordinal()];
+    }
+}
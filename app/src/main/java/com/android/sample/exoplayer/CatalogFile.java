@@ -0,0 +1,239 @@
+package com.android.sample.exoplayer;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Precompiled binary form of the sample catalog, memory-mapped read-only so that opening it costs
+ * the same regardless of the number of samples. The file holds a header, one fixed-width record
+ * per sample, a {@link SampleIdIndex} table and a string table in which every distinct string,
+ * such as a composer name shared by many samples, is stored once. {@link Sample} objects are only
+ * created when a record is asked for.
+ */
+final class CatalogFile {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x45584354;
+    private static final int VERSION = 1;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_COUNT = 8;
+    private static final int OFFSET_SOURCE_STAMP = 12;
+    private static final int OFFSET_INDEX_CAPACITY = 20;
+    private static final int OFFSET_INDEX = 24;
+    private static final int OFFSET_STRINGS = 28;
+    private static final int OFFSET_STRINGS_LENGTH = 32;
+    private static final int HEADER_SIZE = 36;
+    private static final int RECORD_SIZE = 20;
+    private static final int FIELD_ID = 0;
+    private static final int FIELD_COMPOSER = 4;
+    private static final int FIELD_TITLE = 8;
+    private static final int FIELD_URI = 12;
+    private static final int FIELD_ALBUM_ART_ID = 16;
+    private static final int NO_STRING = -1;
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final int mIndexCapacity;
+    private final int mIndexOffset;
+    private final int mStringsOffset;
+
+    private CatalogFile(ByteBuffer buffer) {
+        mBuffer = buffer;
+        mCount = buffer.getInt(OFFSET_COUNT);
+        mIndexCapacity = buffer.getInt(OFFSET_INDEX_CAPACITY);
+        mIndexOffset = buffer.getInt(OFFSET_INDEX);
+        mStringsOffset = buffer.getInt(OFFSET_STRINGS);
+    }
+
+    /**
+     * Maps a catalog file.
+     * @param file        The catalog file.
+     * @param sourceStamp The stamp of the source the file must have been compiled from.
+     * @return The catalog, or null if the file is missing, stale or malformed.
+     * @throws IOException Exception thrown if the file exists but can't be mapped.
+     */
+    @Nullable
+    static CatalogFile open(File file, long sourceStamp) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION
+                || buffer.getLong(OFFSET_SOURCE_STAMP) != sourceStamp) {
+            return null;
+        }
+        long end = (long) buffer.getInt(OFFSET_STRINGS) + buffer.getInt(OFFSET_STRINGS_LENGTH);
+        if (end != buffer.capacity()) {
+            // Truncated, files are renamed into place only once they are complete.
+            return null;
+        }
+        return new CatalogFile(buffer);
+    }
+
+    /**
+     * @return The number of samples.
+     */
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * @param index The catalog position.
+     * @return The ID of the sample at the position, read without creating the sample.
+     */
+    int getSampleID(int index) {
+        return mBuffer.getInt(recordOffset(index) + FIELD_ID);
+    }
+
+    /**
+     * Creates a view of a record. Every call creates a new object.
+     * @param index The catalog position.
+     * @return The sample at the position.
+     */
+    Sample getSample(int index) {
+        int record = recordOffset(index);
+        return new Sample(mBuffer.getInt(record + FIELD_ID),
+                getString(mBuffer.getInt(record + FIELD_COMPOSER)),
+                getString(mBuffer.getInt(record + FIELD_TITLE)),
+                getString(mBuffer.getInt(record + FIELD_URI)),
+                getString(mBuffer.getInt(record + FIELD_ALBUM_ART_ID)));
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return The catalog position, or {@link SampleIdIndex#NOT_FOUND} if the ID is unknown.
+     */
+    int indexOf(int sampleID) {
+        return SampleIdIndex.get(mBuffer, mIndexOffset, mIndexCapacity, sampleID);
+    }
+
+    private int recordOffset(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mCount);
+        }
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private String getString(int offset) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        // Absolute reads only, so views can be created on any thread.
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(mStringsOffset + offset);
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Collects samples in catalog order and writes them as a catalog file.
+     */
+    static final class Writer {
+
+        private final Map<String, Integer> mStringOffsets = new HashMap<>();
+        private byte[] mStrings = new byte[4096];
+        private int mStringsLength;
+        private int[] mRecords = new int[64 * RECORD_SIZE / 4];
+        private int mCount;
+
+        /**
+         * Appends a sample.
+         * @param sample The sample.
+         */
+        void add(Sample sample) {
+            int field = mCount * RECORD_SIZE / 4;
+            if (field + RECORD_SIZE / 4 > mRecords.length) {
+                mRecords = Arrays.copyOf(mRecords, mRecords.length * 2);
+            }
+            mRecords[field] = sample.getSampleID();
+            mRecords[field + 1] = addString(sample.getComposer());
+            mRecords[field + 2] = addString(sample.getTitle());
+            mRecords[field + 3] = addString(sample.getUri());
+            mRecords[field + 4] = addString(sample.getAlbumArtID());
+            mCount++;
+        }
+
+        /**
+         * Writes the catalog. The file is written next to its destination and renamed into place,
+         * so readers never see a partial file.
+         * @param file        The destination file.
+         * @param sourceStamp The stamp of the source the samples were read from.
+         * @throws IOException Exception thrown if the file can't be written.
+         */
+        void write(File file, long sourceStamp) throws IOException {
+            SampleIdIndex index = new SampleIdIndex(mCount);
+            for (int i = 0; i < mCount; i++) {
+                index.put(mRecords[i * RECORD_SIZE / 4], i);
+            }
+            int indexOffset = HEADER_SIZE + mCount * RECORD_SIZE;
+            int stringsOffset = indexOffset + index.capacity() * 8;
+            ByteBuffer buffer = ByteBuffer.allocate(stringsOffset + mStringsLength);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(mCount)
+                    .putLong(sourceStamp)
+                    .putInt(index.capacity())
+                    .putInt(indexOffset)
+                    .putInt(stringsOffset)
+                    .putInt(mStringsLength);
+            for (int i = 0; i < mCount * RECORD_SIZE / 4; i++) {
+                buffer.putInt(mRecords[i]);
+            }
+            index.writeTo(buffer);
+            buffer.put(mStrings, 0, mStringsLength);
+            buffer.flip();
+
+            File tempFile = new File(file.getPath() + ".tmp");
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(tempFile, "rw")) {
+                randomAccessFile.setLength(0);
+                FileChannel channel = randomAccessFile.getChannel();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Unable to rename " + tempFile + " to " + file);
+            }
+        }
+
+        /**
+         * @return The offset of the string in the string table, stored once per distinct value.
+         */
+        private int addString(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer offset = mStringOffsets.get(value);
+            if (offset != null) {
+                return offset;
+            }
+            byte[] bytes = value.getBytes(UTF_8);
+            int required = mStringsLength + 4 + bytes.length;
+            if (required > mStrings.length) {
+                mStrings = Arrays.copyOf(mStrings, Math.max(required, mStrings.length * 2));
+            }
+            ByteBuffer.wrap(mStrings, mStringsLength, 4).putInt(bytes.length);
+            System.arraycopy(bytes, 0, mStrings, mStringsLength + 4, bytes.length);
+            offset = mStringsLength;
+            mStringsLength = required;
+            mStringOffsets.put(value, offset);
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.android.sample.exoplayer;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe store for the playback resume point. The position is kept as a fixed-size binary
+ * record in a small memory-mapped file with two slots that are written alternately, each guarded
+ * by a sequence number and a CRC, so a torn write can only ever lose the newest checkpoint.
+ */
+final class CheckpointStore {
+
+    private static final String TAG = CheckpointStore.class.getSimpleName();
+    private static final int MAGIC = 0x45584350;
+    private static final int SLOT_SIZE = 64;
+    private static final int SLOT_COUNT = 2;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_SEQUENCE = 4;
+    private static final int OFFSET_WINDOW_INDEX = 12;
+    private static final int OFFSET_POSITION = 16;
+    private static final int OFFSET_SAMPLE_ID = 24;
+    private static final int OFFSET_TIMESTAMP = 28;
+    private static final int OFFSET_CRC = 36;
+    private final File mFile;
+    private final Executor mExecutor;
+    private final AtomicReference<MainPosition> mPending = new AtomicReference<>();
+    private final byte[] mSlot = new byte[SLOT_SIZE];
+    private final CRC32 mCrc = new CRC32();
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            MainPosition position = mPending.getAndSet(null);
+            if (position != null) {
+                writeNow(position);
+            }
+        }
+    };
+    private MappedByteBuffer mBuffer;
+    private long mSequence;
+
+    /**
+     * @param file     The checkpoint file.
+     * @param executor The executor writes are performed on.
+     */
+    CheckpointStore(File file, Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+    }
+
+    /**
+     * Queues a checkpoint. Checkpoints queued while a write is pending replace each other, so
+     * only the newest one is written.
+     * @param position The position to store.
+     */
+    void write(MainPosition position) {
+        if (mPending.getAndSet(position) == null) {
+            mExecutor.execute(mFlush);
+        }
+    }
+
+    /**
+     * Reads the newest valid checkpoint. Performs disk I/O, so it should not be called on the
+     * main thread.
+     * @return The stored position, or null if there is no valid checkpoint.
+     */
+    synchronized MainPosition read() {
+        if (!open()) {
+            return null;
+        }
+        MainPosition newest = null;
+        long newestSequence = Long.MIN_VALUE;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            ByteBuffer record = readSlot(slot);
+            if (record != null && record.getLong(OFFSET_SEQUENCE) > newestSequence) {
+                newestSequence = record.getLong(OFFSET_SEQUENCE);
+                newest = new MainPosition(record.getInt(OFFSET_WINDOW_INDEX),
+                        record.getLong(OFFSET_POSITION), record.getInt(OFFSET_SAMPLE_ID),
+                        record.getLong(OFFSET_TIMESTAMP));
+            }
+        }
+        return newest;
+    }
+
+    private synchronized void writeNow(MainPosition position) {
+        if (!open()) {
+            return;
+        }
+        mSequence++;
+        ByteBuffer record = ByteBuffer.wrap(mSlot);
+        record.putInt(OFFSET_MAGIC, MAGIC);
+        record.putLong(OFFSET_SEQUENCE, mSequence);
+        record.putInt(OFFSET_WINDOW_INDEX, position.getCurrentWindowIndex());
+        record.putLong(OFFSET_POSITION, position.getCurrentPosition());
+        record.putInt(OFFSET_SAMPLE_ID, position.getSampleID());
+        record.putLong(OFFSET_TIMESTAMP, position.getTimestamp());
+        mCrc.reset();
+        mCrc.update(mSlot, 0, OFFSET_CRC);
+        record.putInt(OFFSET_CRC, (int) mCrc.getValue());
+
+        // Overwrite the older slot, the newer one stays intact until this write has completed.
+        mBuffer.position((int) (mSequence % SLOT_COUNT) * SLOT_SIZE);
+        mBuffer.put(mSlot);
+        mBuffer.force();
+    }
+
+    /**
+     * @return The record in a slot, or null if the slot is empty or corrupt.
+     */
+    private ByteBuffer readSlot(int slot) {
+        mBuffer.position(slot * SLOT_SIZE);
+        mBuffer.get(mSlot);
+        ByteBuffer record = ByteBuffer.wrap(mSlot.clone());
+        mCrc.reset();
+        mCrc.update(mSlot, 0, OFFSET_CRC);
+        if (record.getInt(OFFSET_MAGIC) != MAGIC || record.getInt(OFFSET_CRC) != (int) mCrc.getValue()) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Maps the checkpoint file on first use and recovers the sequence number.
+     * @return true if the file is mapped.
+     */
+    private boolean open() {
+        if (mBuffer != null) {
+            return true;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            mBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SLOT_SIZE * SLOT_COUNT);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to map " + mFile, e);
+            return false;
+        }
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            ByteBuffer record = readSlot(slot);
+            if (record != null) {
+                mSequence = Math.max(mSequence, record.getLong(OFFSET_SEQUENCE));
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+package com.android.sample.exoplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.BaseAudioProcessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Applies a gain to 16-bit PCM audio. The gain is set from any thread and reached with a short
+ * ramp, so changing it doesn't click. Samples are clipped at full scale, gains are limited by
+ * the analysis so that this only happens for peaks it didn't see. At unity gain the audio is
+ * copied unchanged.
+ */
+final class GainAudioProcessor extends BaseAudioProcessor {
+
+    private static final int RAMP_MS = 20;
+    private volatile float mTargetGain = 1;
+    private volatile boolean mEnabled = true;
+    // Only accessed on the playback thread.
+    private float mGain = 1;
+    private float mRampTarget = 1;
+    private float mRampStep;
+    private int mRampFrames;
+
+    /**
+     * @param gainDb The gain to apply from now on, in dB.
+     */
+    void setGainDb(float gainDb) {
+        mTargetGain = (float) Math.pow(10, gainDb / 20);
+    }
+
+    /**
+     * @param enabled false to play at unity gain regardless of the set gain.
+     */
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    @Override
+    protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
+            throws UnhandledAudioFormatException {
+        if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+            throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        mRampFrames = Math.max(1, inputAudioFormat.sampleRate * RAMP_MS / 1000);
+        return inputAudioFormat;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        int position = inputBuffer.position();
+        int limit = inputBuffer.limit();
+        ByteBuffer buffer = replaceOutputBuffer(limit - position);
+        float target = mEnabled ? mTargetGain : 1;
+        if (target != mRampTarget) {
+            mRampTarget = target;
+            mRampStep = (target - mGain) / mRampFrames;
+        }
+        if (mGain == mRampTarget && mGain == 1) {
+            buffer.put(inputBuffer);
+        } else {
+            int channelCount = inputAudioFormat.channelCount;
+            while (inputBuffer.position() < limit) {
+                if (mGain != mRampTarget) {
+                    mGain += mRampStep;
+                    if (mRampStep > 0 ? mGain > mRampTarget : mGain < mRampTarget) {
+                        mGain = mRampTarget;
+                    }
+                }
+                for (int channel = 0; channel < channelCount; channel++) {
+                    int sample = Math.round(inputBuffer.getShort() * mGain);
+                    buffer.putShort((short) Math.max(Short.MIN_VALUE,
+                            Math.min(Short.MAX_VALUE, sample)));
+                }
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    protected void onFlush() {
+        // Audio after a flush is not continuous with the audio before, no need to ramp.
+        mGain = mRampTarget;
+    }
+
+    @Override
+    protected void onReset() {
+        // The target gain is kept, it belongs to the current sample rather than the audio sink.
+        mGain = 1;
+        mRampTarget = 1;
+        mRampStep = 0;
+    }
+}
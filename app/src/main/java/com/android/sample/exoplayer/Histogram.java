@@ -0,0 +1,95 @@
+package com.android.sample.exoplayer;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram with fixed bucket bounds. Values may be added from one thread and read from any
+ * other without locking, every update is a few atomic increments.
+ */
+final class Histogram {
+
+    /**
+     * Bucket bounds suited to latencies in milliseconds.
+     */
+    static final long[] LATENCY_BOUNDS_MS =
+            {10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000};
+
+    private final String mUnit;
+    private final long[] mUpperBounds;
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * @param unit        The unit of the values, used in {@link #toString()}.
+     * @param upperBounds The inclusive upper bounds of the buckets in ascending order. Values above
+     *                    the last bound go into an overflow bucket.
+     */
+    Histogram(String unit, long[] upperBounds) {
+        mUnit = unit;
+        mUpperBounds = upperBounds.clone();
+        mCounts = new AtomicLongArray(upperBounds.length + 1);
+    }
+
+    void add(long value) {
+        int bucket = 0;
+        while (bucket < mUpperBounds.length && value > mUpperBounds[bucket]) {
+            bucket++;
+        }
+        mCounts.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    long getCount() {
+        return mCount.get();
+    }
+
+    long getSum() {
+        return mSum.get();
+    }
+
+    long getMax() {
+        return mMax.get();
+    }
+
+    long getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mSum.get() / count;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls into.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The estimate, or {@link #getMax()} if it falls into the overflow bucket.
+     */
+    long getPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < mUpperBounds.length; bucket++) {
+            seen += mCounts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(mUpperBounds[bucket], mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n=%d mean=%d%s p50<=%d%s p95<=%d%s max=%d%s",
+                getCount(), getMean(), mUnit, getPercentile(50), mUnit, getPercentile(95), mUnit,
+                getMax(), mUnit);
+    }
+}
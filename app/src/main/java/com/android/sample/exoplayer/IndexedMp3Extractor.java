@@ -0,0 +1,122 @@
+package com.android.sample.exoplayer;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+
+import java.io.IOException;
+
+/**
+ * {@link Mp3Extractor} seeking with an {@link Mp3SeekIndex}. The extractor's own seek map is
+ * replaced by the index, so seeks start at the frame the index names. The extractor still derives
+ * the time of the first frame after a seek from its own estimate, so sample times are shifted to
+ * the time the index has for that frame.
+ */
+final class IndexedMp3Extractor implements Extractor {
+
+    private final Mp3Extractor mExtractor = new Mp3Extractor();
+    private final Mp3SeekIndex mIndex;
+    // Only accessed on the loading thread.
+    private long mPendingTimeUs = C.TIME_UNSET;
+    private long mOffsetUs;
+
+    /**
+     * @param index The index of the media the extractor reads.
+     */
+    IndexedMp3Extractor(Mp3SeekIndex index) {
+        mIndex = index;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+        return mExtractor.sniff(input);
+    }
+
+    @Override
+    public void init(final ExtractorOutput output) {
+        mExtractor.init(new ExtractorOutput() {
+            @Override
+            public TrackOutput track(int id, int type) {
+                return new OffsetTrackOutput(output.track(id, type));
+            }
+
+            @Override
+            public void endTracks() {
+                output.endTracks();
+            }
+
+            @Override
+            public void seekMap(SeekMap seekMap) {
+                output.seekMap(mIndex);
+            }
+        });
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition)
+            throws IOException, InterruptedException {
+        return mExtractor.read(input, seekPosition);
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {
+        mExtractor.seek(position, timeUs);
+        mPendingTimeUs = mIndex.getTimeUs(position);
+        if (mPendingTimeUs == C.TIME_UNSET) {
+            // A restart from the beginning, where the extractor's times are exact.
+            mOffsetUs = 0;
+        }
+    }
+
+    @Override
+    public void release() {
+        mExtractor.release();
+    }
+
+    /**
+     * Shifts sample times by the offset determined at the first sample after a seek.
+     */
+    private final class OffsetTrackOutput implements TrackOutput {
+
+        private final TrackOutput mOutput;
+
+        OffsetTrackOutput(TrackOutput output) {
+            mOutput = output;
+        }
+
+        @Override
+        public void format(Format format) {
+            mOutput.format(format);
+        }
+
+        @Override
+        public int sampleData(ExtractorInput input, int length, boolean allowEndOfInput)
+                throws IOException, InterruptedException {
+            return mOutput.sampleData(input, length, allowEndOfInput);
+        }
+
+        @Override
+        public void sampleData(ParsableByteArray data, int length) {
+            mOutput.sampleData(data, length);
+        }
+
+        @Override
+        public void sampleMetadata(long timeUs, int flags, int size, int offset,
+                                   @Nullable CryptoData cryptoData) {
+            if (mPendingTimeUs != C.TIME_UNSET) {
+                mOffsetUs = mPendingTimeUs - timeUs;
+                mPendingTimeUs = C.TIME_UNSET;
+            }
+            mOutput.sampleMetadata(timeUs + mOffsetUs, flags, size, offset, cryptoData);
+        }
+    }
+}
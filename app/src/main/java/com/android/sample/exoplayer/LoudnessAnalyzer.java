@@ -0,0 +1,151 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes catalog samples in the background and stores the gain that brings each of them to a
+ * common loudness in a {@link LoudnessStore}. At most {@link #MAX_WORKERS} workers walk the
+ * catalog from a start position, so the samples around the playhead are analyzed first, and skip
+ * samples that have already been analyzed. Decoding competes with playback and the UI for the
+ * cores, so a core is always left for them. Only local media is analyzed, see
+ * {@link PcmDecoder}, remote samples keep unity gain.
+ */
+final class LoudnessAnalyzer {
+
+    private static final String TAG = LoudnessAnalyzer.class.getSimpleName();
+    // ReplayGain 2.0 reference level.
+    private static final double TARGET_LUFS = -18;
+    private static final float MIN_GAIN_DB = -24;
+    private static final float MAX_GAIN_DB = 12;
+    private static final int MAX_WORKERS = 2;
+    private final PcmDecoder mDecoder;
+    private final LoudnessStore mStore;
+    private final int mWorkerCount =
+            Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(mWorkerCount);
+    private final AtomicInteger mCursor = new AtomicInteger();
+    private final AtomicInteger mAnalyzedCount = new AtomicInteger();
+    private volatile boolean mCancelled;
+
+    /**
+     * @param context The application context.
+     * @param store   The store receiving the gains.
+     */
+    LoudnessAnalyzer(Context context, LoudnessStore store) {
+        mDecoder = new PcmDecoder(context);
+        mStore = store;
+    }
+
+    /**
+     * Starts analyzing the catalog. Must only be called once.
+     * @param catalog    The catalog.
+     * @param startIndex The catalog position to start from.
+     */
+    void start(final SampleCatalog catalog, final int startIndex) {
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                int size = catalog.size();
+                int offset;
+                while (!mCancelled && (offset = mCursor.getAndIncrement()) < size) {
+                    Sample sample = catalog.getSampleAt((startIndex + offset) % size);
+                    if (!mStore.contains(sample)) {
+                        analyze(sample);
+                    }
+                }
+            }
+        };
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mStore.load();
+                for (int i = 1; i < mWorkerCount; i++) {
+                    mExecutor.execute(worker);
+                }
+                worker.run();
+            }
+        });
+    }
+
+    /**
+     * Stops the analysis, samples being decoded are abandoned.
+     */
+    void cancel() {
+        mCancelled = true;
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The number of samples analyzed since the analyzer was started.
+     */
+    int getAnalyzedCount() {
+        return mAnalyzedCount.get();
+    }
+
+    /**
+     * Computes the gain for a measured sample: the difference to the target loudness, limited so
+     * that the peak doesn't clip.
+     * @param loudness The integrated loudness in LUFS.
+     * @param peak     The sample peak relative to full scale.
+     * @return The gain in dB.
+     */
+    static float computeGainDb(double loudness, double peak) {
+        if (Double.isInfinite(loudness)) {
+            return 0;
+        }
+        double gain = TARGET_LUFS - loudness;
+        if (peak > 0) {
+            gain = Math.min(gain, -20 * Math.log10(peak));
+        }
+        return (float) Math.max(MIN_GAIN_DB, Math.min(MAX_GAIN_DB, gain));
+    }
+
+    private void analyze(Sample sample) {
+        try {
+            LoudnessMeter meter = measure(Uri.parse(sample.getUri()));
+            if (meter != null && !mCancelled) {
+                mStore.put(sample, computeGainDb(meter.getIntegratedLoudness(), meter.getPeak()));
+                mAnalyzedCount.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Codec errors surface as runtime exceptions, skip the sample rather than retry it.
+            Log.w(TAG, "Unable to analyze " + sample.getUri(), e);
+        }
+    }
+
+    /**
+     * Decodes a sample and measures it.
+     * @return The meter, or null if the media is not local, has no audio or the analysis was
+     * cancelled.
+     */
+    @Nullable
+    private LoudnessMeter measure(Uri uri) throws IOException {
+        final LoudnessMeter[] meter = new LoudnessMeter[1];
+        boolean decoded = mDecoder.decode(uri, 0, new PcmDecoder.Sink() {
+            @Override
+            public boolean onFormat(int sampleRate, int channelCount) {
+                // A format change mid-stream restarts the measurement, it is rare enough.
+                meter[0] = new LoudnessMeter(sampleRate, channelCount);
+                return !mCancelled;
+            }
+
+            @Override
+            public boolean onSamples(short[] samples, int count, long timeUs) {
+                meter[0].process(samples, count);
+                return !mCancelled;
+            }
+        });
+        return decoded ? meter[0] : null;
+    }
+}
@@ -0,0 +1,172 @@
+package com.android.sample.exoplayer;
+
+import java.util.Arrays;
+
+/**
+ * Measures the integrated loudness of 16-bit PCM audio following ITU-R BS.1770: the audio is
+ * K-weighted, its mean square is taken over 400ms blocks overlapping by 75%, and blocks below the
+ * absolute and relative gates are left out. Also tracks the sample peak. Not thread-safe, one
+ * meter measures one track.
+ */
+final class LoudnessMeter {
+
+    private static final double ABSOLUTE_GATE_LUFS = -70;
+    private static final double RELATIVE_GATE_LU = -10;
+    private static final int SEGMENTS_PER_BLOCK = 4;
+    private static final double FULL_SCALE = 32768;
+    private final int mChannelCount;
+    private final double[] mChannelWeights;
+    private final int mSegmentFrames;
+    // K-weighting filter coefficients, a high shelf followed by a high pass.
+    private final double mShelfB0, mShelfB1, mShelfB2, mShelfA1, mShelfA2;
+    private final double mPassA1, mPassA2;
+    // Filter state per channel, two samples of history for each of the two stages.
+    private final double[] mShelfX1, mShelfX2, mShelfY1, mShelfY2, mPassY1, mPassY2;
+    // Weighted mean squares of the last segments, a block is the sum of four segments.
+    private final double[] mSegments = new double[SEGMENTS_PER_BLOCK];
+    private int mSegmentCount;
+    private double mSegmentSum;
+    private int mSegmentFrame;
+    private int mChannel;
+    private double[] mBlocks = new double[64];
+    private int mBlockCount;
+    private int mPeak;
+
+    /**
+     * @param sampleRate   The sample rate in Hz.
+     * @param channelCount The number of interleaved channels.
+     */
+    LoudnessMeter(int sampleRate, int channelCount) {
+        mChannelCount = channelCount;
+        mChannelWeights = new double[channelCount];
+        Arrays.fill(mChannelWeights, 1);
+        if (channelCount == 6) {
+            // 5.1: the LFE channel is ignored and the surround channels are weighted up.
+            mChannelWeights[3] = 0;
+            mChannelWeights[4] = 1.41;
+            mChannelWeights[5] = 1.41;
+        }
+        mSegmentFrames = Math.max(1, sampleRate / 10);
+
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        mShelfB0 = (vh + vb * k / q + k * k) / a0;
+        mShelfB1 = 2 * (k * k - vh) / a0;
+        mShelfB2 = (vh - vb * k / q + k * k) / a0;
+        mShelfA1 = 2 * (k * k - 1) / a0;
+        mShelfA2 = (1 - k / q + k * k) / a0;
+
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        a0 = 1 + k / q + k * k;
+        mPassA1 = 2 * (k * k - 1) / a0;
+        mPassA2 = (1 - k / q + k * k) / a0;
+
+        mShelfX1 = new double[channelCount];
+        mShelfX2 = new double[channelCount];
+        mShelfY1 = new double[channelCount];
+        mShelfY2 = new double[channelCount];
+        mPassY1 = new double[channelCount];
+        mPassY2 = new double[channelCount];
+    }
+
+    /**
+     * Adds interleaved samples. Samples may be split across calls at any point.
+     * @param samples The samples.
+     * @param count   The number of samples to add.
+     */
+    void process(short[] samples, int count) {
+        for (int i = 0; i < count; i++) {
+            int sample = samples[i];
+            int magnitude = Math.abs(sample);
+            if (magnitude > mPeak) {
+                mPeak = magnitude;
+            }
+            int channel = mChannel;
+            double x = sample / FULL_SCALE;
+            double shelf = mShelfB0 * x + mShelfB1 * mShelfX1[channel] + mShelfB2 * mShelfX2[channel]
+                    - mShelfA1 * mShelfY1[channel] - mShelfA2 * mShelfY2[channel];
+            mShelfX2[channel] = mShelfX1[channel];
+            mShelfX1[channel] = x;
+            // The high pass has the numerator 1, -2, 1.
+            double pass = shelf - 2 * mShelfY1[channel] + mShelfY2[channel]
+                    - mPassA1 * mPassY1[channel] - mPassA2 * mPassY2[channel];
+            mShelfY2[channel] = mShelfY1[channel];
+            mShelfY1[channel] = shelf;
+            mPassY2[channel] = mPassY1[channel];
+            mPassY1[channel] = pass;
+            mSegmentSum += mChannelWeights[channel] * pass * pass;
+
+            if (++mChannel == mChannelCount) {
+                mChannel = 0;
+                if (++mSegmentFrame == mSegmentFrames) {
+                    endSegment();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The integrated loudness in LUFS, or negative infinity if the audio is silent or
+     * shorter than one block.
+     */
+    double getIntegratedLoudness() {
+        double absoluteGate = toPower(ABSOLUTE_GATE_LUFS);
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < mBlockCount; i++) {
+            if (mBlocks[i] > absoluteGate) {
+                sum += mBlocks[i];
+                count++;
+            }
+        }
+        if (count == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double relativeGate = toPower(toLoudness(sum / count) + RELATIVE_GATE_LU);
+        sum = 0;
+        count = 0;
+        for (int i = 0; i < mBlockCount; i++) {
+            if (mBlocks[i] > absoluteGate && mBlocks[i] > relativeGate) {
+                sum += mBlocks[i];
+                count++;
+            }
+        }
+        return count == 0 ? Double.NEGATIVE_INFINITY : toLoudness(sum / count);
+    }
+
+    /**
+     * @return The largest absolute sample value, relative to full scale.
+     */
+    double getPeak() {
+        return mPeak / FULL_SCALE;
+    }
+
+    private void endSegment() {
+        mSegments[mSegmentCount % SEGMENTS_PER_BLOCK] = mSegmentSum / mSegmentFrames;
+        mSegmentCount++;
+        mSegmentSum = 0;
+        mSegmentFrame = 0;
+        if (mSegmentCount >= SEGMENTS_PER_BLOCK) {
+            double block = 0;
+            for (double segment : mSegments) {
+                block += segment;
+            }
+            if (mBlockCount == mBlocks.length) {
+                mBlocks = Arrays.copyOf(mBlocks, mBlockCount * 2);
+            }
+            mBlocks[mBlockCount++] = block / SEGMENTS_PER_BLOCK;
+        }
+    }
+
+    private static double toLoudness(double power) {
+        return -0.691 + 10 * Math.log10(power);
+    }
+
+    private static double toPower(double loudness) {
+        return Math.pow(10, (loudness + 0.691) / 10);
+    }
+}
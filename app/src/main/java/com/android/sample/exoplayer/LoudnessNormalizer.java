@@ -0,0 +1,80 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+
+import java.io.File;
+
+/**
+ * Normalizes the loudness of the samples. The {@link LoudnessAnalyzer} measures samples in the
+ * background, and whenever the player starts reading a sample its stored gain is handed to the
+ * {@link GainAudioProcessor}. Reading starts just before the sample's audio is processed, so
+ * the gain changes with the sample and nothing is analyzed during playback.
+ */
+final class LoudnessNormalizer implements AnalyticsListener {
+
+    private final LoudnessStore mStore;
+    private final LoudnessAnalyzer mAnalyzer;
+    private final GainAudioProcessor mAudioProcessor = new GainAudioProcessor();
+    private final Timeline.Window mWindow = new Timeline.Window();
+
+    /**
+     * @param context The application context.
+     * @param file    The file the gains are stored in.
+     */
+    LoudnessNormalizer(Context context, File file) {
+        mStore = new LoudnessStore(file);
+        mAnalyzer = new LoudnessAnalyzer(context, mStore);
+    }
+
+    /**
+     * @return The audio processor, to be added to the player's audio renderer.
+     */
+    AudioProcessor getAudioProcessor() {
+        return mAudioProcessor;
+    }
+
+    /**
+     * Starts the background analysis of the catalog.
+     * @param catalog    The catalog.
+     * @param startIndex The catalog position to analyze first.
+     */
+    void start(SampleCatalog catalog, int startIndex) {
+        mAnalyzer.start(catalog, startIndex);
+    }
+
+    /**
+     * @param enabled false to play every sample at its original level.
+     */
+    void setEnabled(boolean enabled) {
+        mAudioProcessor.setEnabled(enabled);
+    }
+
+    /**
+     * @return The number of samples analyzed since the analysis was started.
+     */
+    int getAnalyzedCount() {
+        return mAnalyzer.getAnalyzedCount();
+    }
+
+    /**
+     * Stops the analysis.
+     */
+    void release() {
+        mAnalyzer.cancel();
+    }
+
+    @Override
+    public void onReadingStarted(EventTime eventTime) {
+        if (eventTime.windowIndex >= eventTime.timeline.getWindowCount()) {
+            return;
+        }
+        Object tag = eventTime.timeline.getWindow(eventTime.windowIndex, mWindow).tag;
+        if (tag instanceof Sample) {
+            mAudioProcessor.setGainDb(mStore.getGainDb((Sample) tag));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.android.sample.exoplayer;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent normalization gains per sample. Gains are keyed by the sample ID and checked against
+ * a hash of the sample URI, so a sample whose media changed is analyzed again. The file is an
+ * append-only log of fixed-size records, later records win, a torn last record is ignored. Gains
+ * are held in memory once loaded and can be read from any thread without blocking.
+ */
+final class LoudnessStore {
+
+    private static final String TAG = LoudnessStore.class.getSimpleName();
+    private static final int RECORD_SIZE = 12;
+    private final File mFile;
+    // Sample ID to the URI hash in the upper and the gain bits in the lower half.
+    private final Map<Integer, Long> mGains = new ConcurrentHashMap<>();
+    private final ByteBuffer mRecord = ByteBuffer.allocate(RECORD_SIZE);
+    private boolean mLoaded;
+
+    /**
+     * @param file The gain file.
+     */
+    LoudnessStore(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Reads the gain file if it hasn't been read yet. Performs disk I/O, so it should not be
+     * called on the main thread.
+     */
+    synchronized void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "r")) {
+            FileChannel channel = file.getChannel();
+            int size = (int) (channel.size() / RECORD_SIZE * RECORD_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read the whole file.
+            }
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int sampleID = buffer.getInt();
+                int uriHash = buffer.getInt();
+                int gainBits = buffer.getInt();
+                mGains.put(sampleID, pack(uriHash, gainBits));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read " + mFile, e);
+        }
+    }
+
+    /**
+     * @param sample The sample.
+     * @return true if a gain is stored for the sample and its current URI.
+     */
+    boolean contains(Sample sample) {
+        Long entry = mGains.get(sample.getSampleID());
+        return entry != null && (int) (entry >>> 32) == hash(sample);
+    }
+
+    /**
+     * @param sample The sample.
+     * @return The stored gain in dB, or 0 if the sample hasn't been analyzed.
+     */
+    float getGainDb(Sample sample) {
+        Long entry = mGains.get(sample.getSampleID());
+        if (entry == null || (int) (entry >>> 32) != hash(sample)) {
+            return 0;
+        }
+        return Float.intBitsToFloat((int) (long) entry);
+    }
+
+    /**
+     * Stores and appends a gain to the file. Performs disk I/O, so it should not be called on the
+     * main thread.
+     * @param sample The sample.
+     * @param gainDb The gain in dB.
+     */
+    synchronized void put(Sample sample, float gainDb) {
+        int uriHash = hash(sample);
+        int gainBits = Float.floatToIntBits(gainDb);
+        mGains.put(sample.getSampleID(), pack(uriHash, gainBits));
+        mRecord.clear();
+        mRecord.putInt(sample.getSampleID()).putInt(uriHash).putInt(gainBits).flip();
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            FileChannel channel = file.getChannel();
+            // Overwrite a torn record left by an interrupted write.
+            channel.position(channel.size() / RECORD_SIZE * RECORD_SIZE);
+            while (mRecord.hasRemaining()) {
+                channel.write(mRecord);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write " + mFile, e);
+        }
+    }
+
+    private static int hash(Sample sample) {
+        String uri = sample.getUri();
+        return uri == null ? 0 : uri.hashCode();
+    }
+
+    private static long pack(int uriHash, int gainBits) {
+        return ((long) uriHash << 32) | (gainBits & 0xffffffffL);
+    }
+}
@@ -4,11 +4,11 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.VectorDrawable;
 import android.os.Bundle;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
+import android.util.DisplayMetrics;
 import android.view.View;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
@@ -17,10 +17,10 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.constraintlayout.widget.ConstraintLayout;
 
-import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ui.PlayerView;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 
@@ -29,14 +29,15 @@ import java.util.Objects;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
 
-import static com.android.sample.exoplayer.Constants.ONE_SECOND;
-import static com.android.sample.exoplayer.MainService.EXO_PLAYER_PLAYING_SUBJECT;
+import static com.android.sample.exoplayer.PlaybackEventBus.MAIN_THREAD;
+import static com.android.sample.exoplayer.PlaybackEventBus.PLAYING;
+import static com.android.sample.exoplayer.PlaybackEventBus.PLAY_REQUEST;
+import static com.android.sample.exoplayer.PlaybackEventBus.SAMPLE;
+import static com.android.sample.exoplayer.PlaybackEventBus.SNAPSHOT;
 import static com.android.sample.exoplayer.RxMainSubject.unsubscribe;
 
 public class MainActivity extends AppCompatActivity implements View.OnClickListener {
 
-    private static final long UPDATE_PROGRESS_DELAY = ONE_SECOND >> 3;
-    private final Handler mHandler = new Handler(Looper.getMainLooper());
     private PlayerView mPlayerView;
     private BottomSheetBehavior<FrameLayout> mBottomSheetBehavior;
     private ImageButton mBtnPlayPause;
@@ -46,10 +47,18 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     private TextView mTxtComposer;
     private ConstraintLayout mBottomBar;
     private ProgressBar mProgressBar;
+    private ProgressTicker mProgressTicker;
     private ImageView mArrow;
+    private WaveformView mWaveformView;
+    private int mWaveformSampleID = -1;
+    private Sample mSample;
+    private boolean mArtworkDropped;
     private boolean isPlaying = true;
-    static final RxMainSubject<Boolean> PLAYING_SUBJECT = new RxMainSubject<>();
-    static final RxMainSubject<Sample> SAMPLE_SUBJECT = new RxMainSubject<>();
+    private Disposable mPlayingDisposable;
+    private Disposable mSampleDisposable;
+    private Disposable mSnapshotDisposable;
+    // Only set when the service runs in its own process.
+    private PlaybackClient mPlaybackClient;
 
     /**
      * Create our connection to the service to be used in our bindService call.
@@ -60,52 +69,17 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
             //As such we cast.
             if (service instanceof MainService.MainServiceBinder) {
                 final MainService.MainServiceBinder myService = (MainService.MainServiceBinder) service;
-                //Then we simply set the exoplayer instance on this view.
+                //Then we simply set the exoplayer instance on this view. Everything else follows
+                //the replayed event bus channels.
                 mPlayerView.setPlayer(myService.getExoPlayerInstance());
-                mPlayerView.setDefaultArtwork(Sample.getComposerArtBySampleID(
-                        MainActivity.this,
-                        myService.getSample().getSampleID()));
-                mTxtSong.setText(myService.getSample().getTitle());
-                mTxtComposer.setText(myService.getSample().getComposer());
-                isPlaying = myService.getExoPlayerInstance().getPlayWhenReady();
-                mBtnPlayPause.setImageDrawable(isPlaying ? mPauseDrawable : mPlayDrawable);
-                mHandler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        long duration = myService.getExoPlayerInstance().getDuration();
-                        if (duration != C.TIME_UNSET) {
-                            mProgressBar.setMax((int) duration);
-                            mProgressBar.setProgress((int) myService.getExoPlayerInstance().getCurrentPosition());
-                        }
-                        mHandler.postDelayed(this, isPlaying ? 0 : UPDATE_PROGRESS_DELAY);
-                    }
-                });
             }
         }
 
         public void onServiceDisconnected(ComponentName className) {
+            mPlayerView.setPlayer(null);
         }
     };
 
-    private final Disposable mPlayingDisposable = PLAYING_SUBJECT.subscribe(new Consumer<Boolean>() {
-        @Override
-        public void accept(Boolean isPlaying) {
-            MainActivity.this.isPlaying = isPlaying;
-            mBtnPlayPause.setImageDrawable(isPlaying ? mPauseDrawable : mPlayDrawable);
-        }
-    });
-
-    private final Disposable mSampleDisposable = SAMPLE_SUBJECT.subscribe(new Consumer<Sample>() {
-        @Override
-        public void accept(Sample sample) {
-            mPlayerView.setDefaultArtwork(Sample.getComposerArtBySampleID(
-                    MainActivity.this,
-                    Objects.requireNonNull(sample).getSampleID()));
-            mTxtSong.setText(sample.getTitle());
-            mTxtComposer.setText(sample.getComposer());
-        }
-    });
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -113,6 +87,11 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
         // Initialize the player view.
         mPlayerView = findViewById(R.id.playerView);
+        if (BuildConfig.SEPARATE_PLAYBACK_PROCESS) {
+            // The player lives in the playback process, the view follows a mirror of it.
+            mPlaybackClient = new PlaybackClient(this);
+            mPlayerView.setPlayer(mPlaybackClient.getPlayer());
+        }
 
         mBtnPlayPause = findViewById(R.id.btn_play_pause);
         mPlayDrawable = (VectorDrawable) getDrawable(R.drawable.exo_controls_play);
@@ -121,7 +100,10 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         mTxtComposer = findViewById(R.id.txt_composer);
         mBottomBar = findViewById(R.id.bottom_bar);
         mProgressBar = findViewById(R.id.progress);
+        mProgressTicker = new ProgressTicker(mProgressBar);
         mArrow = findViewById(R.id.arrow);
+        // The player view inflates its controls on creation.
+        mWaveformView = findViewById(R.id.waveform);
 
         FrameLayout bottomNavigationContainer = findViewById(R.id.bottom_navigation_container);
         mBottomSheetBehavior = BottomSheetBehavior.from(bottomNavigationContainer);
@@ -136,11 +118,35 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                 mBtnPlayPause.setEnabled(alpha > 0);
                 mBottomBar.setAlpha(alpha);
                 mProgressBar.setAlpha(alpha);
+                mProgressTicker.setVisible(alpha > 0);
                 mArrow.setRotation(slideOffset * -180);
             }
         });
         FrameLayout bottomLayout = findViewById(R.id.bottom_layout);
         bottomLayout.setOnClickListener(this);
+
+        // Channels replay the current state, so subscribe once the views exist.
+        mPlayingDisposable = PLAYING.subscribe(new Consumer<Boolean>() {
+            @Override
+            public void accept(Boolean isPlaying) {
+                MainActivity.this.isPlaying = isPlaying;
+                mBtnPlayPause.setImageDrawable(isPlaying ? mPauseDrawable : mPlayDrawable);
+            }
+        }, MAIN_THREAD);
+
+        mSampleDisposable = SAMPLE.subscribe(new Consumer<Sample>() {
+            @Override
+            public void accept(Sample sample) {
+                showSample(Objects.requireNonNull(sample));
+            }
+        }, MAIN_THREAD);
+
+        mSnapshotDisposable = SNAPSHOT.subscribe(new Consumer<PlaybackSnapshot>() {
+            @Override
+            public void accept(PlaybackSnapshot snapshot) {
+                mProgressTicker.setSnapshot(snapshot);
+            }
+        }, MAIN_THREAD);
     }
 
     @Override
@@ -156,21 +162,50 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     protected void onStart() {
         super.onStart();
         Intent intent = new Intent(this, MainService.class);
-        bindService(intent, mConnection, Context.BIND_AUTO_CREATE);
+        if (mPlaybackClient != null) {
+            mPlaybackClient.connect();
+        } else {
+            bindService(intent, mConnection, Context.BIND_AUTO_CREATE);
+        }
         startService(intent);
+        mProgressTicker.setVisible(mBottomSheetBehavior.getState() != BottomSheetBehavior.STATE_EXPANDED);
+        if (mArtworkDropped) {
+            mArtworkDropped = false;
+            if (mSample != null) {
+                showArtwork(mSample);
+            }
+        }
     }
 
     @Override
     protected void onStop() {
         super.onStop();
-        mHandler.removeCallbacksAndMessages(null);
-        unbindService(mConnection);
+        mProgressTicker.setVisible(false);
+        if (mPlaybackClient != null) {
+            mPlaybackClient.disconnect();
+        } else {
+            unbindService(mConnection);
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        unsubscribe(mPlayingDisposable, mSampleDisposable);
+        unsubscribe(mPlayingDisposable, mSampleDisposable, mSnapshotDisposable);
+    }
+
+    /**
+     * Drops the screen-sized portraits once the UI is hidden, they are the largest UI-only
+     * allocations. The current one is decoded again when the activity is started.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN && !mArtworkDropped) {
+            mArtworkDropped = true;
+            mPlayerView.setDefaultArtwork(null);
+            ArtworkCache.getInstance(this).evictScreenArt();
+        }
     }
 
     @Override
@@ -184,9 +219,49 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         }
     }
 
+    private void showSample(Sample sample) {
+        mSample = sample;
+        if (!mArtworkDropped) {
+            showArtwork(sample);
+        }
+        mTxtSong.setText(sample.getTitle());
+        mTxtComposer.setText(sample.getComposer());
+        showWaveform(sample);
+    }
+
+    private void showArtwork(Sample sample) {
+        // Decode for the laid out player view, or for the whole screen before the first layout.
+        int width = mPlayerView.getWidth();
+        int height = mPlayerView.getHeight();
+        if (width == 0 || height == 0) {
+            DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+            width = displayMetrics.widthPixels;
+            height = displayMetrics.heightPixels;
+        }
+        mPlayerView.setDefaultArtwork(new BitmapDrawable(getResources(),
+                ArtworkCache.getInstance(this).getComposerArt(sample, width, height)));
+    }
+
+    private void showWaveform(Sample sample) {
+        if (sample.getSampleID() == mWaveformSampleID) {
+            return;
+        }
+        mWaveformSampleID = sample.getSampleID();
+        mWaveformView.setWaveform(null);
+        WaveformCache.getInstance(this).load(sample, new WaveformCache.Callback() {
+            @Override
+            public void onWaveformLoaded(Sample sample, @Nullable Waveform waveform) {
+                // Ignore waveforms arriving after the sample changed again.
+                if (!isDestroyed() && sample.getSampleID() == mWaveformSampleID) {
+                    mWaveformView.setWaveform(waveform);
+                }
+            }
+        });
+    }
+
     public void playPauseClick(View view) {
         isPlaying = !isPlaying;
         mBtnPlayPause.setImageDrawable(isPlaying ? mPauseDrawable : mPlayDrawable);
-        EXO_PLAYER_PLAYING_SUBJECT.publish(isPlaying);
+        PLAY_REQUEST.publish(isPlaying);
     }
 }
\ No newline at end of file
@@ -5,12 +5,21 @@ import android.os.Parcelable;
 
 class MainPosition implements Parcelable {
 
+    static final int UNKNOWN_SAMPLE_ID = -1;
     private final int mCurrentWindowIndex;
     private final long mCurrentPosition;
+    private final int mSampleID;
+    private final long mTimestamp;
 
     public MainPosition(int currentWindowIndex, long currentPosition) {
+        this(currentWindowIndex, currentPosition, UNKNOWN_SAMPLE_ID, 0);
+    }
+
+    public MainPosition(int currentWindowIndex, long currentPosition, int sampleID, long timestamp) {
         mCurrentWindowIndex = currentWindowIndex;
         mCurrentPosition = currentPosition;
+        mSampleID = sampleID;
+        mTimestamp = timestamp;
     }
 
     public int describeContents() {
@@ -20,6 +29,8 @@ class MainPosition implements Parcelable {
     public void writeToParcel(Parcel out, int flags) {
         out.writeInt(mCurrentWindowIndex);
         out.writeLong(mCurrentPosition);
+        out.writeInt(mSampleID);
+        out.writeLong(mTimestamp);
     }
 
     public static final Parcelable.Creator<MainPosition> CREATOR
@@ -36,6 +47,8 @@ class MainPosition implements Parcelable {
     private MainPosition(Parcel in) {
         mCurrentWindowIndex = in.readInt();
         mCurrentPosition = in.readLong();
+        mSampleID = in.readInt();
+        mTimestamp = in.readLong();
     }
 
     public int getCurrentWindowIndex() {
@@ -45,4 +58,18 @@ class MainPosition implements Parcelable {
     public long getCurrentPosition() {
         return mCurrentPosition;
     }
+
+    /**
+     * @return The ID of the sample at the position, or {@link #UNKNOWN_SAMPLE_ID}.
+     */
+    public int getSampleID() {
+        return mSampleID;
+    }
+
+    /**
+     * @return The wall clock time the position was taken at, in milliseconds.
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
 }
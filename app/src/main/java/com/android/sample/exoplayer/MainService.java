@@ -1,92 +1,352 @@
 package com.android.sample.exoplayer;
 
 import android.app.Notification;
-import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.app.Service;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
-import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.v4.media.MediaBrowserCompat;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
+import android.text.TextUtils;
 import android.util.Log;
 import android.widget.Toast;
 
-import androidx.core.app.NotificationCompat;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media.MediaBrowserServiceCompat;
 import androidx.media.session.MediaButtonReceiver;
 
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.SimpleExoPlayer;
-import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
-import com.google.android.exoplayer2.source.MediaSource;
-import com.google.android.exoplayer2.source.ProgressiveMediaSource;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.audio.AudioProcessor;
 import com.google.android.exoplayer2.util.Util;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
 
 import static com.android.sample.exoplayer.Constants.ONE_SECOND;
-import static com.android.sample.exoplayer.MainActivity.PLAYING_SUBJECT;
-import static com.android.sample.exoplayer.MainActivity.SAMPLE_SUBJECT;
+import static com.android.sample.exoplayer.PlaybackEventBus.MAIN_THREAD;
+import static com.android.sample.exoplayer.PlaybackEventBus.PLAYING;
+import static com.android.sample.exoplayer.PlaybackEventBus.PLAY_REQUEST;
+import static com.android.sample.exoplayer.PlaybackEventBus.SAMPLE;
+import static com.android.sample.exoplayer.PlaybackEventBus.SNAPSHOT;
 import static com.android.sample.exoplayer.RxMainSubject.unsubscribe;
 import static com.android.sample.exoplayer.ServiceUtils.startMainService;
 import static com.google.android.exoplayer2.Player.DISCONTINUITY_REASON_PERIOD_TRANSITION;
 import static com.google.android.exoplayer2.Player.DISCONTINUITY_REASON_SEEK_ADJUSTMENT;
+import static com.google.android.exoplayer2.Player.TIMELINE_CHANGE_REASON_PREPARED;
 
-public class MainService extends Service implements ExoPlayer.EventListener {
+public class MainService extends MediaBrowserServiceCompat implements ExoPlayer.EventListener,
+        PlaylistLoader.Callback {
 
     private static final String TAG = MainService.class.getSimpleName();
     private static final int NOTIFICATION_ID = 1;
     private static final long MAX_POSITION_FOR_SEEK_TO_PREVIOUS = ONE_SECOND * 3;
+    private static final long SESSION_UPDATE_INTERVAL = ONE_SECOND / 60;
+    private static final long CHECKPOINT_INTERVAL = ONE_SECOND * 5;
+    private static final String CHECKPOINT_FILE = "playback.checkpoint";
+    private static final String LOUDNESS_FILE = "loudness.bin";
+    private static final String SEEK_INDEX_DIRECTORY = "seek_index";
+    // Process.BLUETOOTH_UID, only public since API 29.
+    private static final int BLUETOOTH_UID = 1002;
     private final Handler mHandler = new Handler(Looper.getMainLooper());
-    static final RxMainSubject<Boolean> EXO_PLAYER_PLAYING_SUBJECT = new RxMainSubject<>();
+    private final UpdateScheduler mUpdateScheduler = new UpdateScheduler(mHandler,
+            SESSION_UPDATE_INTERVAL, new Runnable() {
+        @Override
+        public void run() {
+            publishUpdate();
+        }
+    });
+    private final Runnable mCheckpointRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkpoint();
+            mHandler.postDelayed(this, CHECKPOINT_INTERVAL);
+        }
+    };
+    private final Runnable mSnapshotRunnable = new Runnable() {
+        @Override
+        public void run() {
+            publishSnapshot();
+            mHandler.postDelayed(this, mSnapshotInterval);
+        }
+    };
     private static MediaSessionCompat mMediaSession;
     private SimpleExoPlayer mExoPlayer;
     private PlaybackStateCompat.Builder mStateBuilder;
     private MediaMetadataCompat.Builder mMetadataBuilder;
     private NotificationManager mNotificationManager;
-    private final List<Sample> mSamples = new ArrayList<>();
-
-    private final Disposable mPlayingDisposable = EXO_PLAYER_PLAYING_SUBJECT.subscribe(new Consumer<Boolean>() {
+    private NotificationRenderer mNotificationRenderer;
+    private PlaybackServer mPlaybackServer;
+    private MemoryPressurePolicy mMemoryPolicy;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mPreloadExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mBrowseExecutor = Executors.newSingleThreadExecutor();
+    private final BufferingUsage mBufferingUsage = new BufferingUsage();
+    private ProfiledLoadControl mLoadControl;
+    private MediaCache mMediaCache;
+    private TrackPreloader mTrackPreloader;
+    private TransitionMetrics mTransitionMetrics;
+    private QoeMetrics mQoeMetrics;
+    private LoudnessNormalizer mLoudnessNormalizer;
+    private Mp3SeekIndexStore mSeekIndexStore;
+    private SampleMediaSourceFactory mMediaSourceFactory;
+    private WindowedPlaylist mPlaylist;
+    private PlaylistLoader mPlaylistLoader;
+    private final ExecutorService mCheckpointExecutor = Executors.newSingleThreadExecutor();
+    private CheckpointStore mCheckpointStore;
+    private PlaybackStateCompat mPublishedState;
+    private Sample mPublishedSample;
+    private long mPublishedDuration = C.TIME_UNSET;
+    private long mSnapshotInterval;
+    private SearchIndex mSearchIndex;
+    private Sample mRecentSample;
+    private int mMaxUnpagedItems;
+    // Only accessed on the browse executor.
+    private MediaLibrary mMediaLibrary;
+
+    private final Disposable mPlayingDisposable = PLAY_REQUEST.subscribe(new Consumer<Boolean>() {
         @Override
         public void accept(Boolean isPlaying) {
-            mExoPlayer.setPlayWhenReady(isPlaying);
+            if (mExoPlayer != null) {
+                mExoPlayer.setPlayWhenReady(isPlaying);
+            }
         }
-    });
+    }, MAIN_THREAD);
 
     @Override
     public void onCreate() {
         super.onCreate();
+        mQoeMetrics = new QoeMetrics(SystemClock.elapsedRealtime());
+        mSnapshotInterval = getResources().getInteger(R.integer.snapshot_interval_ms);
+        mMaxUnpagedItems = getResources().getInteger(R.integer.browse_max_unpaged_items);
 
         // Initialize the Media Session.
         initializeMediaSession();
+        setSessionToken(mMediaSession.getSessionToken());
+
+        mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        mNotificationRenderer = new NotificationRenderer(this, mMediaSession.getSessionToken());
+        mPlaybackServer = new PlaybackServer(mMediaSession.getController().getTransportControls());
+        mPlaybackServer.start();
 
         // Initialize the player.
         initializePlayer();
+        initializeMemoryPolicy();
+    }
 
-        mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        mMemoryPolicy.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        mMemoryPolicy.onTrimMemory(TRIM_MEMORY_COMPLETE);
     }
 
     @Override
     public IBinder onBind(Intent intent) {
+        if (SERVICE_INTERFACE.equals(intent.getAction())) {
+            return super.onBind(intent);
+        }
+        if (PlaybackServer.ACTION_CONNECT.equals(intent.getAction())) {
+            return mPlaybackServer.getBinder();
+        }
         return new MainServiceBinder();
     }
 
+    /**
+     * Lets trusted callers browse the library, see {@link #isTrustedCaller(String, int)}. Other
+     * callers get an empty root, so they can still connect to the media session.
+     */
+    @Override
+    public BrowserRoot onGetRoot(@NonNull String clientPackageName, int clientUid,
+                                 @Nullable Bundle rootHints) {
+        if (!isTrustedCaller(clientPackageName, clientUid)) {
+            Log.w(TAG, "Not browsable by " + clientPackageName + " (" + clientUid + ")");
+            return new BrowserRoot(MediaLibrary.EMPTY_ROOT_ID, null);
+        }
+        return new BrowserRoot(MediaLibrary.ROOT_ID, null);
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId,
+                               @NonNull Result<List<MediaBrowserCompat.MediaItem>> result) {
+        onLoadChildren(parentId, result, Bundle.EMPTY);
+    }
+
+    /**
+     * Loads a page of children on the browse executor. Requests without paging get the first
+     * {@link R.integer#browse_max_unpaged_items} children, so a result never has to carry the
+     * whole catalog over binder.
+     */
+    @Override
+    public void onLoadChildren(@NonNull final String parentId,
+                               @NonNull final Result<List<MediaBrowserCompat.MediaItem>> result,
+                               @NonNull Bundle options) {
+        int page = options.getInt(MediaBrowserCompat.EXTRA_PAGE, -1);
+        int pageSize = options.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, -1);
+        if (page < 0 || pageSize < 1) {
+            page = 0;
+            pageSize = mMaxUnpagedItems;
+        }
+        final int requestedPage = page;
+        final int requestedPageSize = pageSize;
+        final int[] recentSampleIDs = MainStorage.getInstance(this).getRecentSampleIDs();
+        result.detach();
+        try {
+            mBrowseExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mMediaLibrary == null) {
+                        mMediaLibrary = new MediaLibrary(getResources(),
+                                SampleCatalog.getInstance(MainService.this));
+                    }
+                    final List<MediaBrowserCompat.MediaItem> children =
+                            mMediaLibrary.getChildren(parentId, requestedPage,
+                                    requestedPageSize, recentSampleIDs);
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.sendResult(children);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Destroyed, the executor is shut down.
+            result.sendResult(new ArrayList<MediaBrowserCompat.MediaItem>());
+        }
+    }
+
+    /**
+     * @return true if the caller is this app, the system, Bluetooth or one of the
+     * {@link R.array#browse_trusted_packages}. {@link MediaBrowserServiceCompat} already checked
+     * that the package runs as the uid.
+     */
+    private boolean isTrustedCaller(String packageName, int uid) {
+        return uid == Process.myUid() || uid == Process.SYSTEM_UID || uid == BLUETOOTH_UID
+                || Arrays.asList(getResources().getStringArray(R.array.browse_trusted_packages))
+                .contains(packageName);
+    }
+
+    /**
+     * Sets up what is given up under memory pressure, in the order it is given up: portraits
+     * first, then buffers, then everything but the samples next to the current one. Playback
+     * itself is kept at every tier.
+     */
+    private void initializeMemoryPolicy() {
+        final ArtworkCache artworkCache = ArtworkCache.getInstance(this);
+        mMemoryPolicy = new MemoryPressurePolicy(mHandler, MemoryPressurePolicy.SYSTEM);
+        mMemoryPolicy.add(MemoryPressurePolicy.Tier.MODERATE, "ui-artwork",
+                new MemoryPressurePolicy.Reclaimer() {
+                    @Override
+                    public long reclaim() {
+                        return artworkCache.evictScreenArt();
+                    }
+
+                    @Override
+                    public void restore() {
+                        // Decoded again when the activity shows a sample.
+                    }
+                });
+        mMemoryPolicy.add(MemoryPressurePolicy.Tier.MODERATE, "artwork",
+                new MemoryPressurePolicy.Reclaimer() {
+                    @Override
+                    public long reclaim() {
+                        return artworkCache.setSizeDivisor(2);
+                    }
+
+                    @Override
+                    public void restore() {
+                        artworkCache.setSizeDivisor(1);
+                    }
+                });
+        // Buffers drain with playback, what they free is only known later.
+        mMemoryPolicy.addTarget(MemoryPressurePolicy.Tier.LOW, "buffers",
+                new MemoryPressurePolicy.Reclaimer() {
+                    @Override
+                    public long reclaim() {
+                        return mLoadControl.setConstrained(true);
+                    }
+
+                    @Override
+                    public void restore() {
+                        mLoadControl.setConstrained(false);
+                    }
+                });
+        mMemoryPolicy.add(MemoryPressurePolicy.Tier.LOW, "seek-indexes",
+                new MemoryPressurePolicy.Reclaimer() {
+                    @Override
+                    public long reclaim() {
+                        return mSeekIndexStore.evictMemoryCache();
+                    }
+
+                    @Override
+                    public void restore() {
+                        // Read from their files again when needed.
+                    }
+                });
+        mMemoryPolicy.add(MemoryPressurePolicy.Tier.CRITICAL, "sources",
+                new MemoryPressurePolicy.Reclaimer() {
+                    @Override
+                    public long reclaim() {
+                        if (mPlaylist != null) {
+                            mPlaylist.setConstrained(true);
+                        }
+                        // Sources hold no buffers of their own, those are counted as buffers.
+                        return 0;
+                    }
+
+                    @Override
+                    public void restore() {
+                        if (mPlaylist != null) {
+                            mPlaylist.setConstrained(false);
+                        }
+                    }
+                });
+        mMemoryPolicy.add(MemoryPressurePolicy.Tier.CRITICAL, "artwork",
+                new MemoryPressurePolicy.Reclaimer() {
+                    @Override
+                    public long reclaim() {
+                        // Still room for the notification icon.
+                        return artworkCache.setSizeDivisor(8);
+                    }
+
+                    @Override
+                    public void restore() {
+                        artworkCache.setSizeDivisor(2);
+                    }
+                });
+    }
+
     /**
      * Initializes the Media Session to be enabled with media buttons, transport controls, callbacks
      * and media controller.
@@ -106,14 +366,19 @@ public class MainService extends Service implements ExoPlayer.EventListener {
         mMediaSession.setMediaButtonReceiver(null);
 
         // Set an initial PlaybackState with ACTION_PLAY, so media buttons can start the player.
+        // The session reports connecting until the playlist has been loaded.
         mStateBuilder = new PlaybackStateCompat.Builder()
+                .setState(PlaybackStateCompat.STATE_CONNECTING,
+                        PlaybackStateCompat.PLAYBACK_POSITION_UNKNOWN, 1f)
                 .setActions(
                         PlaybackStateCompat.ACTION_PLAY |
                                 PlaybackStateCompat.ACTION_PAUSE |
                                 PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
                                 PlaybackStateCompat.ACTION_SKIP_TO_NEXT |
                                 PlaybackStateCompat.ACTION_PLAY_PAUSE |
-                                PlaybackStateCompat.ACTION_SEEK_TO);
+                                PlaybackStateCompat.ACTION_SEEK_TO |
+                                PlaybackStateCompat.ACTION_PLAY_FROM_SEARCH |
+                                PlaybackStateCompat.ACTION_PLAY_FROM_MEDIA_ID);
 
         mMediaSession.setPlaybackState(mStateBuilder.build());
 
@@ -127,45 +392,140 @@ public class MainService extends Service implements ExoPlayer.EventListener {
     }
 
     /**
-     * Initialize ExoPlayer.
+     * Initialize ExoPlayer. The playlist is loaded on a background thread, see
+     * {@link PlaylistLoader}, and the player is prepared once the resumed sample is available.
+     * After the service restarted itself, the player is prepared right away from the previous
+     * service's {@link SessionSnapshot} and the catalog is attached once loaded.
      */
     private void initializePlayer() {
         if (mExoPlayer == null) {
+            SessionSnapshot snapshot = SessionSnapshotStore.getInstance(this)
+                    .take(SystemClock.elapsedRealtime());
             // Create an instance of the ExoPlayer.
-            mExoPlayer = new SimpleExoPlayer.Builder(this).build();
-
-            List<Integer> sampleIDs = Sample.getAllSampleIDs(this);
-            MediaSource[] mediaSourcesToLoad = new MediaSource[sampleIDs.size()];
-
-            for (int i = 0; i < sampleIDs.size(); i++) {
-                Sample sample = Sample.getSampleByID(this, sampleIDs.get(i));
-                if (sample == null) {
-                    Toast.makeText(this, getString(R.string.sample_not_found_error),
-                            Toast.LENGTH_SHORT).show();
-                } else {
-                    mSamples.add(sample);
-                    // Prepare the MediaSource.
-                    String userAgent = Util.getUserAgent(this, "ExoPlayer");
-                    MediaSource mediaSource = new ProgressiveMediaSource.Factory(new DefaultDataSourceFactory(
-                            this, userAgent)).createMediaSource(Uri.parse(sample.getUri()));
-                    mediaSourcesToLoad[i] = mediaSource;
+            BufferingProfile profile = snapshot != null
+                    ? snapshot.getBufferingProfile()
+                    : MainStorage.getInstance(this)
+                    .getBufferingProfile(BufferingProfile.getDefault(this));
+            mLoadControl = new ProfiledLoadControl(profile, mBufferingUsage);
+            mLoudnessNormalizer = new LoudnessNormalizer(this,
+                    new File(getFilesDir(), LOUDNESS_FILE));
+            DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(this) {
+                @Override
+                protected AudioProcessor[] buildAudioProcessors() {
+                    return new AudioProcessor[]{mLoudnessNormalizer.getAudioProcessor()};
                 }
-            }
-            mExoPlayer.prepare(new ConcatenatingMediaSource(mediaSourcesToLoad));
-
-            MainPosition mainPosition = MainStorage.getInstance(this).getPosition();
-            if (mainPosition == null) {
-                mExoPlayer.setPlayWhenReady(true);
-            } else {
-                mExoPlayer.seekTo(mainPosition.getCurrentWindowIndex(), mainPosition.getCurrentPosition());
-                mExoPlayer.setPlayWhenReady(false);
-            }
+            };
+            mExoPlayer = new SimpleExoPlayer.Builder(this, renderersFactory)
+                    .setLoadControl(mLoadControl)
+                    .build();
 
             // Set the ExoPlayer.EventListener to this service.
             mExoPlayer.addListener(this);
+
+            mCheckpointStore = new CheckpointStore(new File(getFilesDir(), CHECKPOINT_FILE),
+                    mCheckpointExecutor);
+            mMediaCache = new MediaCache(this, Util.getUserAgent(this, "ExoPlayer"));
+            // Stored next to the compiled catalog.
+            mSeekIndexStore = new Mp3SeekIndexStore(new File(getFilesDir(), SEEK_INDEX_DIRECTORY),
+                    mMediaCache.getDataSourceFactory());
+            mMediaSourceFactory = new SampleMediaSourceFactory(
+                    mMediaCache.getDataSourceFactory(), mSeekIndexStore);
+
+            mTrackPreloader = new TrackPreloader(mExoPlayer, mMediaCache.getDataSourceFactory(),
+                    mPreloadExecutor, new TrackPreloader.Policy(
+                    getResources().getInteger(R.integer.preload_window_count),
+                    getResources().getInteger(R.integer.preload_kb_per_window) * 1024L,
+                    getResources().getInteger(R.integer.preload_seconds_per_window)));
+            mExoPlayer.addListener(mTrackPreloader);
+            mTransitionMetrics = new TransitionMetrics(mExoPlayer,
+                    mQoeMetrics.getTransitionReadyTime());
+            mExoPlayer.addListener(mTransitionMetrics);
+            mExoPlayer.addAnalyticsListener(mQoeMetrics);
+            mExoPlayer.addAnalyticsListener(mLoudnessNormalizer);
+            if (snapshot != null) {
+                restorePlaylist(snapshot);
+            }
+
+            mPlaylistLoader = new PlaylistLoader(this, mCheckpointStore, mHandler, this);
+            mExecutor.execute(mPlaylistLoader);
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final SearchIndex searchIndex = SearchIndex.of(
+                            SampleCatalog.getInstance(MainService.this));
+                    // Posted after the playlist callback, so the playlist exists once it is set.
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mSearchIndex = searchIndex;
+                        }
+                    });
+                }
+            });
         }
     }
 
+    @Override
+    public void onPlaylistLoaded(SampleCatalog catalog, int startIndex,
+                                 MainPosition resumePosition) {
+        if (mExoPlayer == null) {
+            // The service has been destroyed while the playlist was loading.
+            return;
+        }
+        if (catalog.size() == 0) {
+            Toast.makeText(this, getString(R.string.sample_list_load_error),
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (mPlaylist != null) {
+            // Restored from a snapshot, which takes precedence over the checkpoint.
+            mPlaylist.setCatalog(catalog);
+            mLoudnessNormalizer.start(catalog, Math.max(0, mPlaylist.getCurrentIndex()));
+            return;
+        }
+        mPlaylist = new WindowedPlaylist(mExoPlayer, catalog, mMediaSourceFactory);
+        if (mMemoryPolicy.getTier() == MemoryPressurePolicy.Tier.CRITICAL) {
+            mPlaylist.setConstrained(true);
+        }
+        mExoPlayer.addListener(mPlaylist);
+        mExoPlayer.prepare(mPlaylist.getMediaSource());
+        mPlaylist.seekTo(startIndex, resumePosition == null ? 0 : resumePosition.getCurrentPosition());
+        mExoPlayer.setPlayWhenReady(resumePosition == null);
+        mLoudnessNormalizer.start(catalog, startIndex);
+    }
+
+    /**
+     * Prepares the player with the playlist window of a snapshot, without the catalog.
+     */
+    private void restorePlaylist(SessionSnapshot snapshot) {
+        mQoeMetrics.setWarmRestart(snapshot.getRealtimeMs());
+        mPlaylist = new WindowedPlaylist(mExoPlayer, null, mMediaSourceFactory);
+        mExoPlayer.addListener(mPlaylist);
+        mExoPlayer.prepare(mPlaylist.getMediaSource());
+        mPlaylist.restore(snapshot.getFirstIndex(), snapshot.getSamples(),
+                snapshot.getCurrentIndex(), snapshot.getPositionMs());
+        mExoPlayer.setPlayWhenReady(snapshot.getPlayWhenReady());
+    }
+
+    /**
+     * Saves a snapshot of the session for the service restarting itself.
+     */
+    private void saveSnapshot() {
+        if (mPlaylist == null || mPlaylist.isSeekPending()) {
+            return;
+        }
+        int currentIndex = mPlaylist.getCurrentIndex();
+        List<Sample> samples = mPlaylist.getResidentSamples();
+        int first = mPlaylist.getFirstIndex();
+        if (currentIndex < first || currentIndex >= first + samples.size()) {
+            return;
+        }
+        SessionSnapshotStore.getInstance(this).save(new SessionSnapshot(
+                SystemClock.elapsedRealtime(), first, samples, currentIndex,
+                mExoPlayer.getCurrentPosition(), mExoPlayer.getPlayWhenReady(),
+                mLoadControl.getProfile()), mCheckpointExecutor);
+    }
+
     @Override
     public void onTaskRemoved(Intent rootIntent) {
         super.onTaskRemoved(rootIntent);
@@ -180,10 +540,21 @@ public class MainService extends Service implements ExoPlayer.EventListener {
      * Release ExoPlayer.
      */
     private void releasePlayer() {
+        mTrackPreloader.cancelAll();
+        mExoPlayer.removeListener(mTrackPreloader);
+        mExoPlayer.removeListener(mTransitionMetrics);
+        mExoPlayer.removeAnalyticsListener(mQoeMetrics);
+        mExoPlayer.removeAnalyticsListener(mLoudnessNormalizer);
+        mLoudnessNormalizer.release();
+        mSeekIndexStore.release();
+        if (mPlaylist != null) {
+            mExoPlayer.removeListener(mPlaylist);
+        }
         mExoPlayer.removeListener(this);
         mExoPlayer.stop();
         mExoPlayer.release();
         mExoPlayer = null;
+        mMediaCache.release();
     }
 
     /**
@@ -192,14 +563,26 @@ public class MainService extends Service implements ExoPlayer.EventListener {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        MainPosition mainPosition = new MainPosition(mExoPlayer.getCurrentWindowIndex(),
-                mExoPlayer.getCurrentPosition());
-        MainStorage.getInstance(this).storePosition(mainPosition);
+        mPlaylistLoader.cancel();
+        mExecutor.shutdownNow();
+        mPreloadExecutor.shutdownNow();
+        mBrowseExecutor.shutdownNow();
+        checkpoint();
+        boolean restart = MainStorage.getInstance(this).shouldRestartService();
+        if (restart) {
+            saveSnapshot();
+        }
+        // Let the last checkpoint and the snapshot be written.
+        mCheckpointExecutor.shutdown();
         releasePlayer();
         unsubscribe(mPlayingDisposable);
+        mPlaybackServer.stop();
+        mMemoryPolicy.release();
+        mUpdateScheduler.cancel();
         mHandler.removeCallbacksAndMessages(null);
         mMediaSession.setActive(false);
-        if (MainStorage.getInstance(this).shouldRestartService()) {
+        PlaybackEventBus.clearState();
+        if (restart) {
             Intent intent = new Intent(this, RestartServiceBroadcastReceiver.class);
             sendBroadcast(intent);
         } else {
@@ -232,27 +615,38 @@ public class MainService extends Service implements ExoPlayer.EventListener {
     @Override
     public void onPositionDiscontinuity(int reason) {
         if (reason == DISCONTINUITY_REASON_PERIOD_TRANSITION) {
-            mStateBuilder = new PlaybackStateCompat.Builder()
-                    .setState(PlaybackStateCompat.STATE_PLAYING, mExoPlayer.getCurrentWindowIndex(), 1f)
-                    .setBufferedPosition(mExoPlayer.getDuration())
-                    .setActions(
-                            PlaybackStateCompat.ACTION_PLAY |
-                                    PlaybackStateCompat.ACTION_PAUSE |
-                                    PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
-                                    PlaybackStateCompat.ACTION_SKIP_TO_NEXT |
-                                    PlaybackStateCompat.ACTION_PLAY_PAUSE |
-                                    PlaybackStateCompat.ACTION_SEEK_TO);
+            mStateBuilder.setState(PlaybackStateCompat.STATE_PLAYING, mExoPlayer.getCurrentPosition(), 1f)
+                    .setBufferedPosition(mExoPlayer.getDuration());
         } else if (reason == DISCONTINUITY_REASON_SEEK_ADJUSTMENT) {
             mExoPlayer.setPlayWhenReady(true);
         }
+        checkpoint();
+        updateNotification();
+        publishSample(getCurrentSample());
+    }
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, int reason) {
+        Sample sample = getCurrentSample();
+        if (reason == TIMELINE_CHANGE_REASON_PREPARED && sample != null) {
+            publishSample(sample);
+        }
+        // The duration of the current window may only be known now.
         updateNotification();
-        SAMPLE_SUBJECT.publish(mSamples.get(mExoPlayer.getCurrentWindowIndex()));
     }
 
     @Override
     public void onIsPlayingChanged(boolean isPlaying) {
+        mHandler.removeCallbacks(mCheckpointRunnable);
+        mHandler.removeCallbacks(mSnapshotRunnable);
+        if (isPlaying) {
+            mHandler.postDelayed(mCheckpointRunnable, CHECKPOINT_INTERVAL);
+            mHandler.postDelayed(mSnapshotRunnable, mSnapshotInterval);
+        } else {
+            checkpoint();
+        }
         updateNotification();
-        PLAYING_SUBJECT.publish(mExoPlayer.getPlayWhenReady());
+        PLAYING.publish(mExoPlayer.getPlayWhenReady());
     }
 
     /**
@@ -271,6 +665,7 @@ public class MainService extends Service implements ExoPlayer.EventListener {
 
         @Override
         public void onSkipToPrevious() {
+            mTransitionMetrics.onSkipRequested();
             if (mExoPlayer.getCurrentPosition() <= MAX_POSITION_FOR_SEEK_TO_PREVIOUS) {
                 mExoPlayer.previous();
             } else {
@@ -280,6 +675,7 @@ public class MainService extends Service implements ExoPlayer.EventListener {
 
         @Override
         public void onSkipToNext() {
+            mTransitionMetrics.onSkipRequested();
             mExoPlayer.next();
         }
 
@@ -287,23 +683,135 @@ public class MainService extends Service implements ExoPlayer.EventListener {
         public void onSeekTo(long pos) {
             mExoPlayer.seekTo(pos);
         }
-    }
 
-    private void updateNotification() {
-        mHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                if (mExoPlayer.getDuration() != C.TIME_UNSET) {
-                    mMetadataBuilder.putLong(MediaMetadataCompat.METADATA_KEY_DURATION, mExoPlayer.getDuration());
-                    mMediaSession.setMetadata(mMetadataBuilder.build());
+        /**
+         * Plays the best match for the query, or just resumes playback if there is none or the
+         * search index is still being built.
+         */
+        @Override
+        public void onPlayFromSearch(String query, Bundle extras) {
+            if (mSearchIndex != null && !TextUtils.isEmpty(query)) {
+                int[] results = mSearchIndex.search(query, 1);
+                if (results.length > 0) {
+                    mTransitionMetrics.onSkipRequested();
+                    mPlaylist.seekTo(results[0], 0);
                 }
-                mHandler.post(this);
             }
-        });
+            mExoPlayer.setPlayWhenReady(true);
+        }
+
+        /**
+         * Plays a sample picked in a media browser. Ignored while the catalog is loading.
+         */
+        @Override
+        public void onPlayFromMediaId(String mediaId, Bundle extras) {
+            int sampleID = MediaLibrary.getSampleID(mediaId);
+            if (mPlaylist == null || !mPlaylist.hasCatalog()
+                    || sampleID == MainPosition.UNKNOWN_SAMPLE_ID) {
+                return;
+            }
+            int index = SampleCatalog.getInstance(MainService.this).indexOf(sampleID);
+            if (index != SampleIdIndex.NOT_FOUND) {
+                mTransitionMetrics.onSkipRequested();
+                mPlaylist.seekTo(index, 0);
+                mExoPlayer.setPlayWhenReady(true);
+            }
+        }
+    }
+
+    /**
+     * Publishes the current sample and moves it to the front of the recently played samples.
+     */
+    private void publishSample(@Nullable Sample sample) {
+        if (sample == null) {
+            return;
+        }
+        SAMPLE.publish(sample);
+        if (sample != mRecentSample) {
+            mRecentSample = sample;
+            MainStorage.getInstance(this).addRecentSample(sample.getSampleID());
+            // Have the waveform ready by the time the player is opened.
+            WaveformCache.getInstance(this).prefetch(sample);
+            notifyChildrenChanged(MediaLibrary.RECENTS_ID);
+        }
+    }
+
+    /**
+     * Queues the current position to the {@link CheckpointStore}. Only the values are captured on
+     * the main thread, the write happens on the checkpoint executor.
+     */
+    private void checkpoint() {
+        Sample sample = getCurrentSample();
+        if (sample == null) {
+            // Nothing is playing yet, keep the previous checkpoint.
+            return;
+        }
+        // The catalog position stands in for the window index of positions without a sample ID.
+        mCheckpointStore.write(new MainPosition(mPlaylist.getCurrentIndex(),
+                mExoPlayer.getCurrentPosition(),
+                sample.getSampleID(),
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * Requests a MediaSession and notification update. Bursts of player events are coalesced by
+     * {@link #mUpdateScheduler} into a single {@link #publishUpdate()}.
+     */
+    private void updateNotification() {
+        mUpdateScheduler.schedule();
+    }
+
+    /**
+     * Publishes the current state to the snapshot channel, the MediaSession and the notification.
+     * The duration is only published when it changes, the state only when it differs from the last
+     * published one.
+     */
+    private void publishUpdate() {
+        if (mExoPlayer == null) {
+            return;
+        }
+        publishSnapshot();
+        Sample sample = getCurrentSample();
+        if (sample == null) {
+            return;
+        }
+        long duration = mExoPlayer.getDuration();
+        if (duration != C.TIME_UNSET && duration != mPublishedDuration) {
+            mMetadataBuilder.putLong(MediaMetadataCompat.METADATA_KEY_DURATION, duration);
+            mMediaSession.setMetadata(mMetadataBuilder.build());
+            mPublishedDuration = duration;
+        }
         PlaybackStateCompat playbackStateCompat = mStateBuilder.build();
+        if (sample == mPublishedSample && mPublishedState != null
+                && playbackStateCompat.getState() == mPublishedState.getState()
+                && playbackStateCompat.getPosition() == mPublishedState.getPosition()) {
+            return;
+        }
         mMediaSession.setPlaybackState(playbackStateCompat);
-        Sample sample = mSamples.get(mExoPlayer.getCurrentWindowIndex());
         showNotification(playbackStateCompat, sample);
+        mPublishedState = playbackStateCompat;
+        mPublishedSample = sample;
+    }
+
+    /**
+     * Publishes a {@link PlaybackSnapshot}. Clients extrapolate the position between snapshots,
+     * the periodic ones while playing only correct drift.
+     */
+    private void publishSnapshot() {
+        if (mExoPlayer != null) {
+            SNAPSHOT.publish(PlaybackSnapshot.of(mExoPlayer, getCurrentSample()));
+        }
+    }
+
+    /**
+     * @return The sample of the current playlist window, which is stored as its media source tag,
+     * or null while the playlist is loading or moving to another sample.
+     */
+    private Sample getCurrentSample() {
+        if (mPlaylist == null || mPlaylist.isSeekPending()) {
+            return null;
+        }
+        return (Sample) mExoPlayer.getCurrentTag();
     }
 
     /**
@@ -314,69 +822,9 @@ public class MainService extends Service implements ExoPlayer.EventListener {
      * @param sample The Sample object to display title and composer on Notification.
      */
     private void showNotification(PlaybackStateCompat state, Sample sample) {
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, getString(R.string.notification_channel_id));
-
-        int icon;
-        String play_pause;
-        if (state.getState() == PlaybackStateCompat.STATE_PLAYING) {
-            icon = R.drawable.exo_controls_pause;
-            play_pause = getString(R.string.pause);
-        } else {
-            icon = R.drawable.exo_controls_play;
-            play_pause = getString(R.string.play);
-        }
-
-        NotificationCompat.Action playPauseAction = new NotificationCompat.Action(
-                icon, play_pause,
-                MediaButtonReceiver.buildMediaButtonPendingIntent(this,
-                        PlaybackStateCompat.ACTION_PLAY_PAUSE));
-
-        NotificationCompat.Action restartAction = new NotificationCompat
-                .Action(R.drawable.exo_controls_previous, getString(R.string.restart),
-                MediaButtonReceiver.buildMediaButtonPendingIntent
-                        (this, PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS));
-
-        NotificationCompat.Action nextAction = new NotificationCompat
-                .Action(R.drawable.exo_controls_next, getString(R.string.next),
-                MediaButtonReceiver.buildMediaButtonPendingIntent
-                        (this, PlaybackStateCompat.ACTION_SKIP_TO_NEXT));
-
-        PendingIntent contentPendingIntent = PendingIntent.getActivity
-                (this, 0, new Intent(this, MainActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
-
-        Intent intent = new Intent(this, StopServiceBroadcastReceiver.class);
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(this.getApplicationContext(), 0, intent, 0);
-
-        Bitmap largeImage = ((BitmapDrawable) Sample.getComposerArtBySampleID(
-                this,
-                sample.getSampleID())).getBitmap();
-
-        builder.setContentTitle(sample.getTitle())
-                .setContentText(sample.getComposer())
-                .setContentIntent(contentPendingIntent)
-                .setDeleteIntent(pendingIntent)
-                .setSmallIcon(R.drawable.ic_music_note)
-                .setLargeIcon(largeImage)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setPriority(NotificationCompat.PRIORITY_LOW)
-                .addAction(restartAction)
-                .addAction(playPauseAction)
-                .addAction(nextAction).setStyle(new androidx.media.app.NotificationCompat.MediaStyle()
-                .setMediaSession(mMediaSession.getSessionToken())
-                .setShowActionsInCompactView(1, 2));
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            String channelId = getString(R.string.notification_channel_id);
-            NotificationChannel channel = new NotificationChannel(
-                    channelId,
-                    getString(R.string.notification_channel_name),
-                    NotificationManager.IMPORTANCE_LOW);
-            channel.setShowBadge(false);
-            mNotificationManager.createNotificationChannel(channel);
-            builder.setChannelId(channelId);
-        }
-
-        Notification notificationCompat = builder.build();
+        Bitmap largeImage = ArtworkCache.getInstance(this).getNotificationArt(sample);
+        Notification notificationCompat = mNotificationRenderer.render(sample, largeImage,
+                state.getState() == PlaybackStateCompat.STATE_PLAYING);
         if (state.getState() == PlaybackStateCompat.STATE_PAUSED) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
                 stopForeground(STOP_FOREGROUND_DETACH);
@@ -389,6 +837,37 @@ public class MainService extends Service implements ExoPlayer.EventListener {
         }
     }
 
+    /**
+     * Prints the playback metrics, see {@code adb shell dumpsys activity service MainService}.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("QoE:");
+        mQoeMetrics.dump(writer);
+        mMemoryPolicy.dump(writer);
+        writer.println("Remote clients: " + mPlaybackServer.getClientCount() + " updates="
+                + mPlaybackServer.getSentCount());
+        if (mExoPlayer == null) {
+            return;
+        }
+        // The transition times are part of the QoE metrics above.
+        writer.println("Skip latency: " + mTransitionMetrics.getSkipLatency());
+        writer.println("Cache: hit=" + mMediaCache.getHitBytes() + "B miss="
+                + mMediaCache.getMissBytes() + "B ignored=" + mMediaCache.getIgnoredReads()
+                + " space=" + mMediaCache.getCacheSpace() + "B");
+        BufferingProfile profile = mLoadControl.getProfile();
+        writer.println("Buffering: target=" + profile.getTargetBufferBytes() + "B allocated="
+                + mBufferingUsage.getAllocatedBytes(profile) + "B peak="
+                + mBufferingUsage.getPeakAllocatedBytes(profile) + "B");
+        writer.println("Loudness analyzed: " + mLoudnessNormalizer.getAnalyzedCount());
+        writer.println("Seek indexes built: " + mSeekIndexStore.getBuiltCount());
+        writer.println("Resident sources: "
+                + (mPlaylist == null ? 0 : mPlaylist.getResidentCount()));
+        for (RxMainSubject<?> channel : PlaybackEventBus.getChannels()) {
+            writer.println("Channel " + channel);
+        }
+    }
+
     /**
      * This class will be what is returned when an activity binds to this service.
      * The activity will also use this to know what it can get from our service to know
@@ -399,14 +878,98 @@ public class MainService extends Service implements ExoPlayer.EventListener {
         /**
          * This method should be used only for setting the exoplayer instance.
          * If exoplayer's internal are altered or accessed we can not guarantee
-         * things will work correctly.
+         * things will work correctly. Playback state should be followed through
+         * {@link PlaybackEventBus#SNAPSHOT} instead of polling the player.
          */
         SimpleExoPlayer getExoPlayerInstance() {
             return mExoPlayer;
         }
 
+        /**
+         * @return The current sample, or null while the playlist is still loading.
+         */
         Sample getSample() {
-            return mSamples.get(mExoPlayer.getCurrentWindowIndex());
+            return getCurrentSample();
+        }
+
+        /**
+         * @return The media cache, which exposes hit and miss statistics.
+         */
+        MediaCache getMediaCache() {
+            return mMediaCache;
+        }
+
+        /**
+         * @return The transition and skip latency metrics.
+         */
+        TransitionMetrics getTransitionMetrics() {
+            return mTransitionMetrics;
+        }
+
+        /**
+         * @return The quality of experience metrics, which may be read from any thread.
+         */
+        QoeMetrics getQoeMetrics() {
+            return mQoeMetrics;
+        }
+
+        /**
+         * Turns loudness normalization on or off. Analysis continues either way.
+         * @param enabled false to play every sample at its original level.
+         */
+        void setLoudnessNormalization(boolean enabled) {
+            mLoudnessNormalizer.setEnabled(enabled);
+        }
+
+        /**
+         * Changes how much of the upcoming samples is buffered ahead.
+         * @param policy The new preload policy.
+         */
+        void setPreloadPolicy(TrackPreloader.Policy policy) {
+            mTrackPreloader.setPolicy(policy);
+        }
+
+        /**
+         * Switches the buffering profile of the running player and remembers it for later ones.
+         * @param profile The new buffering profile.
+         */
+        void setBufferingProfile(BufferingProfile profile) {
+            mLoadControl.setProfile(profile);
+            MainStorage.getInstance(MainService.this).setBufferingProfile(profile);
+        }
+
+        BufferingProfile getBufferingProfile() {
+            return mLoadControl.getProfile();
+        }
+
+        /**
+         * Changes how often snapshots are published while playing. Changes are published
+         * immediately regardless of the interval.
+         * @param intervalMs The interval in milliseconds.
+         */
+        void setSnapshotInterval(long intervalMs) {
+            mSnapshotInterval = Math.max(1, intervalMs);
+            if (mExoPlayer != null && mExoPlayer.isPlaying()) {
+                mHandler.removeCallbacks(mSnapshotRunnable);
+                mHandler.postDelayed(mSnapshotRunnable, mSnapshotInterval);
+            }
+        }
+
+        /**
+         * Searches the catalog by title and composer.
+         * @param query The query.
+         * @param limit The maximum number of results.
+         * @return The matching samples, best match first. Empty while the index is being built.
+         */
+        List<Sample> search(String query, int limit) {
+            List<Sample> samples = new ArrayList<>();
+            if (mSearchIndex != null) {
+                SampleCatalog catalog = SampleCatalog.getInstance(MainService.this);
+                for (int position : mSearchIndex.search(query, limit)) {
+                    samples.add(catalog.getSampleAt(position));
+                }
+            }
+            return samples;
         }
     }
 
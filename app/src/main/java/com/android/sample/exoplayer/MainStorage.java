@@ -10,6 +10,9 @@ class MainStorage {
     private static final String MY_PREFERENCES = "MyPrefs";
     private static final String CURRENT_POSITION = "position";
     private static final String RESTART_SERVICE = "restart_service";
+    private static final String BUFFERING_PROFILE = "buffering_profile";
+    private static final String RECENT_SAMPLES = "recent_samples";
+    private static final int MAX_RECENT_SAMPLES = 50;
     private static final boolean DEFAULT_RESTART_SERVICE = true;
     private static MainStorage sInstance;
     private final SharedPreferences mSharedPref;
@@ -26,16 +29,15 @@ class MainStorage {
         return sInstance;
     }
 
-    public void storePosition(MainPosition currentPosition) {
-        String json = new Gson().toJson(currentPosition);
-        SharedPreferences.Editor editor = mSharedPref.edit();
-        editor.putString(CURRENT_POSITION, json);
-        editor.apply();
-    }
-
-    public MainPosition getPosition() {
+    /**
+     * Reads the position stored by versions before {@link CheckpointStore}.
+     * @return The legacy position, or null if there is none.
+     */
+    public MainPosition getLegacyPosition() {
         String json = mSharedPref.getString(CURRENT_POSITION, null);
-        return new Gson().fromJson(json, MainPosition.class);
+        MainPosition position = new Gson().fromJson(json, MainPosition.class);
+        return position == null ? null : new MainPosition(position.getCurrentWindowIndex(),
+                position.getCurrentPosition());
     }
 
     public void setRestartService(boolean restartService) {
@@ -47,4 +49,61 @@ class MainStorage {
     public boolean shouldRestartService() {
         return mSharedPref.getBoolean(RESTART_SERVICE, DEFAULT_RESTART_SERVICE);
     }
+
+    public void setBufferingProfile(BufferingProfile bufferingProfile) {
+        SharedPreferences.Editor editor = mSharedPref.edit();
+        editor.putString(BUFFERING_PROFILE, bufferingProfile.name());
+        editor.apply();
+    }
+
+    /**
+     * @param defaultProfile The profile to use if none has been selected.
+     * @return The selected buffering profile.
+     */
+    public BufferingProfile getBufferingProfile(BufferingProfile defaultProfile) {
+        String name = mSharedPref.getString(BUFFERING_PROFILE, null);
+        for (BufferingProfile bufferingProfile : BufferingProfile.values()) {
+            if (bufferingProfile.name().equals(name)) {
+                return bufferingProfile;
+            }
+        }
+        return defaultProfile;
+    }
+
+    /**
+     * Moves a sample to the front of the recently played samples.
+     * @param sampleID The ID of the played sample.
+     */
+    public void addRecentSample(int sampleID) {
+        StringBuilder recents = new StringBuilder().append(sampleID);
+        int count = 1;
+        for (int recentID : getRecentSampleIDs()) {
+            if (count == MAX_RECENT_SAMPLES) {
+                break;
+            }
+            if (recentID != sampleID) {
+                recents.append(',').append(recentID);
+                count++;
+            }
+        }
+        SharedPreferences.Editor editor = mSharedPref.edit();
+        editor.putString(RECENT_SAMPLES, recents.toString());
+        editor.apply();
+    }
+
+    /**
+     * @return The IDs of the recently played samples, most recent first.
+     */
+    public int[] getRecentSampleIDs() {
+        String recents = mSharedPref.getString(RECENT_SAMPLES, "");
+        if (recents.isEmpty()) {
+            return new int[0];
+        }
+        String[] ids = recents.split(",");
+        int[] sampleIDs = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sampleIDs[i] = Integer.parseInt(ids[i]);
+        }
+        return sampleIDs;
+    }
 }
@@ -0,0 +1,135 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.FileDataSourceFactory;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSinkFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data source stack shared by all media sources of the service. Remote media is read through an
+ * on-disk LRU cache, local schemes like {@code asset://} are read directly.
+ */
+final class MediaCache {
+
+    private static final String CACHE_DIRECTORY = "media";
+    private final SimpleCache mCache;
+    private final DataSource.Factory mDataSourceFactory;
+    private final AtomicLong mHitBytes = new AtomicLong();
+    private final AtomicLong mMissBytes = new AtomicLong();
+    private final AtomicLong mIgnoredReads = new AtomicLong();
+
+    /**
+     * Creates the cache in the application cache directory, sized by
+     * {@code R.integer.media_cache_max_mb}.
+     * @param context   The application context.
+     * @param userAgent The user agent for remote requests.
+     */
+    MediaCache(Context context, String userAgent) {
+        this(context, new File(context.getCacheDir(), CACHE_DIRECTORY),
+                context.getResources().getInteger(R.integer.media_cache_max_mb) * 1024L * 1024L,
+                userAgent);
+    }
+
+    /**
+     * @param context   The application context.
+     * @param directory The cache directory, which must not be used by another instance.
+     * @param maxBytes  The size budget of the cache, in bytes.
+     * @param userAgent The user agent for remote requests.
+     */
+    MediaCache(Context context, File directory, long maxBytes, String userAgent) {
+        mCache = new SimpleCache(directory, new LeastRecentlyUsedCacheEvictor(maxBytes),
+                new ExoDatabaseProvider(context));
+        DataSource.Factory httpDataSourceFactory = new DefaultHttpDataSourceFactory(userAgent,
+                new TransferListener() {
+                    @Override
+                    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+                    }
+
+                    @Override
+                    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+                    }
+
+                    @Override
+                    public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+                        mMissBytes.addAndGet(bytesTransferred);
+                    }
+
+                    @Override
+                    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+                    }
+                });
+        DataSource.Factory cacheDataSourceFactory = new CacheDataSourceFactory(mCache,
+                httpDataSourceFactory, new FileDataSourceFactory(),
+                new CacheDataSinkFactory(mCache, CacheDataSink.DEFAULT_FRAGMENT_SIZE),
+                CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+                new CacheDataSource.EventListener() {
+                    @Override
+                    public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+                        mHitBytes.addAndGet(cachedBytesRead);
+                    }
+
+                    @Override
+                    public void onCacheIgnored(int reason) {
+                        mIgnoredReads.incrementAndGet();
+                    }
+                });
+        // DefaultDataSource only delegates remote schemes to the base factory.
+        mDataSourceFactory = new DefaultDataSourceFactory(context, null, cacheDataSourceFactory);
+    }
+
+    /**
+     * @return The factory every media source of the service reads through.
+     */
+    DataSource.Factory getDataSourceFactory() {
+        return mDataSourceFactory;
+    }
+
+    /**
+     * @return The number of bytes served from the cache.
+     */
+    long getHitBytes() {
+        return mHitBytes.get();
+    }
+
+    /**
+     * @return The number of bytes read from the network because they weren't cached.
+     */
+    long getMissBytes() {
+        return mMissBytes.get();
+    }
+
+    /**
+     * @return The number of reads that bypassed the cache after a cache error.
+     */
+    long getIgnoredReads() {
+        return mIgnoredReads.get();
+    }
+
+    /**
+     * @return The number of bytes currently held by the cache.
+     */
+    long getCacheSpace() {
+        return mCache.getCacheSpace();
+    }
+
+    /**
+     * Releases the cache so the directory can be used by another instance.
+     */
+    void release() {
+        mCache.release();
+    }
+}
@@ -0,0 +1,188 @@
+package com.android.sample.exoplayer;
+
+import android.content.res.Resources;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.support.v4.media.MediaDescriptionCompat;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Browsable tree over the catalog for media browser clients: all samples, samples grouped by
+ * composer and recently played samples. Children are only created for the requested page, so a
+ * single result never holds more than a page of items.
+ */
+final class MediaLibrary {
+
+    static final String ROOT_ID = "__ROOT__";
+    /**
+     * The root of callers that may connect but not browse, it has no children.
+     */
+    static final String EMPTY_ROOT_ID = "__EMPTY__";
+    static final String ALL_ID = "__ALL__";
+    static final String COMPOSERS_ID = "__COMPOSERS__";
+    static final String RECENTS_ID = "__RECENTS__";
+    private static final String COMPOSER_PREFIX = "__COMPOSER__/";
+    private static final String SAMPLE_PREFIX = "__SAMPLE__/";
+    private final Resources mResources;
+    private final SampleCatalog mCatalog;
+    private final String[] mComposers;
+    private final int[][] mComposerSamples;
+
+    /**
+     * Groups the catalog by composer. Reads every sample, so it should not be called on the main
+     * thread.
+     * @param resources The resources the titles of the browsable items are taken from.
+     * @param catalog   The catalog.
+     */
+    MediaLibrary(Resources resources, SampleCatalog catalog) {
+        mResources = resources;
+        mCatalog = catalog;
+        Map<String, int[]> groups = new HashMap<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            String composer = catalog.getSampleAt(i).getComposer();
+            if (composer == null) {
+                continue;
+            }
+            // The first element holds the number of samples.
+            int[] group = groups.get(composer);
+            if (group == null) {
+                group = new int[4];
+            } else if (group[0] + 1 == group.length) {
+                group = Arrays.copyOf(group, group.length * 2);
+            }
+            group[++group[0]] = i;
+            groups.put(composer, group);
+        }
+        mComposers = groups.keySet().toArray(new String[0]);
+        Arrays.sort(mComposers, String.CASE_INSENSITIVE_ORDER);
+        mComposerSamples = new int[mComposers.length][];
+        for (int i = 0; i < mComposers.length; i++) {
+            int[] group = groups.get(mComposers[i]);
+            mComposerSamples[i] = Arrays.copyOfRange(group, 1, group[0] + 1);
+        }
+    }
+
+    /**
+     * Gets a page of children.
+     * @param parentId        The media ID of the parent.
+     * @param page            The page, starting at 0. Pages past the end are empty.
+     * @param pageSize        The number of items per page, at least 1.
+     * @param recentSampleIDs The IDs of the recently played samples, most recent first.
+     * @return The children, or null if the parent is unknown.
+     * @throws IllegalArgumentException If the page is negative or the page size is not positive.
+     */
+    @Nullable
+    List<MediaItem> getChildren(String parentId, int page, int pageSize, int[] recentSampleIDs) {
+        if (page < 0 || pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page " + page + " of size " + pageSize);
+        }
+        // Can't overflow a long, indexes are clamped to each list's size below.
+        long from = (long) page * pageSize;
+        long to = from + pageSize;
+        List<MediaItem> items = new ArrayList<>();
+        if (EMPTY_ROOT_ID.equals(parentId)) {
+            return items;
+        } else if (ROOT_ID.equals(parentId)) {
+            String[] ids = {ALL_ID, COMPOSERS_ID, RECENTS_ID};
+            int[] titles = {
+                    R.string.browse_all, R.string.browse_composers, R.string.browse_recents};
+            for (int i = clamp(from, ids.length); i < clamp(to, ids.length); i++) {
+                items.add(createBrowsableItem(ids[i], mResources.getString(titles[i]), null));
+            }
+        } else if (ALL_ID.equals(parentId)) {
+            for (int i = clamp(from, mCatalog.size()); i < clamp(to, mCatalog.size()); i++) {
+                items.add(createPlayableItem(mCatalog.getSampleAt(i)));
+            }
+        } else if (COMPOSERS_ID.equals(parentId)) {
+            for (int i = clamp(from, mComposers.length); i < clamp(to, mComposers.length); i++) {
+                int count = mComposerSamples[i].length;
+                items.add(createBrowsableItem(COMPOSER_PREFIX + i, mComposers[i],
+                        mResources.getQuantityString(R.plurals.browse_track_count, count, count)));
+            }
+        } else if (RECENTS_ID.equals(parentId)) {
+            int end = clamp(to, recentSampleIDs.length);
+            for (int i = clamp(from, recentSampleIDs.length); i < end; i++) {
+                Sample sample = mCatalog.getSampleByID(recentSampleIDs[i]);
+                if (sample != null) {
+                    items.add(createPlayableItem(sample));
+                }
+            }
+        } else if (parentId.startsWith(COMPOSER_PREFIX)) {
+            int composer = parseIndex(parentId.substring(COMPOSER_PREFIX.length()));
+            if (composer < 0 || composer >= mComposers.length) {
+                return null;
+            }
+            int[] samples = mComposerSamples[composer];
+            for (int i = clamp(from, samples.length); i < clamp(to, samples.length); i++) {
+                items.add(createPlayableItem(mCatalog.getSampleAt(samples[i])));
+            }
+        } else {
+            return null;
+        }
+        return items;
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return The media ID of the playable item of the sample.
+     */
+    static String getMediaId(int sampleID) {
+        return SAMPLE_PREFIX + sampleID;
+    }
+
+    /**
+     * @param mediaId A media ID of a playable item.
+     * @return The sample ID, or {@link MainPosition#UNKNOWN_SAMPLE_ID} if the media ID is not
+     * one of a sample.
+     */
+    static int getSampleID(String mediaId) {
+        if (mediaId == null || !mediaId.startsWith(SAMPLE_PREFIX)) {
+            return MainPosition.UNKNOWN_SAMPLE_ID;
+        }
+        try {
+            return Integer.parseInt(mediaId.substring(SAMPLE_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return MainPosition.UNKNOWN_SAMPLE_ID;
+        }
+    }
+
+    /**
+     * @return The index, or the size if the index is past the end.
+     */
+    private static int clamp(long index, int size) {
+        return (int) Math.min(index, size);
+    }
+
+    private static int parseIndex(String index) {
+        try {
+            return Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static MediaItem createBrowsableItem(String mediaId, String title,
+                                                 @Nullable String subtitle) {
+        MediaDescriptionCompat description = new MediaDescriptionCompat.Builder()
+                .setMediaId(mediaId)
+                .setTitle(title)
+                .setSubtitle(subtitle)
+                .build();
+        return new MediaItem(description, MediaItem.FLAG_BROWSABLE);
+    }
+
+    private static MediaItem createPlayableItem(Sample sample) {
+        MediaDescriptionCompat description = new MediaDescriptionCompat.Builder()
+                .setMediaId(getMediaId(sample.getSampleID()))
+                .setTitle(sample.getTitle())
+                .setSubtitle(sample.getComposer())
+                .build();
+        return new MediaItem(description, MediaItem.FLAG_PLAYABLE);
+    }
+}
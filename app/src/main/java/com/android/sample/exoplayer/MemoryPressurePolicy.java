@@ -0,0 +1,272 @@
+package com.android.sample.exoplayer;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Degrades in tiers under memory pressure instead of waiting to be killed. Every tier has
+ * reclaimers that run in order when the tier is entered, tiers are cumulative. The system never
+ * reports that pressure cleared, so while degraded the trim level is polled and the reclaimers
+ * of the tiers left are restored in reverse order. The bytes each tier freed are logged and
+ * dumped for tuning, apart from target reductions that are only freed over time, which are
+ * reported on their own. Must be used on the handler's thread.
+ */
+final class MemoryPressurePolicy {
+
+    private static final String TAG = MemoryPressurePolicy.class.getSimpleName();
+    static final long RECOVERY_CHECK_INTERVAL_MS = 30_000;
+    /**
+     * The trim level reported by the system for this process.
+     */
+    static final TrimLevelSource SYSTEM = new TrimLevelSource() {
+        @Override
+        public int getTrimLevel() {
+            ActivityManager.RunningAppProcessInfo info =
+                    new ActivityManager.RunningAppProcessInfo();
+            ActivityManager.getMyMemoryState(info);
+            return info.lastTrimLevel;
+        }
+    };
+    private final Handler mHandler;
+    private final TrimLevelSource mTrimLevelSource;
+    private final List<List<Entry>> mEntries = new ArrayList<>();
+    private final int[] mEnteredCounts = new int[Tier.values().length];
+    private final long[] mReclaimedBytes = new long[Tier.values().length];
+    private final long[] mTargetBytes = new long[Tier.values().length];
+    private Tier mTier = Tier.NORMAL;
+    private final Runnable mRecoveryCheck = new Runnable() {
+        @Override
+        public void run() {
+            Tier tier = getTier(mTrimLevelSource.getTrimLevel());
+            if (tier.compareTo(mTier) < 0) {
+                relax(tier);
+            }
+            if (mTier != Tier.NORMAL) {
+                mHandler.postDelayed(this, RECOVERY_CHECK_INTERVAL_MS);
+            }
+        }
+    };
+
+    /**
+     * @param handler         The handler the trim level is polled on while degraded.
+     * @param trimLevelSource The source of the current trim level, usually {@link #SYSTEM}.
+     */
+    MemoryPressurePolicy(Handler handler, TrimLevelSource trimLevelSource) {
+        mHandler = handler;
+        mTrimLevelSource = trimLevelSource;
+        for (int i = 0; i < Tier.values().length; i++) {
+            mEntries.add(new ArrayList<Entry>());
+        }
+    }
+
+    /**
+     * Adds a reclaimer to a tier, after the ones already added.
+     * @param tier      The tier, not {@link Tier#NORMAL}.
+     * @param name      The name used in the report.
+     * @param reclaimer The reclaimer.
+     */
+    void add(Tier tier, String name, Reclaimer reclaimer) {
+        mEntries.get(tier.ordinal()).add(new Entry(name, reclaimer, false));
+    }
+
+    /**
+     * Adds a reclaimer that frees memory over time, after the ones already added. The bytes it
+     * returns are the reduction it aims at, reported as a target rather than as reclaimed.
+     * @param tier      The tier, not {@link Tier#NORMAL}.
+     * @param name      The name used in the report.
+     * @param reclaimer The reclaimer.
+     */
+    void addTarget(Tier tier, String name, Reclaimer reclaimer) {
+        mEntries.get(tier.ordinal()).add(new Entry(name, reclaimer, true));
+    }
+
+    /**
+     * Enters the tier of a trim level if it is higher than the current one.
+     * @param level The level passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    void onTrimMemory(int level) {
+        Tier tier = getTier(level);
+        if (tier.compareTo(mTier) <= 0) {
+            return;
+        }
+        if (mTier == Tier.NORMAL) {
+            mHandler.postDelayed(mRecoveryCheck, RECOVERY_CHECK_INTERVAL_MS);
+        }
+        for (Tier next : Tier.values()) {
+            if (next.compareTo(mTier) > 0 && next.compareTo(tier) <= 0) {
+                enter(next);
+            }
+        }
+        mTier = tier;
+    }
+
+    /**
+     * @return The current tier.
+     */
+    Tier getTier() {
+        return mTier;
+    }
+
+    /**
+     * @return The bytes freed by a tier since the policy was created.
+     */
+    long getReclaimedBytes(Tier tier) {
+        return mReclaimedBytes[tier.ordinal()];
+    }
+
+    /**
+     * @return The target reductions of a tier since the policy was created, see
+     * {@link #addTarget(Tier, String, Reclaimer)}.
+     */
+    long getTargetBytes(Tier tier) {
+        return mTargetBytes[tier.ordinal()];
+    }
+
+    /**
+     * Stops polling the trim level, the current tier is kept.
+     */
+    void release() {
+        mHandler.removeCallbacks(mRecoveryCheck);
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("Memory: tier=" + mTier);
+        for (Tier tier : Tier.values()) {
+            if (tier == Tier.NORMAL) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder("  ").append(tier)
+                    .append(": entered=").append(mEnteredCounts[tier.ordinal()])
+                    .append(" reclaimed=").append(mReclaimedBytes[tier.ordinal()]).append('B')
+                    .append(" target=").append(mTargetBytes[tier.ordinal()]).append('B');
+            for (Entry entry : mEntries.get(tier.ordinal())) {
+                entry.append(line, entry.mReclaimedBytes);
+            }
+            writer.println(line);
+        }
+    }
+
+    /**
+     * @param level A trim level.
+     * @return The tier for the level.
+     */
+    static Tier getTier(int level) {
+        switch (level) {
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE:
+            case ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN:
+            case ComponentCallbacks2.TRIM_MEMORY_BACKGROUND:
+                return Tier.MODERATE;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+            case ComponentCallbacks2.TRIM_MEMORY_MODERATE:
+                return Tier.LOW;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+            case ComponentCallbacks2.TRIM_MEMORY_COMPLETE:
+                return Tier.CRITICAL;
+            default:
+                return level > ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                        ? Tier.CRITICAL : Tier.NORMAL;
+        }
+    }
+
+    private void enter(Tier tier) {
+        long bytes = 0;
+        long targetBytes = 0;
+        StringBuilder details = new StringBuilder();
+        for (Entry entry : mEntries.get(tier.ordinal())) {
+            long reclaimed = entry.mReclaimer.reclaim();
+            entry.mReclaimedBytes += reclaimed;
+            if (entry.mTarget) {
+                targetBytes += reclaimed;
+            } else {
+                bytes += reclaimed;
+            }
+            entry.append(details, reclaimed);
+        }
+        mEnteredCounts[tier.ordinal()]++;
+        mReclaimedBytes[tier.ordinal()] += bytes;
+        mTargetBytes[tier.ordinal()] += targetBytes;
+        Log.i(TAG, "Entered " + tier + ", reclaimed " + bytes + "B, target " + targetBytes + "B:"
+                + details);
+    }
+
+    private void relax(Tier tier) {
+        for (int i = mTier.ordinal(); i > tier.ordinal(); i--) {
+            List<Entry> entries = mEntries.get(i);
+            for (int j = entries.size() - 1; j >= 0; j--) {
+                entries.get(j).mReclaimer.restore();
+            }
+        }
+        Log.i(TAG, "Relaxed from " + mTier + " to " + tier);
+        mTier = tier;
+    }
+
+    /**
+     * The tiers, in order of increasing pressure.
+     */
+    enum Tier {
+        NORMAL,
+        /**
+         * The process is running fine but the system is getting low, or the UI is hidden.
+         */
+        MODERATE,
+        /**
+         * The system is low, or this process is in the middle of the background LRU list.
+         */
+        LOW,
+        /**
+         * This process is next to be killed.
+         */
+        CRITICAL
+    }
+
+    /**
+     * Frees memory when a tier is entered and takes it back when the tier is left.
+     */
+    interface Reclaimer {
+
+        /**
+         * @return The bytes freed, or for a target reclaimer the bytes it aims to free.
+         */
+        long reclaim();
+
+        void restore();
+    }
+
+    interface TrimLevelSource {
+
+        /**
+         * @return The current trim level, 0 if there is no pressure.
+         */
+        int getTrimLevel();
+    }
+
+    private static final class Entry {
+
+        private final String mName;
+        private final Reclaimer mReclaimer;
+        private final boolean mTarget;
+        private long mReclaimedBytes;
+
+        private Entry(String name, Reclaimer reclaimer, boolean target) {
+            mName = name;
+            mReclaimer = reclaimer;
+            mTarget = target;
+        }
+
+        /**
+         * Appends the entry's bytes to a report, marking target reductions.
+         */
+        private void append(StringBuilder builder, long bytes) {
+            builder.append(' ').append(mName).append('=').append(bytes).append('B');
+            if (mTarget) {
+                builder.append("(target)");
+            }
+        }
+    }
+}
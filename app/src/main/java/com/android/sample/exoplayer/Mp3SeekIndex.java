@@ -0,0 +1,308 @@
+package com.android.sample.exoplayer;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.MpegAudioHeader;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Exact time to byte offset table of an MP3 file, built by walking its frame headers. VBR files
+ * without a Xing or VBRI header can otherwise only be seeked by assuming a constant bitrate,
+ * which lands seconds away from the target in long files. Entries are the first frame at or
+ * after each second, so a seek reads from at most one second before its target.
+ */
+final class Mp3SeekIndex implements SeekMap {
+
+    private static final long INTERVAL_US = 1_000_000;
+    private static final int ID3_HEADER_SIZE = 10;
+    private static final int MAX_SYNC_BYTES = 128 * 1024;
+    private static final int MIN_FRAME_COUNT = 4;
+    // A day of audio.
+    private static final int MAX_ENTRY_COUNT = 24 * 60 * 60;
+    private static final int XING = 0x58696e67;
+    private static final int INFO = 0x496e666f;
+    private static final int VBRI = 0x56425249;
+    private static final int VBRI_OFFSET = 36;
+    private final long[] mTimesUs;
+    private final long[] mPositions;
+    private final long mDurationUs;
+
+    private Mp3SeekIndex(long[] timesUs, long[] positions, long durationUs) {
+        mTimesUs = timesUs;
+        mPositions = positions;
+        mDurationUs = durationUs;
+    }
+
+    /**
+     * Reads an MP3 file to its end and indexes its audio frames.
+     * @param stream The file, read from its start. Not closed.
+     * @return The index, or null if the stream doesn't contain MPEG audio.
+     * @throws IOException Exception thrown if the stream can't be read.
+     */
+    @Nullable
+    static Mp3SeekIndex build(InputStream stream) throws IOException {
+        Reader reader = new Reader(stream);
+        reader.skipId3Tags();
+        MpegAudioHeader header = new MpegAudioHeader();
+        long[] timesUs = new long[64];
+        long[] positions = new long[64];
+        int count = 0;
+        int frameCount = 0;
+        long nextEntryUs = 0;
+        // Time is kept as a basis and a sample count, so it doesn't drift by rounding per frame.
+        long basisUs = 0;
+        long sampleCount = 0;
+        int sampleRate = 0;
+        int headerData = 0;
+        int headerBytes = 0;
+        int skippedBytes = 0;
+        boolean seekFrameChecked = false;
+        int value;
+        while ((value = reader.read()) >= 0) {
+            headerData = (headerData << 8) | value;
+            if (++headerBytes < 4) {
+                continue;
+            }
+            if (!MpegAudioHeader.populateHeader(headerData, header)) {
+                if (++skippedBytes > MAX_SYNC_BYTES) {
+                    break;
+                }
+                continue;
+            }
+            long position = reader.getPosition() - 4;
+            headerData = 0;
+            headerBytes = 0;
+            skippedBytes = 0;
+            boolean frameRead = false;
+            if (!seekFrameChecked) {
+                seekFrameChecked = true;
+                if (isSeekFrame(reader, header)) {
+                    // The extractor consumes a Xing, Info or VBRI frame without outputting audio.
+                    continue;
+                }
+                frameRead = true;
+            }
+            if (sampleRate != header.sampleRate) {
+                if (sampleRate != 0) {
+                    basisUs += sampleCount * C.MICROS_PER_SECOND / sampleRate;
+                }
+                sampleCount = 0;
+                sampleRate = header.sampleRate;
+            }
+            long timeUs = basisUs + sampleCount * C.MICROS_PER_SECOND / sampleRate;
+            if (timeUs >= nextEntryUs) {
+                if (count == timesUs.length) {
+                    timesUs = Arrays.copyOf(timesUs, count * 2);
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                timesUs[count] = timeUs;
+                positions[count] = position;
+                count++;
+                nextEntryUs = timeUs + INTERVAL_US;
+            }
+            sampleCount += header.samplesPerFrame;
+            frameCount++;
+            if (!frameRead && !reader.skip(header.frameSize - 4)) {
+                break;
+            }
+        }
+        if (frameCount < MIN_FRAME_COUNT) {
+            return null;
+        }
+        long durationUs = basisUs + sampleCount * C.MICROS_PER_SECOND / sampleRate;
+        return new Mp3SeekIndex(Arrays.copyOf(timesUs, count), Arrays.copyOf(positions, count),
+                durationUs);
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(DataOutputStream)}.
+     * @throws IOException Exception thrown if the stream can't be read or is malformed.
+     */
+    static Mp3SeekIndex readFrom(DataInputStream input) throws IOException {
+        long durationUs = input.readLong();
+        int count = input.readInt();
+        if (count <= 0 || count > MAX_ENTRY_COUNT) {
+            throw new IOException("Invalid entry count " + count);
+        }
+        long[] timesUs = new long[count];
+        long[] positions = new long[count];
+        for (int i = 0; i < count; i++) {
+            timesUs[i] = input.readLong();
+            positions[i] = input.readLong();
+        }
+        return new Mp3SeekIndex(timesUs, positions, durationUs);
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeLong(mDurationUs);
+        output.writeInt(mTimesUs.length);
+        for (int i = 0; i < mTimesUs.length; i++) {
+            output.writeLong(mTimesUs[i]);
+            output.writeLong(mPositions[i]);
+        }
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    int size() {
+        return mTimesUs.length;
+    }
+
+    /**
+     * @param position A byte offset.
+     * @return The time of the frame starting at the offset, or {@link C#TIME_UNSET} if the offset
+     * is not an entry of the index.
+     */
+    long getTimeUs(long position) {
+        int index = Arrays.binarySearch(mPositions, position);
+        return index < 0 ? C.TIME_UNSET : mTimesUs[index];
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return true;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return mDurationUs;
+    }
+
+    @Override
+    public SeekPoints getSeekPoints(long timeUs) {
+        int index = Arrays.binarySearch(mTimesUs, timeUs);
+        if (index >= 0) {
+            return new SeekPoints(new SeekPoint(mTimesUs[index], mPositions[index]));
+        }
+        // The entry before the target, the extractor decodes forward from there.
+        int after = -index - 1;
+        if (after == 0) {
+            return new SeekPoints(new SeekPoint(mTimesUs[0], mPositions[0]));
+        }
+        SeekPoint before = new SeekPoint(mTimesUs[after - 1], mPositions[after - 1]);
+        if (after == mTimesUs.length) {
+            return new SeekPoints(before);
+        }
+        return new SeekPoints(before, new SeekPoint(mTimesUs[after], mPositions[after]));
+    }
+
+    /**
+     * Reads the rest of a frame whose header has just been read and checks it for a seek header.
+     */
+    private static boolean isSeekFrame(Reader reader, MpegAudioHeader header) throws IOException {
+        byte[] frame = new byte[header.frameSize - 4];
+        if (!reader.readFully(frame)) {
+            return false;
+        }
+        // Offsets from the frame start, as used by the extractor.
+        boolean mpeg1 = (header.version & 1) != 0;
+        boolean mono = header.channels == 1;
+        int xingOffset = mpeg1 ? (mono ? 21 : 36) : (mono ? 13 : 21);
+        int tag = getInt(frame, xingOffset - 4);
+        return tag == XING || tag == INFO || getInt(frame, VBRI_OFFSET - 4) == VBRI;
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        if (offset < 0 || offset + 4 > data.length) {
+            return 0;
+        }
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    /**
+     * Buffered reader keeping track of its position.
+     */
+    private static final class Reader {
+
+        private final BufferedInputStream mStream;
+        private long mPosition;
+
+        Reader(InputStream stream) {
+            mStream = new BufferedInputStream(stream);
+        }
+
+        long getPosition() {
+            return mPosition;
+        }
+
+        int read() throws IOException {
+            int value = mStream.read();
+            if (value >= 0) {
+                mPosition++;
+            }
+            return value;
+        }
+
+        boolean readFully(byte[] data) throws IOException {
+            try {
+                new DataInputStream(mStream).readFully(data);
+            } catch (EOFException e) {
+                return false;
+            }
+            mPosition += data.length;
+            return true;
+        }
+
+        /**
+         * @return false if the end of the stream was reached.
+         */
+        boolean skip(long count) throws IOException {
+            while (count > 0) {
+                long skipped = mStream.skip(count);
+                if (skipped <= 0) {
+                    if (read() < 0) {
+                        return false;
+                    }
+                    skipped = 1;
+                } else {
+                    mPosition += skipped;
+                }
+                count -= skipped;
+            }
+            return true;
+        }
+
+        /**
+         * Skips ID3v2 tags at the current position.
+         */
+        void skipId3Tags() throws IOException {
+            byte[] header = new byte[ID3_HEADER_SIZE];
+            while (true) {
+                mStream.mark(ID3_HEADER_SIZE);
+                int read = 0;
+                int count;
+                while (read < header.length
+                        && (count = mStream.read(header, read, header.length - read)) > 0) {
+                    read += count;
+                }
+                if (read < header.length || header[0] != 'I' || header[1] != 'D'
+                        || header[2] != '3') {
+                    mStream.reset();
+                    return;
+                }
+                mPosition += ID3_HEADER_SIZE;
+                // Synchsafe size, excluding the header and the footer.
+                int size = ((header[6] & 0x7f) << 21) | ((header[7] & 0x7f) << 14)
+                        | ((header[8] & 0x7f) << 7) | (header[9] & 0x7f);
+                if ((header[5] & 0x10) != 0) {
+                    size += ID3_HEADER_SIZE;
+                }
+                if (!skip(size)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.android.sample.exoplayer;
+
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Mp3SeekIndex}es of the samples, built in the background and stored as one file per
+ * sample. Media sources get an {@link ExtractorsFactory} per sample, which extracts with the
+ * index if there is one by the time loading starts and requests it otherwise, so a sample without
+ * an index seeks by estimate until it is indexed. Only local media is indexed, indexing remote
+ * media would download it completely.
+ */
+final class Mp3SeekIndexStore {
+
+    private static final String TAG = Mp3SeekIndexStore.class.getSimpleName();
+    private static final int MAGIC = 0x45584d49;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".idx";
+    private static final int MEMORY_CACHE_SIZE = 32;
+    private static final ExtractorsFactory DEFAULT_EXTRACTORS_FACTORY =
+            new DefaultExtractorsFactory();
+    private final File mDirectory;
+    private final DataSource.Factory mDataSourceFactory;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final LruCache<Integer, Mp3SeekIndex> mIndexes = new LruCache<>(MEMORY_CACHE_SIZE);
+    // Sample IDs with a pending build.
+    private final Set<Integer> mPending =
+            Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final AtomicInteger mBuiltCount = new AtomicInteger();
+
+    /**
+     * @param directory         The directory the indexes are stored in.
+     * @param dataSourceFactory The factory of the data sources the media is read with.
+     */
+    Mp3SeekIndexStore(File directory, DataSource.Factory dataSourceFactory) {
+        mDirectory = directory;
+        mDataSourceFactory = dataSourceFactory;
+    }
+
+    /**
+     * Creates the extractors factory for a sample's media source and requests the sample's index
+     * in the background, so it is at hand when the sample is loaded.
+     * @param sample The sample.
+     * @return The extractors factory.
+     */
+    ExtractorsFactory getExtractorsFactory(final Sample sample) {
+        request(sample);
+        return new ExtractorsFactory() {
+            @Override
+            public Extractor[] createExtractors() {
+                // Called on the loading thread, reading the index file here is fine.
+                Mp3SeekIndex index = get(sample);
+                if (index == null) {
+                    return DEFAULT_EXTRACTORS_FACTORY.createExtractors();
+                }
+                return new Extractor[]{new IndexedMp3Extractor(index)};
+            }
+        };
+    }
+
+    /**
+     * @return The number of indexes built since the store was created.
+     */
+    int getBuiltCount() {
+        return mBuiltCount.get();
+    }
+
+    /**
+     * Drops the indexes held in memory, they are read from their files again when needed.
+     * @return The bytes of the dropped indexes.
+     */
+    long evictMemoryCache() {
+        long bytes = 0;
+        for (Mp3SeekIndex index : mIndexes.snapshot().values()) {
+            // A time and a position per entry.
+            bytes += index.size() * 16L;
+        }
+        mIndexes.evictAll();
+        return bytes;
+    }
+
+    /**
+     * Stops building indexes.
+     */
+    void release() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the index of a sample, reading it from its file if needed. Performs disk I/O, so it
+     * should not be called on the main thread.
+     * @return The index, or null if the sample hasn't been indexed.
+     */
+    @Nullable
+    private Mp3SeekIndex get(Sample sample) {
+        Mp3SeekIndex index = mIndexes.get(sample.getSampleID());
+        if (index == null) {
+            index = read(sample);
+            if (index != null) {
+                mIndexes.put(sample.getSampleID(), index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Loads or builds the index of a sample in the background.
+     */
+    private void request(final Sample sample) {
+        if (!isIndexable(sample) || mIndexes.get(sample.getSampleID()) != null
+                || !mPending.add(sample.getSampleID())) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    if (get(sample) == null) {
+                        build(sample);
+                    }
+                } finally {
+                    mPending.remove(sample.getSampleID());
+                }
+            }
+        });
+    }
+
+    private void build(Sample sample) {
+        Mp3SeekIndex index;
+        DataSource dataSource = mDataSourceFactory.createDataSource();
+        try (DataSourceInputStream input = new DataSourceInputStream(dataSource,
+                new DataSpec(Uri.parse(sample.getUri())))) {
+            index = Mp3SeekIndex.build(input);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to index " + sample.getUri(), e);
+            return;
+        }
+        if (index == null) {
+            // Not MP3, no need to remember it, other formats are rare in the catalog.
+            return;
+        }
+        mIndexes.put(sample.getSampleID(), index);
+        write(sample, index);
+        mBuiltCount.incrementAndGet();
+    }
+
+    @Nullable
+    private Mp3SeekIndex read(Sample sample) {
+        File file = getFile(sample);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION
+                    || input.readInt() != hash(sample)) {
+                return null;
+            }
+            return Mp3SeekIndex.readFrom(input);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + file, e);
+            return null;
+        }
+    }
+
+    private void write(Sample sample, Mp3SeekIndex index) {
+        File file = getFile(sample);
+        // Written aside and renamed, so a loading thread never reads a partial index.
+        File tempFile = new File(file.getPath() + ".tmp");
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(TAG, "Unable to create " + mDirectory);
+            return;
+        }
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(hash(sample));
+            index.writeTo(output);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write " + tempFile, e);
+            return;
+        }
+        if (!tempFile.renameTo(file)) {
+            Log.e(TAG, "Unable to rename " + tempFile);
+        }
+    }
+
+    private File getFile(Sample sample) {
+        return new File(mDirectory, sample.getSampleID() + SUFFIX);
+    }
+
+    private static boolean isIndexable(Sample sample) {
+        String uri = sample.getUri();
+        if (uri == null) {
+            return false;
+        }
+        String scheme = Uri.parse(uri).getScheme();
+        return !"http".equals(scheme) && !"https".equals(scheme);
+    }
+
+    private static int hash(Sample sample) {
+        String uri = sample.getUri();
+        return uri == null ? 0 : uri.hashCode();
+    }
+}
@@ -0,0 +1,110 @@
+package com.android.sample.exoplayer;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import androidx.core.app.NotificationCompat;
+import androidx.media.session.MediaButtonReceiver;
+
+/**
+ * Renders the Media Style notification of {@link MainService}. The channel, actions, intents and
+ * style are created once, an update only patches the sample and the play/pause toggle.
+ */
+final class NotificationRenderer {
+
+    private final NotificationCompat.Builder mPlayingBuilder;
+    private final NotificationCompat.Builder mPausedBuilder;
+
+    /**
+     * @param context      The service context.
+     * @param sessionToken The token of the MediaSession the notification controls.
+     */
+    NotificationRenderer(Context context, MediaSessionCompat.Token sessionToken) {
+        String channelId = context.getString(R.string.notification_channel_id);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    channelId,
+                    context.getString(R.string.notification_channel_name),
+                    NotificationManager.IMPORTANCE_LOW);
+            channel.setShowBadge(false);
+            NotificationManager notificationManager = (NotificationManager)
+                    context.getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager.createNotificationChannel(channel);
+        }
+
+        NotificationCompat.Action pauseAction = new NotificationCompat.Action(
+                R.drawable.exo_controls_pause, context.getString(R.string.pause),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(context,
+                        PlaybackStateCompat.ACTION_PLAY_PAUSE));
+
+        NotificationCompat.Action playAction = new NotificationCompat.Action(
+                R.drawable.exo_controls_play, context.getString(R.string.play),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(context,
+                        PlaybackStateCompat.ACTION_PLAY_PAUSE));
+
+        NotificationCompat.Action restartAction = new NotificationCompat
+                .Action(R.drawable.exo_controls_previous, context.getString(R.string.restart),
+                MediaButtonReceiver.buildMediaButtonPendingIntent
+                        (context, PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS));
+
+        NotificationCompat.Action nextAction = new NotificationCompat
+                .Action(R.drawable.exo_controls_next, context.getString(R.string.next),
+                MediaButtonReceiver.buildMediaButtonPendingIntent
+                        (context, PlaybackStateCompat.ACTION_SKIP_TO_NEXT));
+
+        PendingIntent contentPendingIntent = PendingIntent.getActivity
+                (context, 0, new Intent(context, MainActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+
+        Intent intent = new Intent(context, MainService.StopServiceBroadcastReceiver.class);
+        PendingIntent deletePendingIntent = PendingIntent.getBroadcast(
+                context.getApplicationContext(), 0, intent, 0);
+
+        mPlayingBuilder = createBuilder(context, channelId, contentPendingIntent,
+                deletePendingIntent, sessionToken)
+                .addAction(restartAction)
+                .addAction(pauseAction)
+                .addAction(nextAction);
+        mPausedBuilder = createBuilder(context, channelId, contentPendingIntent,
+                deletePendingIntent, sessionToken)
+                .addAction(restartAction)
+                .addAction(playAction)
+                .addAction(nextAction);
+    }
+
+    /**
+     * Builds the notification for a sample.
+     * @param sample     The Sample object to display title and composer on Notification.
+     * @param largeImage The composer portrait.
+     * @param playing    true to show the pause action, false to show the play action.
+     * @return The notification.
+     */
+    Notification render(Sample sample, Bitmap largeImage, boolean playing) {
+        NotificationCompat.Builder builder = playing ? mPlayingBuilder : mPausedBuilder;
+        return builder.setContentTitle(sample.getTitle())
+                .setContentText(sample.getComposer())
+                .setLargeIcon(largeImage)
+                .build();
+    }
+
+    private static NotificationCompat.Builder createBuilder(
+            Context context, String channelId, PendingIntent contentIntent,
+            PendingIntent deleteIntent, MediaSessionCompat.Token sessionToken) {
+        return new NotificationCompat.Builder(context, channelId)
+                .setContentIntent(contentIntent)
+                .setDeleteIntent(deleteIntent)
+                .setSmallIcon(R.drawable.ic_music_note)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setStyle(new androidx.media.app.NotificationCompat.MediaStyle()
+                        .setMediaSession(sessionToken)
+                        .setShowActionsInCompactView(1, 2));
+    }
+}
@@ -0,0 +1,216 @@
+package com.android.sample.exoplayer;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+
+import com.google.android.exoplayer2.C;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes the first audio track of local media to 16-bit PCM with {@link MediaCodec}, for
+ * analysis off the playback path. Remote media is not supported, it would have to be downloaded
+ * for the analysis. Every call creates its own extractor and codec, so calls may run in
+ * parallel.
+ */
+final class PcmDecoder {
+
+    private static final long TIMEOUT_US = 10_000;
+    private static final String ASSET_PREFIX = "/";
+    private final Context mContext;
+
+    /**
+     * @param context The application context.
+     */
+    PcmDecoder(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * @param uri The media URI.
+     * @return The duration of the audio track in microseconds, or {@link C#TIME_UNSET} if the
+     * media is not local, has no audio track or doesn't declare its duration.
+     * @throws IOException Exception thrown if the media can't be read.
+     */
+    long getDurationUs(Uri uri) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            int track = selectAudioTrack(extractor, uri);
+            if (track < 0) {
+                return C.TIME_UNSET;
+            }
+            MediaFormat format = extractor.getTrackFormat(track);
+            return format.containsKey(MediaFormat.KEY_DURATION)
+                    ? format.getLong(MediaFormat.KEY_DURATION) : C.TIME_UNSET;
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Decodes the audio from a position until the end or until the sink stops it.
+     * @param uri     The media URI.
+     * @param startUs The position to start from, decoding starts at the sync sample before it.
+     * @param sink    The sink receiving the audio.
+     * @return false if the media is not local, has no audio track, isn't decoded to 16-bit PCM or
+     * the sink stopped decoding.
+     * @throws IOException Exception thrown if the media can't be read.
+     */
+    boolean decode(Uri uri, long startUs, Sink sink) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            int track = selectAudioTrack(extractor, uri);
+            if (track < 0) {
+                return false;
+            }
+            MediaFormat format = extractor.getTrackFormat(track);
+            extractor.selectTrack(track);
+            if (startUs > 0) {
+                extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+            }
+            String mimeType = format.getString(MediaFormat.KEY_MIME);
+            MediaCodec codec = MediaCodec.createDecoderByType(mimeType);
+            try {
+                codec.configure(format, null, null, 0);
+                codec.start();
+                return decode(extractor, codec, sink);
+            } finally {
+                codec.release();
+            }
+        } finally {
+            extractor.release();
+        }
+    }
+
+    private static boolean decode(MediaExtractor extractor, MediaCodec codec, Sink sink) {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean formatKnown = false;
+        short[] samples = new short[0];
+        boolean inputEnded = false;
+        while (true) {
+            if (!inputEnded) {
+                int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                if (inputIndex >= 0) {
+                    ByteBuffer inputBuffer = codec.getInputBuffer(inputIndex);
+                    int size = inputBuffer == null ? -1 : extractor.readSampleData(inputBuffer, 0);
+                    if (size < 0) {
+                        codec.queueInputBuffer(inputIndex, 0, 0, 0,
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputEnded = true;
+                    } else {
+                        codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+            int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED
+                    || (outputIndex >= 0 && !formatKnown)) {
+                if (!onFormat(codec.getOutputFormat(), sink)) {
+                    if (outputIndex >= 0) {
+                        codec.releaseOutputBuffer(outputIndex, false);
+                    }
+                    return false;
+                }
+                formatKnown = true;
+            }
+            if (outputIndex >= 0) {
+                ByteBuffer outputBuffer = codec.getOutputBuffer(outputIndex);
+                boolean proceed = true;
+                if (outputBuffer != null && info.size > 0) {
+                    outputBuffer.position(info.offset);
+                    outputBuffer.limit(info.offset + info.size);
+                    ShortBuffer shorts =
+                            outputBuffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int count = shorts.remaining();
+                    if (samples.length < count) {
+                        samples = new short[count];
+                    }
+                    shorts.get(samples, 0, count);
+                    proceed = sink.onSamples(samples, count, info.presentationTimeUs);
+                }
+                codec.releaseOutputBuffer(outputIndex, false);
+                if (!proceed) {
+                    return false;
+                }
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static boolean onFormat(MediaFormat format, Sink sink) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                && format.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                && format.getInteger(MediaFormat.KEY_PCM_ENCODING)
+                != android.media.AudioFormat.ENCODING_PCM_16BIT) {
+            return false;
+        }
+        return sink.onFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+    }
+
+    /**
+     * Sets the media as the extractor's source and finds its first audio track.
+     * @return The track index, or -1 if the media is not local or has no audio track.
+     */
+    private int selectAudioTrack(MediaExtractor extractor, Uri uri) throws IOException {
+        String scheme = uri.getScheme();
+        if ("asset".equals(scheme)) {
+            String path = uri.getPath();
+            if (path != null && path.startsWith(ASSET_PREFIX)) {
+                path = path.substring(ASSET_PREFIX.length());
+            }
+            AssetFileDescriptor descriptor = mContext.getAssets().openFd(path);
+            try {
+                extractor.setDataSource(descriptor.getFileDescriptor(),
+                        descriptor.getStartOffset(), descriptor.getLength());
+            } finally {
+                descriptor.close();
+            }
+        } else if (scheme == null || ContentResolver.SCHEME_FILE.equals(scheme)
+                || ContentResolver.SCHEME_CONTENT.equals(scheme)
+                || ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme)) {
+            extractor.setDataSource(mContext, uri, null);
+        } else {
+            return -1;
+        }
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mimeType = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mimeType != null && mimeType.startsWith("audio/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Receives decoded audio on the decoding thread.
+     */
+    interface Sink {
+
+        /**
+         * Called before the first samples and whenever the output format changes.
+         * @return false to stop decoding.
+         */
+        boolean onFormat(int sampleRate, int channelCount);
+
+        /**
+         * @param samples The interleaved samples, only valid during the call.
+         * @param count   The number of samples.
+         * @param timeUs  The presentation time of the first sample.
+         * @return false to stop decoding.
+         */
+        boolean onSamples(short[] samples, int count, long timeUs);
+    }
+}
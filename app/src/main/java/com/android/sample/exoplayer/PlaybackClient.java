@@ -0,0 +1,162 @@
+package com.android.sample.exoplayer;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+import static com.android.sample.exoplayer.PlaybackEventBus.PLAYING;
+import static com.android.sample.exoplayer.PlaybackEventBus.PLAY_REQUEST;
+import static com.android.sample.exoplayer.PlaybackEventBus.SAMPLE;
+import static com.android.sample.exoplayer.PlaybackEventBus.SNAPSHOT;
+import static com.android.sample.exoplayer.RxMainSubject.unsubscribe;
+
+/**
+ * Connects to the {@link PlaybackServer} of a {@link MainService} running in another process.
+ * State updates are republished on this process's {@link PlaybackEventBus}, so the UI follows
+ * the same channels either way, and {@link PlaybackEventBus#PLAY_REQUEST}s are forwarded to the
+ * service. {@link #getPlayer()} lets a player view show and control the remote player.
+ */
+final class PlaybackClient implements ServiceConnection {
+
+    private static final String TAG = PlaybackClient.class.getSimpleName();
+    private final Context mContext;
+    private final Messenger mMessenger = new Messenger(new Handler(Looper.getMainLooper()) {
+        @Override
+        public void handleMessage(@NonNull Message msg) {
+            if (msg.what == PlaybackServer.MSG_STATE) {
+                onState(msg);
+            }
+        }
+    });
+    private final RemotePlayer mPlayer = new RemotePlayer(this);
+    private Messenger mService;
+    private Disposable mPlayRequestDisposable;
+    private Sample mSample;
+    private Boolean mPlayWhenReady;
+
+    /**
+     * @param context The context to bind from.
+     */
+    PlaybackClient(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Binds to the service. Must be called on the main thread.
+     */
+    void connect() {
+        Intent intent = new Intent(mContext, MainService.class)
+                .setAction(PlaybackServer.ACTION_CONNECT);
+        mContext.bindService(intent, this, Context.BIND_AUTO_CREATE);
+        mPlayRequestDisposable = PLAY_REQUEST.subscribe(new Consumer<Boolean>() {
+            @Override
+            public void accept(Boolean playWhenReady) {
+                setPlayWhenReady(playWhenReady);
+            }
+        });
+    }
+
+    /**
+     * Unregisters and unbinds from the service. Must be called on the main thread.
+     */
+    void disconnect() {
+        unsubscribe(mPlayRequestDisposable);
+        if (mService != null) {
+            Message message = Message.obtain(null, PlaybackServer.MSG_UNREGISTER);
+            message.replyTo = mMessenger;
+            send(message);
+            mService = null;
+        }
+        mContext.unbindService(this);
+    }
+
+    /**
+     * @return The player mirroring the remote one.
+     */
+    RemotePlayer getPlayer() {
+        return mPlayer;
+    }
+
+    void setPlayWhenReady(boolean playWhenReady) {
+        send(Message.obtain(null, PlaybackServer.MSG_PLAY, playWhenReady ? 1 : 0, 0));
+    }
+
+    /**
+     * @param positionMs The position in the current sample in milliseconds.
+     */
+    void seekTo(long positionMs) {
+        Message message = Message.obtain(null, PlaybackServer.MSG_SEEK);
+        message.getData().putLong(PlaybackServer.KEY_POSITION, positionMs);
+        send(message);
+    }
+
+    /**
+     * @param next true to skip to the next sample, false to the previous one.
+     */
+    void skip(boolean next) {
+        send(Message.obtain(null, PlaybackServer.MSG_SKIP, next ? 1 : -1, 0));
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder service) {
+        mService = new Messenger(service);
+        // Also called again after the playback process restarted, register with the new server.
+        Message message = Message.obtain(null, PlaybackServer.MSG_REGISTER);
+        message.replyTo = mMessenger;
+        send(message);
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        // The playback process died, the binding brings it back.
+        mService = null;
+        mPlayer.setSnapshot(null);
+    }
+
+    private void onState(Message msg) {
+        Bundle data = msg.peekData();
+        if (data != null) {
+            data.setClassLoader(Sample.class.getClassLoader());
+            Sample sample = data.getParcelable(PlaybackServer.KEY_SAMPLE);
+            if (sample != null) {
+                mSample = sample;
+                SAMPLE.publish(sample);
+            }
+        }
+        PlaybackSnapshot snapshot = PlaybackSnapshot.readFrom(msg, mSample);
+        if (snapshot == null) {
+            return;
+        }
+        if (mPlayWhenReady == null || mPlayWhenReady != snapshot.getPlayWhenReady()) {
+            mPlayWhenReady = snapshot.getPlayWhenReady();
+            PLAYING.publish(mPlayWhenReady);
+        }
+        SNAPSHOT.publish(snapshot);
+        mPlayer.setSnapshot(snapshot);
+    }
+
+    private void send(Message message) {
+        if (mService == null) {
+            return;
+        }
+        try {
+            mService.send(message);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Unable to reach the playback process", e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.android.sample.exoplayer;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Typed channels of the playback event bus shared by {@link MainService} and its clients.
+ */
+final class PlaybackEventBus {
+
+    private PlaybackEventBus() {
+    }
+
+    /**
+     * Delivers on the main thread.
+     */
+    static final Scheduler MAIN_THREAD = Schedulers.from(new Executor() {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mHandler.post(command);
+        }
+    });
+
+    /**
+     * Whether the player is set to play, published by the service. Replays to new subscribers.
+     */
+    static final RxMainSubject<Boolean> PLAYING = new RxMainSubject<>("playing", true);
+
+    /**
+     * The current sample, published by the service. Replays to new subscribers.
+     */
+    static final RxMainSubject<Sample> SAMPLE = new RxMainSubject<>("sample", true);
+
+    /**
+     * Snapshots of the player state, published by the service on every change and periodically
+     * while playing. Replays to new subscribers.
+     */
+    static final RxMainSubject<PlaybackSnapshot> SNAPSHOT = new RxMainSubject<>("snapshot", true);
+
+    /**
+     * Play or pause requests from clients, consumed by the service.
+     */
+    static final RxMainSubject<Boolean> PLAY_REQUEST = new RxMainSubject<>("play_request", false);
+
+    /**
+     * Forgets the values of the replaying channels, so nobody starts from the state of a service
+     * that is gone. Called by the service when it is destroyed.
+     */
+    static void clearState() {
+        PLAYING.clear();
+        SAMPLE.clear();
+        SNAPSHOT.clear();
+    }
+
+    /**
+     * @return All channels, for statistics.
+     */
+    static RxMainSubject<?>[] getChannels() {
+        return new RxMainSubject<?>[]{PLAYING, SAMPLE, SNAPSHOT, PLAY_REQUEST};
+    }
+}
@@ -0,0 +1,245 @@
+package com.android.sample.exoplayer;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.support.v4.media.session.MediaControllerCompat;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+import static com.android.sample.exoplayer.PlaybackEventBus.SAMPLE;
+import static com.android.sample.exoplayer.PlaybackEventBus.SNAPSHOT;
+import static com.android.sample.exoplayer.RxMainSubject.unsubscribe;
+
+/**
+ * Serves the playback state to {@link PlaybackClient}s in other processes over a
+ * {@link Messenger}, and forwards their commands to the media session. State is batched: the
+ * sample and snapshot published during one main looper turn go out as a single message, and the
+ * sample is only sent when it changes. Bulk data doesn't go over binder at all, waveforms are
+ * read from the memory-mapped {@link WaveformFile} that both processes map, which keeps their
+ * writes apart with file locks.
+ */
+final class PlaybackServer {
+
+    /**
+     * The intent action binding to the server rather than the service.
+     */
+    static final String ACTION_CONNECT = "com.android.sample.exoplayer.action.CONNECT";
+    /**
+     * Registers {@link Message#replyTo} for state updates.
+     */
+    static final int MSG_REGISTER = 1;
+    static final int MSG_UNREGISTER = 2;
+    /**
+     * Plays if {@link Message#arg1} is 1, pauses otherwise.
+     */
+    static final int MSG_PLAY = 3;
+    /**
+     * Seeks to the position in {@link #KEY_POSITION}.
+     */
+    static final int MSG_SEEK = 4;
+    /**
+     * Skips to the next sample if {@link Message#arg1} is positive, to the previous otherwise.
+     */
+    static final int MSG_SKIP = 5;
+    /**
+     * A state update, see {@link PlaybackSnapshot#writeTo(Message)}. The sample is in
+     * {@link #KEY_SAMPLE} when it changed.
+     */
+    static final int MSG_STATE = 6;
+    static final String KEY_POSITION = "position";
+    static final String KEY_SAMPLE = "sample";
+    private static final String TAG = PlaybackServer.class.getSimpleName();
+    private final MediaControllerCompat.TransportControls mTransportControls;
+    private final List<Messenger> mClients = new ArrayList<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper()) {
+        @Override
+        public void handleMessage(@NonNull Message msg) {
+            onMessage(msg);
+        }
+    };
+    private final Messenger mMessenger = new Messenger(mHandler);
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFlushPending = false;
+            flush();
+        }
+    };
+    private Disposable mSampleDisposable;
+    private Disposable mSnapshotDisposable;
+    private Sample mSample;
+    private PlaybackSnapshot mSnapshot;
+    private boolean mSampleChanged;
+    private boolean mSnapshotChanged;
+    private boolean mFlushPending;
+    private int mSentCount;
+
+    /**
+     * @param transportControls The transport controls of the service's media session, every
+     *                          command is handled like one from any other controller.
+     */
+    PlaybackServer(MediaControllerCompat.TransportControls transportControls) {
+        mTransportControls = transportControls;
+    }
+
+    /**
+     * Starts following the event bus. The service publishes on the main thread, so values are
+     * taken synchronously, and nothing is posted while no client is registered.
+     */
+    void start() {
+        mSampleDisposable = SAMPLE.subscribe(new Consumer<Sample>() {
+            @Override
+            public void accept(Sample sample) {
+                if (sample != mSample) {
+                    mSample = sample;
+                    mSampleChanged = true;
+                    scheduleFlush();
+                }
+            }
+        });
+        mSnapshotDisposable = SNAPSHOT.subscribe(new Consumer<PlaybackSnapshot>() {
+            @Override
+            public void accept(PlaybackSnapshot snapshot) {
+                mSnapshot = snapshot;
+                mSnapshotChanged = true;
+                scheduleFlush();
+            }
+        });
+    }
+
+    /**
+     * Stops following the event bus and drops the clients. Must be called on the main thread.
+     */
+    void stop() {
+        unsubscribe(mSampleDisposable, mSnapshotDisposable);
+        mHandler.removeCallbacksAndMessages(null);
+        mFlushPending = false;
+        mClients.clear();
+    }
+
+    /**
+     * @return The binder returned to clients binding with {@link #ACTION_CONNECT}.
+     */
+    IBinder getBinder() {
+        return mMessenger.getBinder();
+    }
+
+    /**
+     * @return The number of registered clients.
+     */
+    int getClientCount() {
+        return mClients.size();
+    }
+
+    /**
+     * @return The number of state messages sent since the server was created.
+     */
+    int getSentCount() {
+        return mSentCount;
+    }
+
+    private void onMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_REGISTER:
+                if (msg.replyTo != null && !mClients.contains(msg.replyTo)) {
+                    mClients.add(msg.replyTo);
+                    // Bring the new client up to date, everything else only gets changes.
+                    send(msg.replyTo, createState(mSample, mSnapshot));
+                    if (!mFlushPending) {
+                        mSampleChanged = false;
+                        mSnapshotChanged = false;
+                    }
+                }
+                break;
+            case MSG_UNREGISTER:
+                mClients.remove(msg.replyTo);
+                break;
+            case MSG_PLAY:
+                if (msg.arg1 == 1) {
+                    mTransportControls.play();
+                } else {
+                    mTransportControls.pause();
+                }
+                break;
+            case MSG_SEEK:
+                Bundle data = msg.peekData();
+                if (data != null && data.containsKey(KEY_POSITION)) {
+                    mTransportControls.seekTo(data.getLong(KEY_POSITION));
+                }
+                break;
+            case MSG_SKIP:
+                if (msg.arg1 > 0) {
+                    mTransportControls.skipToNext();
+                } else {
+                    mTransportControls.skipToPrevious();
+                }
+                break;
+            default:
+                Log.w(TAG, "Unknown message " + msg.what);
+                break;
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushPending && !mClients.isEmpty()) {
+            mFlushPending = true;
+            mHandler.post(mFlushRunnable);
+        }
+    }
+
+    private void flush() {
+        if (!mSampleChanged && !mSnapshotChanged) {
+            return;
+        }
+        Sample sample = mSampleChanged ? mSample : null;
+        PlaybackSnapshot snapshot = mSnapshotChanged ? mSnapshot : null;
+        mSampleChanged = false;
+        mSnapshotChanged = false;
+        Message message = createState(sample, snapshot);
+        for (int i = mClients.size() - 1; i >= 0; i--) {
+            // A client in this process is handed the message itself, so each gets its own.
+            if (!send(mClients.get(i), i == 0 ? message : Message.obtain(message))) {
+                mClients.remove(i);
+            }
+        }
+    }
+
+    private static Message createState(@Nullable Sample sample,
+                                       @Nullable PlaybackSnapshot snapshot) {
+        Message message = Message.obtain(null, MSG_STATE);
+        if (snapshot != null) {
+            snapshot.writeTo(message);
+        }
+        if (sample != null) {
+            message.getData().putParcelable(KEY_SAMPLE, sample);
+        }
+        return message;
+    }
+
+    /**
+     * @return false if the client's process died.
+     */
+    private boolean send(Messenger client, Message message) {
+        try {
+            client.send(message);
+            mSentCount++;
+            return true;
+        } catch (RemoteException e) {
+            Log.w(TAG, "Dropping client", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.android.sample.exoplayer;
+
+import android.os.Bundle;
+import android.os.Message;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+
+/**
+ * Immutable state of the player at one point in time, published by {@link MainService}. Clients
+ * extrapolate the position from it instead of polling the player.
+ */
+final class PlaybackSnapshot {
+
+    private static final String KEY_POSITIONS = "positions";
+    private static final int FLAG_PLAY_WHEN_READY = 1;
+    private static final int FLAG_PLAYING = 1 << 1;
+    private static final int STATE_SHIFT = 2;
+    private final Sample mSample;
+    private final int mPlaybackState;
+    private final boolean mPlayWhenReady;
+    private final boolean mPlaying;
+    private final long mPosition;
+    private final long mBufferedPosition;
+    private final long mDuration;
+    private final float mSpeed;
+    private final long mTimestamp;
+
+    PlaybackSnapshot(@Nullable Sample sample, int playbackState, boolean playWhenReady,
+                     boolean playing, long position, long bufferedPosition, long duration,
+                     float speed, long timestamp) {
+        mSample = sample;
+        mPlaybackState = playbackState;
+        mPlayWhenReady = playWhenReady;
+        mPlaying = playing;
+        mPosition = position;
+        mBufferedPosition = bufferedPosition;
+        mDuration = duration;
+        mSpeed = speed;
+        mTimestamp = timestamp;
+    }
+
+    /**
+     * Takes a snapshot of a player. Must be called on the player thread.
+     * @param player The player.
+     * @param sample The current sample, or null if the playlist is still loading.
+     * @return The snapshot.
+     */
+    static PlaybackSnapshot of(Player player, @Nullable Sample sample) {
+        return new PlaybackSnapshot(sample, player.getPlaybackState(), player.getPlayWhenReady(),
+                player.isPlaying(), player.getCurrentPosition(), player.getBufferedPosition(),
+                player.getDuration(), player.getPlaybackParameters().speed,
+                SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @return The current sample, or null if the playlist is still loading.
+     */
+    @Nullable
+    Sample getSample() {
+        return mSample;
+    }
+
+    /**
+     * @return One of the {@link Player} STATE_ constants.
+     */
+    int getPlaybackState() {
+        return mPlaybackState;
+    }
+
+    boolean getPlayWhenReady() {
+        return mPlayWhenReady;
+    }
+
+    /**
+     * @return true if the position was advancing when the snapshot was taken.
+     */
+    boolean isPlaying() {
+        return mPlaying;
+    }
+
+    /**
+     * @return The position in milliseconds when the snapshot was taken.
+     */
+    long getPosition() {
+        return mPosition;
+    }
+
+    long getBufferedPosition() {
+        return mBufferedPosition;
+    }
+
+    /**
+     * @return The duration in milliseconds, or {@link C#TIME_UNSET} if it is not known yet.
+     */
+    long getDuration() {
+        return mDuration;
+    }
+
+    float getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * @return The {@link SystemClock#elapsedRealtime()} the snapshot was taken at.
+     */
+    long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Extrapolates the playback position.
+     * @param elapsedRealtime The {@link SystemClock#elapsedRealtime()} to get the position at.
+     * @return The position in milliseconds.
+     */
+    long getPositionAt(long elapsedRealtime) {
+        if (!mPlaying) {
+            return mPosition;
+        }
+        long position = mPosition + (long) ((elapsedRealtime - mTimestamp) * mSpeed);
+        return mDuration == C.TIME_UNSET ? position : Math.min(position, mDuration);
+    }
+
+    /**
+     * Writes the snapshot without its sample to a message, for another process. The flags and
+     * the playback state go into {@code arg1}, the speed into {@code arg2} and the positions
+     * into a single array, so an update is a few dozen bytes. The timestamp stays valid in the
+     * other process, {@link SystemClock#elapsedRealtime()} is the same for every process.
+     * @param message The message.
+     */
+    void writeTo(Message message) {
+        message.arg1 = (mPlayWhenReady ? FLAG_PLAY_WHEN_READY : 0) | (mPlaying ? FLAG_PLAYING : 0)
+                | mPlaybackState << STATE_SHIFT;
+        message.arg2 = Float.floatToIntBits(mSpeed);
+        message.getData().putLongArray(KEY_POSITIONS,
+                new long[]{mPosition, mBufferedPosition, mDuration, mTimestamp});
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo(Message)}.
+     * @param message The message.
+     * @param sample  The current sample, the message doesn't carry it.
+     * @return The snapshot, or null if the message doesn't hold one.
+     */
+    @Nullable
+    static PlaybackSnapshot readFrom(Message message, @Nullable Sample sample) {
+        Bundle data = message.peekData();
+        long[] positions = data == null ? null : data.getLongArray(KEY_POSITIONS);
+        if (positions == null || positions.length != 4) {
+            return null;
+        }
+        return new PlaybackSnapshot(sample, message.arg1 >>> STATE_SHIFT,
+                (message.arg1 & FLAG_PLAY_WHEN_READY) != 0, (message.arg1 & FLAG_PLAYING) != 0,
+                positions[0], positions[1], positions[2], Float.intBitsToFloat(message.arg2),
+                positions[3]);
+    }
+}
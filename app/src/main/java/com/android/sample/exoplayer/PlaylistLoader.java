@@ -0,0 +1,91 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.os.Handler;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Loads the catalog and the resume point off the main thread. The resume point is read from the
+ * {@link CheckpointStore} and resolved to a catalog position, the playlist itself is built
+ * lazily around that position by a {@link WindowedPlaylist}.
+ */
+final class PlaylistLoader implements Runnable {
+
+    private final Context mContext;
+    private final CheckpointStore mCheckpointStore;
+    private final Handler mHandler;
+    private final Callback mCallback;
+    private volatile boolean mCancelled;
+
+    /**
+     * @param context         The application context.
+     * @param checkpointStore The store holding the resume point.
+     * @param handler         The main thread handler.
+     * @param callback        Notified on the main thread once the catalog is loaded.
+     */
+    PlaylistLoader(Context context, CheckpointStore checkpointStore, Handler handler,
+                   Callback callback) {
+        mContext = context.getApplicationContext();
+        mCheckpointStore = checkpointStore;
+        mHandler = handler;
+        mCallback = callback;
+    }
+
+    @Override
+    public void run() {
+        MainPosition resumePosition = mCheckpointStore.read();
+        if (resumePosition == null) {
+            resumePosition = MainStorage.getInstance(mContext).getLegacyPosition();
+        }
+        final SampleCatalog catalog = SampleCatalog.getInstance(mContext);
+        int startIndex = 0;
+        if (resumePosition != null) {
+            // Match the resume point by sample ID, or by position for points stored without one.
+            startIndex = resumePosition.getSampleID() == MainPosition.UNKNOWN_SAMPLE_ID
+                    ? resumePosition.getCurrentWindowIndex()
+                    : catalog.indexOf(resumePosition.getSampleID());
+            if (startIndex < 0 || startIndex >= catalog.size()) {
+                // The resume point is no longer part of the catalog, start from the beginning.
+                startIndex = 0;
+                resumePosition = new MainPosition(0, 0);
+            }
+        }
+        if (mCancelled) {
+            return;
+        }
+        final int finalStartIndex = startIndex;
+        final MainPosition finalResumePosition = resumePosition;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCancelled) {
+                    mCallback.onPlaylistLoaded(catalog, finalStartIndex, finalResumePosition);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the callback from being called if it hasn't been yet.
+     */
+    void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Receives the loaded catalog on the main thread.
+     */
+    interface Callback {
+
+        /**
+         * Called once the catalog is loaded and the player can be prepared.
+         * @param catalog        The catalog.
+         * @param startIndex     The catalog position to start from.
+         * @param resumePosition The position to resume from within the first sample, or null if
+         *                       there was no resume point and playback should start right away.
+         */
+        void onPlaylistLoaded(SampleCatalog catalog, int startIndex,
+                              @Nullable MainPosition resumePosition);
+    }
+}
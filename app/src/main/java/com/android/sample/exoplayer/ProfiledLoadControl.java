@@ -0,0 +1,150 @@
+package com.android.sample.exoplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+/**
+ * Load control whose buffering profile can be switched while the player is running. All profiles
+ * share one allocator, so buffers that are already loaded stay valid across a switch. The back
+ * buffer is only read by the player when it is created, so it follows the initial profile.
+ */
+final class ProfiledLoadControl implements LoadControl {
+
+    private final DefaultAllocator mAllocator =
+            new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    private final LoadControl mInitialLoadControl;
+    private final BufferingUsage mUsage;
+    private volatile BufferingProfile mRequestedProfile;
+    private volatile boolean mConstrained;
+    private BufferingProfile mProfile;
+    private LoadControl mLoadControl;
+    private Renderer[] mRenderers;
+    private TrackGroupArray mTrackGroups;
+    private TrackSelectionArray mTrackSelections;
+
+    /**
+     * @param profile The initial profile.
+     * @param usage   Where the allocator usage of each profile is recorded.
+     */
+    ProfiledLoadControl(BufferingProfile profile, BufferingUsage usage) {
+        mUsage = usage;
+        mRequestedProfile = profile;
+        mProfile = profile;
+        mLoadControl = profile.createLoadControl(mAllocator);
+        mInitialLoadControl = mLoadControl;
+    }
+
+    /**
+     * Switches the buffering profile. May be called from any thread, the switch happens on the
+     * playback thread.
+     * @param profile The new profile.
+     */
+    void setProfile(BufferingProfile profile) {
+        mRequestedProfile = profile;
+    }
+
+    /**
+     * Buffers with {@link BufferingProfile#LOW_MEMORY} regardless of the requested profile, or
+     * goes back to the requested one. May be called from any thread.
+     * @param constrained true to constrain the buffers.
+     * @return The allocated bytes above the constrained target, or 0 if nothing changes. This is
+     * a target reduction, nothing is freed until playback drains the buffers.
+     */
+    long setConstrained(boolean constrained) {
+        boolean changed = mConstrained != constrained;
+        mConstrained = constrained;
+        if (!changed || !constrained || mRequestedProfile == BufferingProfile.LOW_MEMORY) {
+            return 0;
+        }
+        return Math.max(0,
+                getAllocatedBytes() - BufferingProfile.LOW_MEMORY.getTargetBufferBytes());
+    }
+
+    /**
+     * @return The requested profile, also while the buffers are constrained.
+     */
+    BufferingProfile getProfile() {
+        return mRequestedProfile;
+    }
+
+    /**
+     * @return The bytes currently allocated for buffers.
+     */
+    long getAllocatedBytes() {
+        return mAllocator.getTotalBytesAllocated();
+    }
+
+    @Override
+    public void onPrepared() {
+        current().onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 TrackSelectionArray trackSelections) {
+        mRenderers = renderers;
+        mTrackGroups = trackGroups;
+        mTrackSelections = trackSelections;
+        current().onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        current().onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        current().onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return mAllocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return mInitialLoadControl.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return mInitialLoadControl.retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
+        LoadControl loadControl = current();
+        mUsage.record(mProfile, mAllocator.getTotalBytesAllocated());
+        return loadControl.shouldContinueLoading(bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed,
+                                       boolean rebuffering) {
+        return current().shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering);
+    }
+
+    /**
+     * @return The load control of the requested profile, switching to it if needed. Must be
+     * called on the playback thread.
+     */
+    private LoadControl current() {
+        BufferingProfile requestedProfile = mConstrained
+                ? BufferingProfile.LOW_MEMORY : mRequestedProfile;
+        if (requestedProfile != mProfile) {
+            mProfile = requestedProfile;
+            mLoadControl = requestedProfile.createLoadControl(mAllocator);
+            if (mTrackSelections != null) {
+                mLoadControl.onTracksSelected(mRenderers, mTrackGroups, mTrackSelections);
+            }
+        }
+        return mLoadControl;
+    }
+}
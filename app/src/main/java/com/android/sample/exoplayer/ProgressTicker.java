@@ -0,0 +1,104 @@
+package com.android.sample.exoplayer;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.widget.ProgressBar;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+
+/**
+ * Keeps a ProgressBar in sync with the published {@link PlaybackSnapshot}s, extrapolating the
+ * position between them. Updates run on vsync through the Choreographer and are scheduled for the
+ * frame in which the progress moves by one pixel, nothing runs while the player is paused or the
+ * bar isn't visible.
+ */
+final class ProgressTicker implements Choreographer.FrameCallback {
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final ProgressBar mProgressBar;
+    private PlaybackSnapshot mSnapshot;
+    private boolean mVisible;
+    private boolean mPosted;
+    private long mDuration = C.TIME_UNSET;
+    private long mPixel = -1;
+
+    /**
+     * @param progressBar The bar to update, must be used on the main thread.
+     */
+    ProgressTicker(ProgressBar progressBar) {
+        mProgressBar = progressBar;
+    }
+
+    /**
+     * Sets the latest snapshot to extrapolate from.
+     * @param snapshot The snapshot, or null to clear the bar's source.
+     */
+    void setSnapshot(@Nullable PlaybackSnapshot snapshot) {
+        mSnapshot = snapshot;
+        invalidate();
+    }
+
+    /**
+     * Sets whether the bar is visible to the user. Ticks stop completely while it is not.
+     * @param visible true if the bar is visible.
+     */
+    void setVisible(boolean visible) {
+        if (mVisible != visible) {
+            mVisible = visible;
+            invalidate();
+        }
+    }
+
+    /**
+     * Requests an update on the next frame, or cancels pending updates if there is nothing to show.
+     */
+    void invalidate() {
+        removeFrameCallback();
+        if (mSnapshot != null && mVisible) {
+            mPixel = -1;
+            postFrameCallback(0);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mPosted = false;
+        if (mSnapshot == null || !mVisible) {
+            return;
+        }
+        long duration = mSnapshot.getDuration();
+        if (duration == C.TIME_UNSET || duration <= 0) {
+            // Wait for a snapshot with a duration, which will invalidate the ticker.
+            return;
+        }
+        long position = mSnapshot.getPositionAt(SystemClock.elapsedRealtime());
+        int width = Math.max(1, mProgressBar.getWidth());
+        long pixel = position * width / duration;
+        if (duration != mDuration) {
+            mDuration = duration;
+            mProgressBar.setMax((int) duration);
+        }
+        if (pixel != mPixel) {
+            mPixel = pixel;
+            mProgressBar.setProgress((int) position);
+        }
+        if (mSnapshot.isPlaying() && position < duration) {
+            long msPerPixel = Math.max(1, duration / width);
+            postFrameCallback(msPerPixel - position % msPerPixel);
+        }
+    }
+
+    private void postFrameCallback(long delayMillis) {
+        mPosted = true;
+        mChoreographer.postFrameCallbackDelayed(this, delayMillis);
+    }
+
+    private void removeFrameCallback() {
+        if (mPosted) {
+            mPosted = false;
+            mChoreographer.removeFrameCallback(this);
+        }
+    }
+}
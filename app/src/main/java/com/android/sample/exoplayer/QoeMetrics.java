@@ -0,0 +1,305 @@
+package com.android.sample.exoplayer;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Quality of experience metrics collected from the player's analytics events: time to first
+ * audio, separately for cold starts and warm restarts, rebuffering, load and playback errors,
+ * the time until playing after a transition and decoder initialization. The transition times are
+ * measured by {@link TransitionMetrics} into {@link #getTransitionReadyTime()}. Events arrive on
+ * the main thread and only update counters, histograms and a ring buffer of recent sessions, all
+ * of which can be read from any thread without locking. A session is the playback of a single
+ * sample.
+ */
+final class QoeMetrics implements AnalyticsListener {
+
+    private static final int MAX_SESSIONS = 16;
+    private static final long NONE = -1;
+    private final long mCreatedRealtimeMs;
+    private final AtomicLong mTimeToFirstAudioMs = new AtomicLong(NONE);
+    private final AtomicLong mRestartedRealtimeMs = new AtomicLong(NONE);
+    private final AtomicLong mRestartToAudioMs = new AtomicLong(NONE);
+    private final AtomicLong mRebufferCount = new AtomicLong();
+    private final AtomicLong mLoadErrorCount = new AtomicLong();
+    private final AtomicLong mPlayerErrorCount = new AtomicLong();
+    private final AtomicLong mAudioUnderrunCount = new AtomicLong();
+    private final Histogram mRebufferDuration = new Histogram("ms", Histogram.LATENCY_BOUNDS_MS);
+    private final Histogram mTransitionReadyTime = new Histogram("ms", Histogram.LATENCY_BOUNDS_MS);
+    private final Histogram mDecoderInit = new Histogram("ms", Histogram.LATENCY_BOUNDS_MS);
+    private final AtomicReferenceArray<Session> mSessions = new AtomicReferenceArray<>(MAX_SESSIONS);
+    private final AtomicLong mSessionCount = new AtomicLong();
+    private final Timeline.Window mWindow = new Timeline.Window();
+    // Only accessed on the main thread.
+    private Sample mSessionSample;
+    private long mSessionStartMs;
+    private long mSessionPlayedMs;
+    private int mSessionRebufferCount;
+    private long mSessionRebufferMs;
+    private int mSessionErrorCount;
+    private long mPlayingSinceMs = NONE;
+    private long mRebufferingSinceMs = NONE;
+    private boolean mReadySinceSeek;
+
+    /**
+     * @param createdRealtimeMs The {@link SystemClock#elapsedRealtime()} the service was created
+     *                          at, time to first audio is measured from there.
+     */
+    QoeMetrics(long createdRealtimeMs) {
+        mCreatedRealtimeMs = createdRealtimeMs;
+    }
+
+    /**
+     * Marks the start as a warm restart from a {@link SessionSnapshot}. Must be called before
+     * playback starts.
+     * @param restartedRealtimeMs The {@link SystemClock#elapsedRealtime()} the previous service
+     *                            stopped at, restart to audio is measured from there.
+     */
+    void setWarmRestart(long restartedRealtimeMs) {
+        mRestartedRealtimeMs.set(restartedRealtimeMs);
+    }
+
+    @Override
+    public void onPlayerStateChanged(EventTime eventTime, boolean playWhenReady,
+                                     int playbackState) {
+        onSampleEvent(eventTime);
+        if (playbackState == Player.STATE_BUFFERING && playWhenReady && mReadySinceSeek
+                && mRebufferingSinceMs == NONE) {
+            mRebufferingSinceMs = eventTime.realtimeMs;
+            mRebufferCount.incrementAndGet();
+            mSessionRebufferCount++;
+        } else if (playbackState != Player.STATE_BUFFERING) {
+            endRebuffering(eventTime.realtimeMs);
+        }
+        if (playbackState == Player.STATE_READY) {
+            mReadySinceSeek = true;
+        }
+    }
+
+    @Override
+    public void onIsPlayingChanged(EventTime eventTime, boolean isPlaying) {
+        onSampleEvent(eventTime);
+        if (isPlaying) {
+            mPlayingSinceMs = eventTime.realtimeMs;
+            if (mTimeToFirstAudioMs.compareAndSet(NONE, eventTime.realtimeMs - mCreatedRealtimeMs)
+                    && isWarmRestart()) {
+                mRestartToAudioMs.set(eventTime.realtimeMs - mRestartedRealtimeMs.get());
+            }
+        } else if (mPlayingSinceMs != NONE) {
+            mSessionPlayedMs += eventTime.realtimeMs - mPlayingSinceMs;
+            mPlayingSinceMs = NONE;
+        }
+    }
+
+    @Override
+    public void onPositionDiscontinuity(EventTime eventTime, int reason) {
+        onSampleEvent(eventTime);
+    }
+
+    @Override
+    public void onSeekStarted(EventTime eventTime) {
+        // Buffering after a seek is expected and not counted as rebuffering.
+        mReadySinceSeek = false;
+        endRebuffering(eventTime.realtimeMs);
+    }
+
+    @Override
+    public void onLoadError(EventTime eventTime, MediaSourceEventListener.LoadEventInfo loadEventInfo,
+                            MediaSourceEventListener.MediaLoadData mediaLoadData, IOException error,
+                            boolean wasCanceled) {
+        mLoadErrorCount.incrementAndGet();
+        mSessionErrorCount++;
+    }
+
+    @Override
+    public void onPlayerError(EventTime eventTime, ExoPlaybackException error) {
+        mPlayerErrorCount.incrementAndGet();
+        mSessionErrorCount++;
+    }
+
+    @Override
+    public void onAudioUnderrun(EventTime eventTime, int bufferSize, long bufferSizeMs,
+                                long elapsedSinceLastFeedMs) {
+        mAudioUnderrunCount.incrementAndGet();
+    }
+
+    @Override
+    public void onDecoderInitialized(EventTime eventTime, int trackType, String decoderName,
+                                     long initializationDurationMs) {
+        mDecoderInit.add(initializationDurationMs);
+    }
+
+    /**
+     * @return The time from service creation until audio first played, or -1 if it hasn't yet.
+     */
+    long getTimeToFirstAudioMs() {
+        return mTimeToFirstAudioMs.get();
+    }
+
+    /**
+     * @return true if the service was restored from a {@link SessionSnapshot}.
+     */
+    boolean isWarmRestart() {
+        return mRestartedRealtimeMs.get() != NONE;
+    }
+
+    /**
+     * @return The time from the previous service stopping until audio first played after a warm
+     * restart, or -1 if it hasn't yet or the start was cold.
+     */
+    long getRestartToAudioMs() {
+        return mRestartToAudioMs.get();
+    }
+
+    long getRebufferCount() {
+        return mRebufferCount.get();
+    }
+
+    long getLoadErrorCount() {
+        return mLoadErrorCount.get();
+    }
+
+    long getPlayerErrorCount() {
+        return mPlayerErrorCount.get();
+    }
+
+    long getAudioUnderrunCount() {
+        return mAudioUnderrunCount.get();
+    }
+
+    Histogram getRebufferDuration() {
+        return mRebufferDuration;
+    }
+
+    /**
+     * @return The times from a track transition until the player is playing again, added by the
+     * {@link TransitionMetrics} of the current player.
+     */
+    Histogram getTransitionReadyTime() {
+        return mTransitionReadyTime;
+    }
+
+    Histogram getDecoderInit() {
+        return mDecoderInit;
+    }
+
+    /**
+     * @return The most recently finished sessions, newest first.
+     */
+    List<Session> getRecentSessions() {
+        long count = mSessionCount.get();
+        List<Session> sessions = new ArrayList<>();
+        for (long i = count - 1; i >= 0 && i >= count - MAX_SESSIONS; i--) {
+            Session session = mSessions.get((int) (i % MAX_SESSIONS));
+            if (session != null) {
+                sessions.add(session);
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Prints the metrics, for {@code dumpsys}.
+     * @param writer The writer.
+     */
+    void dump(PrintWriter writer) {
+        if (isWarmRestart()) {
+            writer.println("Time to first audio: " + getTimeToFirstAudioMs()
+                    + "ms (warm restart), restart to audio: " + getRestartToAudioMs() + "ms");
+        } else {
+            writer.println("Time to first audio: " + getTimeToFirstAudioMs() + "ms (cold start)");
+        }
+        writer.println("Rebuffers: " + getRebufferCount() + ", duration " + mRebufferDuration);
+        writer.println("Load errors: " + getLoadErrorCount()
+                + ", player errors: " + getPlayerErrorCount()
+                + ", audio underruns: " + getAudioUnderrunCount());
+        writer.println("Transition to playing: " + mTransitionReadyTime);
+        writer.println("Decoder init: " + mDecoderInit);
+        writer.println("Recent sessions:");
+        for (Session session : getRecentSessions()) {
+            writer.println("  " + session);
+        }
+    }
+
+    private void endRebuffering(long realtimeMs) {
+        if (mRebufferingSinceMs != NONE) {
+            long durationMs = realtimeMs - mRebufferingSinceMs;
+            mRebufferDuration.add(durationMs);
+            mSessionRebufferMs += durationMs;
+            mRebufferingSinceMs = NONE;
+        }
+    }
+
+    /**
+     * Finishes the current session and starts a new one when an event belongs to another sample.
+     */
+    private void onSampleEvent(EventTime eventTime) {
+        if (eventTime.timeline.isEmpty() || eventTime.windowIndex >= eventTime.timeline.getWindowCount()) {
+            return;
+        }
+        Sample sample = (Sample) eventTime.timeline.getWindow(eventTime.windowIndex, mWindow).tag;
+        if (sample == mSessionSample) {
+            return;
+        }
+        if (mSessionSample != null) {
+            if (mPlayingSinceMs != NONE) {
+                mSessionPlayedMs += eventTime.realtimeMs - mPlayingSinceMs;
+                mPlayingSinceMs = eventTime.realtimeMs;
+            }
+            long index = mSessionCount.get();
+            mSessions.set((int) (index % MAX_SESSIONS), new Session(mSessionSample.getSampleID(),
+                    mSessionStartMs, mSessionPlayedMs, mSessionRebufferCount, mSessionRebufferMs,
+                    mSessionErrorCount));
+            mSessionCount.set(index + 1);
+        }
+        mSessionSample = sample;
+        mSessionStartMs = eventTime.realtimeMs;
+        mSessionPlayedMs = 0;
+        mSessionRebufferCount = 0;
+        mSessionRebufferMs = 0;
+        mSessionErrorCount = 0;
+    }
+
+    /**
+     * Summary of the playback of one sample.
+     */
+    static final class Session {
+
+        final int sampleID;
+        final long startRealtimeMs;
+        final long playedMs;
+        final int rebufferCount;
+        final long rebufferMs;
+        final int errorCount;
+
+        Session(int sampleID, long startRealtimeMs, long playedMs, int rebufferCount,
+                long rebufferMs, int errorCount) {
+            this.sampleID = sampleID;
+            this.startRealtimeMs = startRealtimeMs;
+            this.playedMs = playedMs;
+            this.rebufferCount = rebufferCount;
+            this.rebufferMs = rebufferMs;
+            this.errorCount = errorCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "sample=%d start=%d played=%dms rebuffers=%d (%dms) errors=%d",
+                    sampleID, startRealtimeMs, playedMs, rebufferCount, rebufferMs, errorCount);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.android.sample.exoplayer;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.BasePlayer;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.SinglePeriodTimeline;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A {@link com.google.android.exoplayer2.Player} mirroring the player of a {@link MainService} in
+ * another process from its snapshots, so a player view can show and control it. The timeline only
+ * holds the current sample, skipping is left to the media session. Positions are extrapolated
+ * from the latest snapshot and commands go to the {@link PlaybackClient}. Must only be used on
+ * the main thread.
+ */
+final class RemotePlayer extends BasePlayer {
+
+    // A seek in the other process shows as a position jump larger than snapshot jitter.
+    private static final long DISCONTINUITY_THRESHOLD_MS = 500;
+    // A single audio track, so the player view shows the artwork.
+    private static final TrackGroupArray AUDIO_TRACK_GROUPS = new TrackGroupArray(new TrackGroup(
+            Format.createSampleFormat(null, MimeTypes.AUDIO_MPEG, null, Format.NO_VALUE, null)));
+    private final TrackSelectionArray mTrackSelections =
+            new TrackSelectionArray(new TrackSelection[1]);
+    private final CopyOnWriteArraySet<EventListener> mListeners = new CopyOnWriteArraySet<>();
+    private final PlaybackClient mClient;
+    private PlaybackSnapshot mSnapshot;
+    private Timeline mTimeline = Timeline.EMPTY;
+
+    /**
+     * @param client The client commands are sent with.
+     */
+    RemotePlayer(PlaybackClient client) {
+        mClient = client;
+    }
+
+    /**
+     * Updates the player and notifies the listeners of what changed.
+     * @param snapshot The latest snapshot of the remote player, or null if it went away.
+     */
+    void setSnapshot(@Nullable PlaybackSnapshot snapshot) {
+        update(snapshot, false);
+    }
+
+    /**
+     * @param seek true if the snapshot shows a seek of this player, which is reported even if
+     *             the position barely moved.
+     */
+    private void update(@Nullable PlaybackSnapshot snapshot, boolean seek) {
+        PlaybackSnapshot previous = mSnapshot;
+        boolean wasPlaying = isPlaying();
+        long now = SystemClock.elapsedRealtime();
+        long expectedPosition = previous == null ? 0 : previous.getPositionAt(now);
+        mSnapshot = snapshot;
+        Sample sample = snapshot == null ? null : snapshot.getSample();
+        Sample previousSample = previous == null ? null : previous.getSample();
+        boolean sampleChanged = sample == null ? previousSample != null
+                : previousSample == null || sample.getSampleID() != previousSample.getSampleID();
+        if (sampleChanged || previous == null || snapshot == null
+                || previous.getDuration() != snapshot.getDuration()) {
+            Timeline timeline = sample == null ? Timeline.EMPTY : new SinglePeriodTimeline(
+                    C.msToUs(snapshot.getDuration()), /* isSeekable= */ true,
+                    /* isDynamic= */ false, /* isLive= */ false, /* manifest= */ null, sample);
+            if (!timeline.equals(mTimeline)) {
+                mTimeline = timeline;
+                for (EventListener listener : mListeners) {
+                    listener.onTimelineChanged(mTimeline, TIMELINE_CHANGE_REASON_DYNAMIC);
+                }
+            }
+        }
+        if (sampleChanged) {
+            for (EventListener listener : mListeners) {
+                listener.onTracksChanged(getCurrentTrackGroups(), mTrackSelections);
+                listener.onPositionDiscontinuity(DISCONTINUITY_REASON_PERIOD_TRANSITION);
+            }
+        } else if (snapshot != null && (seek || Math.abs(snapshot.getPositionAt(now)
+                - expectedPosition) > DISCONTINUITY_THRESHOLD_MS)) {
+            for (EventListener listener : mListeners) {
+                listener.onPositionDiscontinuity(DISCONTINUITY_REASON_SEEK);
+            }
+        }
+        if (previous == null || snapshot == null
+                || previous.getPlayWhenReady() != snapshot.getPlayWhenReady()
+                || previous.getPlaybackState() != snapshot.getPlaybackState()) {
+            for (EventListener listener : mListeners) {
+                listener.onPlayerStateChanged(getPlayWhenReady(), getPlaybackState());
+            }
+        }
+        if (wasPlaying != isPlaying()) {
+            for (EventListener listener : mListeners) {
+                listener.onIsPlayingChanged(isPlaying());
+            }
+        }
+        if (seek) {
+            for (EventListener listener : mListeners) {
+                listener.onSeekProcessed();
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public AudioComponent getAudioComponent() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public VideoComponent getVideoComponent() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public TextComponent getTextComponent() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public MetadataComponent getMetadataComponent() {
+        return null;
+    }
+
+    @Override
+    public Looper getApplicationLooper() {
+        return Looper.getMainLooper();
+    }
+
+    @Override
+    public void addListener(EventListener listener) {
+        mListeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(EventListener listener) {
+        mListeners.remove(listener);
+    }
+
+    @Override
+    public int getPlaybackState() {
+        return mSnapshot == null ? STATE_IDLE : mSnapshot.getPlaybackState();
+    }
+
+    @Override
+    public int getPlaybackSuppressionReason() {
+        return PLAYBACK_SUPPRESSION_REASON_NONE;
+    }
+
+    @Nullable
+    @Override
+    public ExoPlaybackException getPlaybackError() {
+        return null;
+    }
+
+    /**
+     * Sends the command and shows it right away, the next snapshot confirms it.
+     */
+    @Override
+    public void setPlayWhenReady(boolean playWhenReady) {
+        mClient.setPlayWhenReady(playWhenReady);
+        if (mSnapshot != null && mSnapshot.getPlayWhenReady() != playWhenReady) {
+            long now = SystemClock.elapsedRealtime();
+            setSnapshot(new PlaybackSnapshot(mSnapshot.getSample(),
+                    mSnapshot.getPlaybackState(), playWhenReady, false,
+                    mSnapshot.getPositionAt(now), mSnapshot.getBufferedPosition(),
+                    mSnapshot.getDuration(), mSnapshot.getSpeed(), now));
+        }
+    }
+
+    @Override
+    public boolean getPlayWhenReady() {
+        return mSnapshot != null && mSnapshot.getPlayWhenReady();
+    }
+
+    @Override
+    public void setRepeatMode(int repeatMode) {
+        // The playlist has no repeat modes.
+    }
+
+    @Override
+    public int getRepeatMode() {
+        return REPEAT_MODE_OFF;
+    }
+
+    @Override
+    public void setShuffleModeEnabled(boolean shuffleModeEnabled) {
+        // The playlist has no shuffle mode.
+    }
+
+    @Override
+    public boolean getShuffleModeEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isLoading() {
+        return false;
+    }
+
+    /**
+     * Sends the seek and shows it right away, the next snapshot confirms it.
+     */
+    @Override
+    public void seekTo(int windowIndex, long positionMs) {
+        if (mSnapshot == null || mTimeline.isEmpty()) {
+            return;
+        }
+        long position = positionMs == C.TIME_UNSET ? 0 : positionMs;
+        mClient.seekTo(position);
+        update(new PlaybackSnapshot(mSnapshot.getSample(), mSnapshot.getPlaybackState(),
+                mSnapshot.getPlayWhenReady(), false, position, mSnapshot.getBufferedPosition(),
+                mSnapshot.getDuration(), mSnapshot.getSpeed(), SystemClock.elapsedRealtime()),
+                true);
+    }
+
+    @Override
+    public void setPlaybackParameters(@Nullable PlaybackParameters playbackParameters) {
+        // The speed follows the remote player.
+    }
+
+    @Override
+    public PlaybackParameters getPlaybackParameters() {
+        return mSnapshot == null ? PlaybackParameters.DEFAULT
+                : new PlaybackParameters(mSnapshot.getSpeed());
+    }
+
+    /**
+     * Pauses, the remote player is owned by its service.
+     */
+    @Override
+    public void stop(boolean reset) {
+        setPlayWhenReady(false);
+    }
+
+    @Override
+    public void release() {
+        mListeners.clear();
+    }
+
+    @Override
+    public int getRendererCount() {
+        return 1;
+    }
+
+    @Override
+    public int getRendererType(int index) {
+        return C.TRACK_TYPE_AUDIO;
+    }
+
+    @Override
+    public TrackGroupArray getCurrentTrackGroups() {
+        return mTimeline.isEmpty() ? TrackGroupArray.EMPTY : AUDIO_TRACK_GROUPS;
+    }
+
+    @Override
+    public TrackSelectionArray getCurrentTrackSelections() {
+        return mTrackSelections;
+    }
+
+    @Override
+    public Timeline getCurrentTimeline() {
+        return mTimeline;
+    }
+
+    @Override
+    public int getCurrentPeriodIndex() {
+        return 0;
+    }
+
+    @Override
+    public int getCurrentWindowIndex() {
+        return 0;
+    }
+
+    @Override
+    public long getDuration() {
+        return mSnapshot == null ? C.TIME_UNSET : mSnapshot.getDuration();
+    }
+
+    @Override
+    public long getCurrentPosition() {
+        return mSnapshot == null ? 0 : mSnapshot.getPositionAt(SystemClock.elapsedRealtime());
+    }
+
+    @Override
+    public long getBufferedPosition() {
+        return mSnapshot == null ? 0 : mSnapshot.getBufferedPosition();
+    }
+
+    @Override
+    public long getTotalBufferedDuration() {
+        return Math.max(0, getBufferedPosition() - getCurrentPosition());
+    }
+
+    @Override
+    public boolean isPlayingAd() {
+        return false;
+    }
+
+    @Override
+    public int getCurrentAdGroupIndex() {
+        return C.INDEX_UNSET;
+    }
+
+    @Override
+    public int getCurrentAdIndexInAdGroup() {
+        return C.INDEX_UNSET;
+    }
+
+    @Override
+    public long getContentPosition() {
+        return getCurrentPosition();
+    }
+
+    @Override
+    public long getContentBufferedPosition() {
+        return getBufferedPosition();
+    }
+}
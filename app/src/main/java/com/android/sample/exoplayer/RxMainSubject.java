@@ -1,25 +1,190 @@
 package com.android.sample.exoplayer;
 
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Scheduler;
 import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.exceptions.Exceptions;
 import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.BehaviorSubject;
 import io.reactivex.subjects.PublishSubject;
 import io.reactivex.subjects.Subject;
 
+/**
+ * A single channel of the playback event bus. Values may be published from any thread. A channel
+ * can replay its latest value to new subscribers, and subscribers that pass a scheduler receive
+ * values on it with rapid updates conflated to the latest one.
+ */
 public class RxMainSubject<T> {
 
-    private final Subject<T> subject;
+    private final String name;
+    private final boolean replay;
+    private final Subject<Event<T>> subject;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
 
     public RxMainSubject() {
-        subject = PublishSubject.create();
+        this("unnamed", false);
+    }
+
+    /**
+     * @param name   The channel name used in statistics.
+     * @param replay true to replay the latest value to new subscribers.
+     */
+    public RxMainSubject(String name, boolean replay) {
+        this.name = name;
+        this.replay = replay;
+        Subject<Event<T>> subject = replay
+                ? BehaviorSubject.<Event<T>>create()
+                : PublishSubject.<Event<T>>create();
+        this.subject = subject.toSerialized();
+    }
+
+    /**
+     * Subscribes with synchronous delivery on the publishing thread, every value is delivered.
+     */
+    public Disposable subscribe(@NonNull final Consumer<T> action) {
+        final long subscribedNanos = System.nanoTime();
+        return subject.subscribe(new Consumer<Event<T>>() {
+            @Override
+            public void accept(Event<T> event) throws Exception {
+                if (event.isCleared()) {
+                    return;
+                }
+                onDelivered(event, subscribedNanos);
+                action.accept(event.value);
+            }
+        });
     }
 
-    public Disposable subscribe(@NonNull Consumer<T> action) {
-        return subject.subscribe(action);
+    /**
+     * Subscribes with delivery on a scheduler. Values published while a delivery is pending
+     * replace the pending value, so a slow subscriber only sees the latest one.
+     */
+    public Disposable subscribe(@NonNull final Consumer<T> action, @NonNull Scheduler scheduler) {
+        final Scheduler.Worker worker = scheduler.createWorker();
+        final AtomicReference<Event<T>> pending = new AtomicReference<>();
+        final long subscribedNanos = System.nanoTime();
+        final Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                Event<T> event = pending.getAndSet(null);
+                if (event != null) {
+                    onDelivered(event, subscribedNanos);
+                    try {
+                        action.accept(event.value);
+                    } catch (Exception e) {
+                        throw Exceptions.propagate(e);
+                    }
+                }
+            }
+        };
+        Disposable disposable = subject.subscribe(new Consumer<Event<T>>() {
+            @Override
+            public void accept(Event<T> event) {
+                if (event.isCleared()) {
+                    return;
+                }
+                if (pending.getAndSet(event) == null) {
+                    worker.schedule(drain);
+                } else {
+                    conflated.incrementAndGet();
+                }
+            }
+        });
+        return new CompositeDisposable(disposable, worker);
     }
 
     public void publish(@NonNull T message) {
-        subject.onNext(message);
+        published.incrementAndGet();
+        if (!replay && !subject.hasObservers()) {
+            dropped.incrementAndGet();
+        }
+        subject.onNext(new Event<>(message));
+    }
+
+    /**
+     * Forgets the latest value of a replaying channel, so it isn't replayed to later subscribers.
+     * Current subscribers are not notified.
+     */
+    public void clear() {
+        if (replay) {
+            subject.onNext(new Event<T>(null));
+        }
+    }
+
+    /**
+     * @return The number of published values.
+     */
+    long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * @return The number of values published while nobody was subscribed to a channel without replay.
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of values replaced by a newer one before they were delivered.
+     */
+    long getConflatedCount() {
+        return conflated.get();
+    }
+
+    /**
+     * @return The number of deliveries to subscribers, not counting replayed values.
+     */
+    long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return The mean time from publishing to delivery, in nanoseconds. Replayed values are
+     * not counted.
+     */
+    long getMeanLatencyNanos() {
+        long count = delivered.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / count;
+    }
+
+    /**
+     * @return The longest time from publishing to delivery, in nanoseconds.
+     */
+    long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s: published=%d dropped=%d conflated=%d delivered=%d latency mean=%dus max=%dus",
+                name, getPublishedCount(), getDroppedCount(), getConflatedCount(),
+                getDeliveredCount(), getMeanLatencyNanos() / 1000, getMaxLatencyNanos() / 1000);
+    }
+
+    private void onDelivered(Event<T> event, long subscribedNanos) {
+        if (event.publishedNanos < subscribedNanos) {
+            // Replayed to a new subscriber, its age is not a delivery latency.
+            return;
+        }
+        long latencyNanos = System.nanoTime() - event.publishedNanos;
+        delivered.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        long max = maxLatencyNanos.get();
+        while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+            max = maxLatencyNanos.get();
+        }
     }
 
     public static void unsubscribe(Disposable... disposables) {
@@ -27,4 +192,21 @@ public class RxMainSubject<T> {
             disposable.dispose();
         }
     }
+
+    /**
+     * A published value with its publishing time, or a cleared value without one.
+     */
+    private static final class Event<T> {
+
+        final T value;
+        final long publishedNanos = System.nanoTime();
+
+        Event(T value) {
+            this.value = value;
+        }
+
+        boolean isCleared() {
+            return value == null;
+        }
+    }
 }
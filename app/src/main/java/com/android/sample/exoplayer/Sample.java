@@ -15,32 +15,15 @@ package com.android.sample.exoplayer;
  * limitations under the License.
  */
 
-import android.content.Context;
-import android.content.res.AssetManager;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
-import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.util.JsonReader;
-import android.widget.Toast;
-
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DataSourceInputStream;
-import com.google.android.exoplayer2.upstream.DataSpec;
-import com.google.android.exoplayer2.upstream.DefaultDataSource;
-import com.google.android.exoplayer2.util.Util;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * Java Object representing a single sample. Also includes utility methods for obtaining samples
- * from assets.
+ * Java Object representing a single sample. Also includes utility methods for reading samples
+ * from the JSON catalog, see {@link SampleCatalog}.
  */
 class Sample implements Parcelable {
 
@@ -50,7 +33,7 @@ class Sample implements Parcelable {
     private String mUri;
     private String mAlbumArtID;
 
-    private Sample(int sampleID, String composer, String title, String uri, String albumArtID) {
+    Sample(int sampleID, String composer, String title, String uri, String albumArtID) {
         mSampleID = sampleID;
         mComposer = composer;
         mTitle = title;
@@ -89,72 +72,12 @@ class Sample implements Parcelable {
         mAlbumArtID = in.readString();
     }
 
-    /**
-     * Gets portrait of the composer for a sample by the sample ID.
-     * @param context  The application context.
-     * @param sampleID The sample ID.
-     * @return The portrait Drawable.
-     */
-    static Drawable getComposerArtBySampleID(Context context, int sampleID) {
-        Sample sample = Sample.getSampleByID(context, sampleID);
-        int albumArtID = context.getResources().getIdentifier(
-                sample != null ? sample.getAlbumArtID() : null, "drawable",
-                context.getPackageName());
-        return new BitmapDrawable(context.getResources(), BitmapFactory.decodeResource(context.getResources(), albumArtID));
-    }
-
-    /**
-     * Gets a single sample by its ID.
-     * @param context  The application context.
-     * @param sampleID The sample ID.
-     * @return The sample object.
-     */
-    static Sample getSampleByID(Context context, int sampleID) {
-        JsonReader reader;
-        try {
-            reader = readJSONFile(context);
-            reader.beginArray();
-            while (reader.hasNext()) {
-                Sample currentSample = readEntry(reader);
-                if (currentSample.getSampleID() == sampleID) {
-                    reader.close();
-                    return currentSample;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return null;
-    }
-
-    /**
-     * Gets and ArrayList of the IDs for all of the Samples from the JSON file.
-     * @param context The application context.
-     * @return The ArrayList of all sample IDs.
-     */
-    static List<Integer> getAllSampleIDs(Context context) {
-        JsonReader reader;
-        List<Integer> sampleIDs = new ArrayList<>();
-        try {
-            reader = readJSONFile(context);
-            reader.beginArray();
-            while (reader.hasNext()) {
-                sampleIDs.add(readEntry(reader).getSampleID());
-            }
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return sampleIDs;
-    }
-
     /**
      * Method used for obtaining a single sample from the JSON file.
      * @param reader The JSON reader object pointing a single sample JSON object.
      * @return The Sample the JsonReader is pointing to.
      */
-    private static Sample readEntry(JsonReader reader) {
+    static Sample readEntry(JsonReader reader) {
         int id = -1;
         String composer = null;
         String title = null;
@@ -182,6 +105,7 @@ class Sample implements Parcelable {
                         albumArtID = reader.nextString();
                         break;
                     default:
+                        reader.skipValue();
                         break;
                 }
             }
@@ -193,42 +117,6 @@ class Sample implements Parcelable {
         return new Sample(id, composer, title, uri, albumArtID);
     }
 
-    /**
-     * Method for creating a JsonReader object that points to the JSON array of samples.
-     * @param context The application context.
-     * @return The JsonReader object pointing to the JSON array of samples.
-     * @throws IOException Exception thrown if the sample file can't be found.
-     */
-    private static JsonReader readJSONFile(Context context) throws IOException {
-        AssetManager assetManager = context.getAssets();
-        String uri = null;
-
-        try {
-            for (String asset : assetManager.list("")) {
-                if (asset.endsWith(".exolist.json")) {
-                    uri = "asset:///" + asset;
-                }
-            }
-        } catch (IOException e) {
-            Toast.makeText(context, R.string.sample_list_load_error, Toast.LENGTH_LONG)
-                    .show();
-        }
-
-        String userAgent = Util.getUserAgent(context, "ExoPlayer");
-        DataSource dataSource = new DefaultDataSource(context, userAgent, false);
-        DataSpec dataSpec = new DataSpec(Uri.parse(uri));
-        InputStream inputStream = new DataSourceInputStream(dataSource, dataSpec);
-
-        JsonReader reader;
-        try {
-            reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
-        } finally {
-            Util.closeQuietly(dataSource);
-        }
-
-        return reader;
-    }
-
     // Getters and Setters
 
     String getTitle() {
@@ -0,0 +1,175 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import android.util.JsonReader;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Catalog of the samples declared in the {@code *.exolist.json} asset. On first run the JSON file
+ * is parsed once in a single streaming pass and compiled into a {@link CatalogFile}, later runs
+ * only map that file, so startup cost does not depend on the size of the catalog. Every lookup
+ * is O(1).
+ */
+final class SampleCatalog {
+
+    private static final String TAG = SampleCatalog.class.getSimpleName();
+    private static final String CATALOG_SUFFIX = ".exolist.json";
+    private static final String COMPILED_SUFFIX = ".bin";
+    /**
+     * The stamp of a catalog compiled from a malformed source, no source has it.
+     */
+    static final long PARTIAL_SOURCE_STAMP = -1;
+    private static SampleCatalog sInstance;
+    private final CatalogFile mFile;
+
+    private SampleCatalog(@Nullable CatalogFile file) {
+        mFile = file;
+    }
+
+    /**
+     * Gets the catalog, compiling or mapping it on first use. Since this may read and parse the
+     * asset, it should not be called on the main thread before the catalog has been loaded.
+     * @param context The application context.
+     * @return The catalog.
+     */
+    public synchronized static SampleCatalog getInstance(Context context) {
+        if (sInstance == null) {
+            //Use application Context to prevent leak.
+            sInstance = load(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return The number of samples in the catalog.
+     */
+    int size() {
+        return mFile == null ? 0 : mFile.size();
+    }
+
+    /**
+     * Gets a sample by its position in the catalog, which is also its position in the queue.
+     * Every call creates a new sample object.
+     * @param index The catalog position.
+     * @return The sample object.
+     */
+    Sample getSampleAt(int index) {
+        if (mFile == null) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size 0");
+        }
+        return mFile.getSample(index);
+    }
+
+    /**
+     * Gets a single sample by its ID.
+     * @param sampleID The sample ID.
+     * @return The sample object, or null if there is no sample with this ID.
+     */
+    Sample getSampleByID(int sampleID) {
+        int index = indexOf(sampleID);
+        return index == SampleIdIndex.NOT_FOUND ? null : mFile.getSample(index);
+    }
+
+    /**
+     * Gets the catalog position of a sample.
+     * @param sampleID The sample ID.
+     * @return The position, or {@link SampleIdIndex#NOT_FOUND} if there is no sample with this ID.
+     */
+    int indexOf(int sampleID) {
+        return mFile == null ? SampleIdIndex.NOT_FOUND : mFile.indexOf(sampleID);
+    }
+
+    /**
+     * Maps the compiled catalog, compiling it from the asset first if it is missing or older than
+     * the installed app.
+     * @param context The application context.
+     * @return The loaded catalog, empty if the asset is missing or can't be compiled.
+     */
+    private static SampleCatalog load(Context context) {
+        try {
+            String asset = findCatalogAsset(context.getAssets());
+            if (asset == null) {
+                return new SampleCatalog(null);
+            }
+            // Assets only change with the app, so its install time identifies the source.
+            long sourceStamp = getSourceStamp(context);
+            File file = new File(context.getFilesDir(), asset + COMPILED_SUFFIX);
+            CatalogFile catalogFile = CatalogFile.open(file, sourceStamp);
+            if (catalogFile == null) {
+                catalogFile = CatalogFile.open(file,
+                        compile(context.getAssets().open(asset), file, sourceStamp));
+            }
+            return new SampleCatalog(catalogFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to load sample catalog", e);
+            return new SampleCatalog(null);
+        }
+    }
+
+    /**
+     * Parses a catalog in the JSON format and writes it as a {@link CatalogFile}. A malformed
+     * catalog is compiled up to the first error and stamped with {@link #PARTIAL_SOURCE_STAMP},
+     * so it is compiled again the next time it is loaded instead of being taken as up to date.
+     * @param inputStream The JSON catalog, closed once it has been read.
+     * @param file        The compiled catalog file.
+     * @param sourceStamp The stamp identifying the JSON catalog.
+     * @return The stamp the file was written with.
+     * @throws IOException Exception thrown if the file can't be written.
+     */
+    static long compile(InputStream inputStream, File file, long sourceStamp) throws IOException {
+        CatalogFile.Writer writer = new CatalogFile.Writer();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+        long stamp = PARTIAL_SOURCE_STAMP;
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                writer.add(Sample.readEntry(reader));
+            }
+            reader.endArray();
+            stamp = sourceStamp;
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "Malformed sample catalog compiled to " + file, e);
+        } finally {
+            reader.close();
+        }
+        writer.write(file, stamp);
+        return stamp;
+    }
+
+    /**
+     * @return The time the app was last installed or updated.
+     */
+    private static long getSourceStamp(Context context) {
+        try {
+            return context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds the catalog asset.
+     * @param assetManager The application asset manager.
+     * @return The asset file name, or null if there is none.
+     * @throws IOException Exception thrown if the assets can't be listed.
+     */
+    private static String findCatalogAsset(AssetManager assetManager) throws IOException {
+        String catalog = null;
+        for (String asset : assetManager.list("")) {
+            if (asset.endsWith(CATALOG_SUFFIX)) {
+                catalog = asset;
+            }
+        }
+        return catalog;
+    }
+}
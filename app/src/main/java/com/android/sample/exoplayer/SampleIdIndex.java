@@ -0,0 +1,138 @@
+package com.android.sample.exoplayer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Open addressing map from sample ID to catalog position. Keys and values are kept in primitive
+ * arrays so lookups neither box nor allocate. The table can be written to a buffer and looked up
+ * in place there, see {@link CatalogFile}.
+ */
+final class SampleIdIndex {
+
+    static final int NOT_FOUND = -1;
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] mKeys;
+    private int[] mValues;
+    private int mMask;
+    private int mSize;
+
+    SampleIdIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Associates a sample ID with its position in the catalog, replacing any previous position.
+     * @param sampleID The sample ID.
+     * @param position The position of the sample in the catalog.
+     */
+    void put(int sampleID, int position) {
+        if (sampleID == EMPTY) {
+            throw new IllegalArgumentException("Unsupported sample ID: " + sampleID);
+        }
+        if ((mSize + 1) * 2 > mKeys.length) {
+            rehash(mKeys.length << 1);
+        }
+        int slot = slotOf(sampleID);
+        if (mKeys[slot] == EMPTY) {
+            mKeys[slot] = sampleID;
+            mSize++;
+        }
+        mValues[slot] = position;
+    }
+
+    /**
+     * Gets the catalog position of a sample.
+     * @param sampleID The sample ID.
+     * @return The position, or {@link #NOT_FOUND} if the ID is unknown.
+     */
+    int get(int sampleID) {
+        if (sampleID == EMPTY) {
+            return NOT_FOUND;
+        }
+        int slot = slotOf(sampleID);
+        return mKeys[slot] == EMPTY ? NOT_FOUND : mValues[slot];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return The number of slots, always a power of two.
+     */
+    int capacity() {
+        return mKeys.length;
+    }
+
+    /**
+     * Writes the table as {@link #capacity()} pairs of key and value at the buffer's position.
+     * @param buffer The buffer to write to.
+     */
+    void writeTo(ByteBuffer buffer) {
+        for (int i = 0; i < mKeys.length; i++) {
+            buffer.putInt(mKeys[i]);
+            buffer.putInt(mValues[i]);
+        }
+    }
+
+    /**
+     * Looks up a sample in a table written by {@link #writeTo(ByteBuffer)}.
+     * @param buffer   The buffer holding the table.
+     * @param offset   The offset of the table in the buffer.
+     * @param capacity The capacity of the written table.
+     * @param sampleID The sample ID.
+     * @return The position, or {@link #NOT_FOUND} if the ID is unknown.
+     */
+    static int get(ByteBuffer buffer, int offset, int capacity, int sampleID) {
+        if (sampleID == EMPTY || capacity == 0) {
+            return NOT_FOUND;
+        }
+        int mask = capacity - 1;
+        int slot = mix(sampleID) & mask;
+        while (true) {
+            int key = buffer.getInt(offset + slot * 8);
+            if (key == sampleID) {
+                return buffer.getInt(offset + slot * 8 + 4);
+            } else if (key == EMPTY) {
+                return NOT_FOUND;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slotOf(int key) {
+        int slot = mix(key) & mMask;
+        while (mKeys[slot] != EMPTY && mKeys[slot] != key) {
+            slot = (slot + 1) & mMask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] keys = mKeys;
+        int[] values = mValues;
+        allocate(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                int slot = slotOf(keys[i]);
+                mKeys[slot] = keys[i];
+                mValues[slot] = values[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new int[capacity];
+        mValues = new int[capacity];
+        mMask = capacity - 1;
+        Arrays.fill(mKeys, EMPTY);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,40 @@
+package com.android.sample.exoplayer;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.ProgressiveMediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+
+/**
+ * Creates the progressive media source of each sample of the playlist, tagged with the sample.
+ * A {@link ProgressiveMediaSource.Factory} refuses {@link ProgressiveMediaSource.Factory#setTag}
+ * once it created a source, so a new one is built for every sample. They are cheap, the data
+ * source factory is shared.
+ */
+final class SampleMediaSourceFactory {
+
+    private final DataSource.Factory mDataSourceFactory;
+    private final Mp3SeekIndexStore mSeekIndexStore;
+
+    /**
+     * @param dataSourceFactory The factory of the data sources the media is read with.
+     * @param seekIndexStore    The store providing the extractors of each sample.
+     */
+    SampleMediaSourceFactory(DataSource.Factory dataSourceFactory,
+                             Mp3SeekIndexStore seekIndexStore) {
+        mDataSourceFactory = dataSourceFactory;
+        mSeekIndexStore = seekIndexStore;
+    }
+
+    /**
+     * @param sample The sample.
+     * @return A new media source playing the sample, whose tag is the sample.
+     */
+    MediaSource createMediaSource(Sample sample) {
+        return new ProgressiveMediaSource.Factory(mDataSourceFactory,
+                mSeekIndexStore.getExtractorsFactory(sample))
+                .setTag(sample)
+                .createMediaSource(Uri.parse(sample.getUri()));
+    }
+}
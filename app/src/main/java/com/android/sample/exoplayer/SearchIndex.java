@@ -0,0 +1,252 @@
+package com.android.sample.exoplayer;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Word prefix index over sample titles and composers. Every word is folded to lower case without
+ * accents and kept in a sorted array with the catalog positions of the samples it occurs in, so a
+ * query term is resolved with two binary searches. Samples must match every term of a query and
+ * are ranked by how well they match, exact words over prefixes and titles over composers.
+ */
+final class SearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int FIELD_TITLE = 0;
+    private static final int FIELD_COMPOSER = 1;
+    private static final int[] EXACT_SCORES = {8, 4};
+    private static final int[] PREFIX_SCORES = {4, 2};
+    private final String[] mWords;
+    private final int[] mPostingStarts;
+    private final int[] mPostings;
+    private final int[] mQueries;
+    private final int[] mMatchedTerms;
+    private final int[] mScores;
+    private int[] mCandidates = new int[64];
+    private int mGeneration;
+
+    private SearchIndex(String[] words, int[] postingStarts, int[] postings, int size) {
+        mWords = words;
+        mPostingStarts = postingStarts;
+        mPostings = postings;
+        mQueries = new int[size];
+        mMatchedTerms = new int[size];
+        mScores = new int[size];
+    }
+
+    /**
+     * Indexes a catalog. Reads every sample, so it should not be called on the main thread.
+     * @param catalog The catalog.
+     * @return The index, whose results are positions in the catalog.
+     */
+    static SearchIndex of(SampleCatalog catalog) {
+        Builder builder = new Builder();
+        for (int i = 0; i < catalog.size(); i++) {
+            Sample sample = catalog.getSampleAt(i);
+            builder.add(i, sample.getTitle(), sample.getComposer());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Searches the index.
+     * @param query The query, every word of which is matched as a word prefix.
+     * @param limit The maximum number of results.
+     * @return The catalog positions of the matching samples, best match first.
+     */
+    synchronized int[] search(String query, int limit) {
+        String[] terms = tokenize(query);
+        if (terms.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        int[][] ranges = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            ranges[i] = findRange(terms[i]);
+        }
+        // Start with the most selective term, every later term only narrows the candidates.
+        Arrays.sort(ranges, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(a[2], b[2]);
+            }
+        });
+
+        int generation = ++mGeneration;
+        int candidateCount = 0;
+        for (int term = 0; term < ranges.length; term++) {
+            int[] range = ranges[term];
+            for (int word = range[0]; word < range[1]; word++) {
+                boolean exact = mWords[word].length() == range[3];
+                for (int p = mPostingStarts[word]; p < mPostingStarts[word + 1]; p++) {
+                    int position = mPostings[p] >>> 1;
+                    int field = mPostings[p] & 1;
+                    if (term == 0 && mQueries[position] != generation) {
+                        mQueries[position] = generation;
+                        mMatchedTerms[position] = 0;
+                        mScores[position] = 0;
+                        if (candidateCount == mCandidates.length) {
+                            mCandidates = Arrays.copyOf(mCandidates, candidateCount * 2);
+                        }
+                        mCandidates[candidateCount++] = position;
+                    }
+                    if (mQueries[position] == generation && mMatchedTerms[position] == term) {
+                        mMatchedTerms[position] = term + 1;
+                        mScores[position] += exact ? EXACT_SCORES[field] : PREFIX_SCORES[field];
+                    }
+                }
+            }
+        }
+        return selectTop(candidateCount, ranges.length, limit);
+    }
+
+    /**
+     * @return The best candidates that matched every term, as catalog positions.
+     */
+    private int[] selectTop(int candidateCount, int termCount, int limit) {
+        // Score in the high bits, lower positions win ties.
+        long[] top = new long[limit];
+        int size = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int position = mCandidates[i];
+            if (mMatchedTerms[position] != termCount) {
+                continue;
+            }
+            long key = ((long) mScores[position] << 32) | (Integer.MAX_VALUE - position);
+            if (size == limit && key <= top[size - 1]) {
+                continue;
+            }
+            int j = size == limit ? size - 1 : size++;
+            while (j > 0 && top[j - 1] < key) {
+                top[j] = top[j - 1];
+                j--;
+            }
+            top[j] = key;
+        }
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = Integer.MAX_VALUE - (int) top[i];
+        }
+        return positions;
+    }
+
+    /**
+     * @return The words starting with the term as {first, end, posting count, term length}.
+     */
+    private int[] findRange(String term) {
+        int first = lowerBound(term);
+        int end = lowerBound(term + '\uffff');
+        return new int[]{first, end, mPostingStarts[end] - mPostingStarts[first], term.length()};
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = mWords.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mWords[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Splits text into lower case words without accents.
+     * @param text The text, may be null.
+     * @return The words.
+     */
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        String folded = text.toLowerCase(Locale.ROOT);
+        if (!isAscii(folded)) {
+            folded = MARKS.matcher(Normalizer.normalize(folded, Normalizer.Form.NFD)).replaceAll("");
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : SEPARATORS.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the samples to index. Meant to be used on a background thread.
+     */
+    static final class Builder {
+
+        private final Map<String, int[]> mPostings = new HashMap<>();
+        private int mSize;
+
+        /**
+         * Adds a sample.
+         * @param position The catalog position of the sample.
+         * @param title    The title, may be null.
+         * @param composer The composer, may be null.
+         * @return This builder.
+         */
+        Builder add(int position, String title, String composer) {
+            addField(position, FIELD_TITLE, title);
+            addField(position, FIELD_COMPOSER, composer);
+            mSize = Math.max(mSize, position + 1);
+            return this;
+        }
+
+        SearchIndex build() {
+            String[] words = mPostings.keySet().toArray(new String[0]);
+            Arrays.sort(words);
+            int[] postingStarts = new int[words.length + 1];
+            for (int i = 0; i < words.length; i++) {
+                postingStarts[i + 1] = postingStarts[i] + mPostings.get(words[i])[0];
+            }
+            int[] postings = new int[postingStarts[words.length]];
+            for (int i = 0; i < words.length; i++) {
+                int[] list = mPostings.get(words[i]);
+                System.arraycopy(list, 1, postings, postingStarts[i], list[0]);
+            }
+            return new SearchIndex(words, postingStarts, postings, mSize);
+        }
+
+        private void addField(int position, int field, String text) {
+            for (String word : tokenize(text)) {
+                // The first element holds the number of postings.
+                int[] list = mPostings.get(word);
+                if (list == null) {
+                    list = new int[4];
+                    mPostings.put(word, list);
+                }
+                int posting = position << 1 | field;
+                if (list[0] > 0 && list[list[0]] == posting) {
+                    // Repeated word within the same field.
+                    continue;
+                }
+                if (list[0] + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    mPostings.put(word, list);
+                }
+                list[++list[0]] = posting;
+            }
+        }
+    }
+}
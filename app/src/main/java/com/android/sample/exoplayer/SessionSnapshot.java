@@ -0,0 +1,143 @@
+package com.android.sample.exoplayer;
+
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state a restarted service needs to resume playback without loading the catalog: the
+ * resident window of the playlist with the full sample descriptors, the current sample and
+ * position, whether it was playing and the buffering profile. Immutable.
+ */
+final class SessionSnapshot {
+
+    private static final int MAX_SAMPLE_COUNT = 1024;
+    private final long mRealtimeMs;
+    private final int mFirstIndex;
+    private final List<Sample> mSamples;
+    private final int mCurrentIndex;
+    private final long mPositionMs;
+    private final boolean mPlayWhenReady;
+    private final BufferingProfile mBufferingProfile;
+
+    /**
+     * @param realtimeMs       The {@link android.os.SystemClock#elapsedRealtime()} the snapshot
+     *                         was taken at.
+     * @param firstIndex       The catalog position of the first sample.
+     * @param samples          The samples of the playlist window.
+     * @param currentIndex     The catalog position of the current sample, within the window.
+     * @param positionMs       The position within the current sample.
+     * @param playWhenReady    Whether playback should continue.
+     * @param bufferingProfile The buffering profile.
+     */
+    SessionSnapshot(long realtimeMs, int firstIndex, List<Sample> samples, int currentIndex,
+                    long positionMs, boolean playWhenReady, BufferingProfile bufferingProfile) {
+        if (currentIndex < firstIndex || currentIndex >= firstIndex + samples.size()) {
+            throw new IllegalArgumentException("Current index " + currentIndex
+                    + " outside of the window at " + firstIndex + " of " + samples.size());
+        }
+        mRealtimeMs = realtimeMs;
+        mFirstIndex = firstIndex;
+        mSamples = Collections.unmodifiableList(new ArrayList<>(samples));
+        mCurrentIndex = currentIndex;
+        mPositionMs = positionMs;
+        mPlayWhenReady = playWhenReady;
+        mBufferingProfile = bufferingProfile;
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo(DataOutputStream)}.
+     * @throws IOException Exception thrown if the stream can't be read or is malformed.
+     */
+    static SessionSnapshot readFrom(DataInputStream input) throws IOException {
+        long realtimeMs = input.readLong();
+        int firstIndex = input.readInt();
+        int count = input.readInt();
+        if (count <= 0 || count > MAX_SAMPLE_COUNT) {
+            throw new IOException("Invalid sample count " + count);
+        }
+        List<Sample> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            samples.add(new Sample(input.readInt(), readString(input), readString(input),
+                    readString(input), readString(input)));
+        }
+        int currentIndex = input.readInt();
+        long positionMs = input.readLong();
+        boolean playWhenReady = input.readBoolean();
+        BufferingProfile bufferingProfile;
+        try {
+            bufferingProfile = BufferingProfile.valueOf(input.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown buffering profile", e);
+        }
+        try {
+            return new SessionSnapshot(realtimeMs, firstIndex, samples, currentIndex, positionMs,
+                    playWhenReady, bufferingProfile);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeLong(mRealtimeMs);
+        output.writeInt(mFirstIndex);
+        output.writeInt(mSamples.size());
+        for (Sample sample : mSamples) {
+            output.writeInt(sample.getSampleID());
+            writeString(output, sample.getComposer());
+            writeString(output, sample.getTitle());
+            writeString(output, sample.getUri());
+            writeString(output, sample.getAlbumArtID());
+        }
+        output.writeInt(mCurrentIndex);
+        output.writeLong(mPositionMs);
+        output.writeBoolean(mPlayWhenReady);
+        output.writeUTF(mBufferingProfile.name());
+    }
+
+    long getRealtimeMs() {
+        return mRealtimeMs;
+    }
+
+    int getFirstIndex() {
+        return mFirstIndex;
+    }
+
+    List<Sample> getSamples() {
+        return mSamples;
+    }
+
+    int getCurrentIndex() {
+        return mCurrentIndex;
+    }
+
+    long getPositionMs() {
+        return mPositionMs;
+    }
+
+    boolean getPlayWhenReady() {
+        return mPlayWhenReady;
+    }
+
+    BufferingProfile getBufferingProfile() {
+        return mBufferingProfile;
+    }
+
+    @Nullable
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream output, @Nullable String value)
+            throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Hands a {@link SessionSnapshot} from a service that is restarting itself to the next one. The
+ * snapshot is kept in memory for a restart within the same process and written to a file for a
+ * restart in a new one. A snapshot is taken at most once and only shortly after it was saved, a
+ * later start is a cold start that resumes from the {@link CheckpointStore}.
+ */
+final class SessionSnapshotStore {
+
+    private static final String TAG = SessionSnapshotStore.class.getSimpleName();
+    private static final String FILE_NAME = "session.snapshot";
+    private static final int MAGIC = 0x45585353;
+    private static final int VERSION = 1;
+    private static final long MAX_AGE_MS = 60_000;
+    private static SessionSnapshotStore sInstance;
+    private final File mFile;
+    private SessionSnapshot mSnapshot;
+
+    private SessionSnapshotStore(File file) {
+        mFile = file;
+    }
+
+    public synchronized static SessionSnapshotStore getInstance(Context context) {
+        if (sInstance == null) {
+            //Use application Context to prevent leak.
+            sInstance = new SessionSnapshotStore(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Saves a snapshot for the next start.
+     * @param snapshot The snapshot.
+     * @param executor The executor the file is written on.
+     */
+    synchronized void save(final SessionSnapshot snapshot, Executor executor) {
+        mSnapshot = snapshot;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Takes the saved snapshot. Reads and deletes a small file if the snapshot isn't in memory.
+     * @param nowRealtimeMs The current {@link android.os.SystemClock#elapsedRealtime()}.
+     * @return The snapshot, or null if there is none or it is too old.
+     */
+    @Nullable
+    synchronized SessionSnapshot take(long nowRealtimeMs) {
+        SessionSnapshot snapshot = mSnapshot;
+        mSnapshot = null;
+        if (snapshot == null) {
+            snapshot = read();
+        }
+        if (mFile.exists() && !mFile.delete()) {
+            Log.w(TAG, "Unable to delete " + mFile);
+        }
+        // The realtime clock restarts with the device, a snapshot from the future is stale.
+        if (snapshot == null || snapshot.getRealtimeMs() > nowRealtimeMs
+                || nowRealtimeMs - snapshot.getRealtimeMs() > MAX_AGE_MS) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private synchronized void write(SessionSnapshot snapshot) {
+        if (mSnapshot != snapshot) {
+            // Taken or replaced in the meantime.
+            return;
+        }
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            snapshot.writeTo(output);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write " + tempFile, e);
+            return;
+        }
+        if (!tempFile.renameTo(mFile)) {
+            Log.e(TAG, "Unable to rename " + tempFile);
+        }
+    }
+
+    @Nullable
+    private SessionSnapshot read() {
+        if (!mFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+            return SessionSnapshot.readFrom(input);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + mFile, e);
+            return null;
+        }
+    }
+}
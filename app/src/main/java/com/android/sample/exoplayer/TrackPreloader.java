@@ -0,0 +1,212 @@
+package com.android.sample.exoplayer;
+
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Buffers the beginning of the upcoming playlist windows ahead of time. The prefixes are read
+ * through the shared data source stack, which stores remote media in the {@link MediaCache} and
+ * warms the page cache for local media, so transitions and skips don't wait on the first bytes.
+ */
+final class TrackPreloader implements Player.EventListener {
+
+    private static final String TAG = TrackPreloader.class.getSimpleName();
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private final Player mPlayer;
+    private final DataSource.Factory mDataSourceFactory;
+    private final ExecutorService mExecutor;
+    private final Timeline.Window mWindow = new Timeline.Window();
+    private final Map<String, Future<?>> mPreloads = new HashMap<>();
+    private Policy mPolicy;
+
+    /**
+     * @param player            The player whose upcoming windows are preloaded.
+     * @param dataSourceFactory The factory the player reads media through.
+     * @param executor          The executor running the preloads.
+     * @param policy            How much to preload.
+     */
+    TrackPreloader(Player player, DataSource.Factory dataSourceFactory, ExecutorService executor,
+                   Policy policy) {
+        mPlayer = player;
+        mDataSourceFactory = dataSourceFactory;
+        mExecutor = executor;
+        mPolicy = policy;
+    }
+
+    /**
+     * Changes how much is preloaded, effective immediately.
+     * @param policy The new policy.
+     */
+    void setPolicy(Policy policy) {
+        mPolicy = policy;
+        cancelAll();
+        update();
+    }
+
+    Policy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Starts preloading the upcoming windows and cancels preloads that are no longer upcoming.
+     * Must be called on the player thread.
+     */
+    void update() {
+        List<String> uris = getUpcomingUris();
+        Iterator<Map.Entry<String, Future<?>>> iterator = mPreloads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Future<?>> entry = iterator.next();
+            if (!uris.contains(entry.getKey())) {
+                entry.getValue().cancel(true);
+                iterator.remove();
+            }
+        }
+        long length = mPolicy.getBytesPerWindow();
+        for (String uri : uris) {
+            if (!mPreloads.containsKey(uri)) {
+                mPreloads.put(uri, mExecutor.submit(new Preload(uri, length)));
+            }
+        }
+    }
+
+    /**
+     * Cancels all preloads.
+     */
+    void cancelAll() {
+        for (Future<?> future : mPreloads.values()) {
+            future.cancel(true);
+        }
+        mPreloads.clear();
+    }
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, int reason) {
+        update();
+    }
+
+    @Override
+    public void onPositionDiscontinuity(int reason) {
+        update();
+    }
+
+    @Override
+    public void onRepeatModeChanged(int repeatMode) {
+        update();
+    }
+
+    @Override
+    public void onShuffleModeEnabledChanged(boolean shuffleModeEnabled) {
+        update();
+    }
+
+    private List<String> getUpcomingUris() {
+        List<String> uris = new ArrayList<>();
+        Timeline timeline = mPlayer.getCurrentTimeline();
+        if (timeline.isEmpty()) {
+            return uris;
+        }
+        int windowIndex = mPlayer.getCurrentWindowIndex();
+        for (int i = 0; i < mPolicy.getWindowCount(); i++) {
+            windowIndex = timeline.getNextWindowIndex(windowIndex, mPlayer.getRepeatMode(),
+                    mPlayer.getShuffleModeEnabled());
+            if (windowIndex == C.INDEX_UNSET) {
+                break;
+            }
+            Object tag = timeline.getWindow(windowIndex, mWindow).tag;
+            if (tag instanceof Sample && !uris.contains(((Sample) tag).getUri())) {
+                uris.add(((Sample) tag).getUri());
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * Reads the beginning of a media file and discards it.
+     */
+    private final class Preload implements Runnable {
+
+        private final String mUri;
+        private final long mLength;
+
+        Preload(String uri, long length) {
+            mUri = uri;
+            mLength = length;
+        }
+
+        @Override
+        public void run() {
+            DataSource dataSource = mDataSourceFactory.createDataSource();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try {
+                long available = dataSource.open(new DataSpec(Uri.parse(mUri), 0, mLength, null));
+                long remaining = available == C.LENGTH_UNSET ? mLength : available;
+                while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+                    int read = dataSource.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == C.RESULT_END_OF_INPUT) {
+                        break;
+                    }
+                    remaining -= read;
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to preload " + mUri, e);
+            } finally {
+                try {
+                    dataSource.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to close preload of " + mUri, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * How many upcoming windows to preload, and how much of each.
+     */
+    static final class Policy {
+
+        /**
+         * Bitrate used to convert a duration into bytes before the media format is known.
+         */
+        private static final long ASSUMED_BYTES_PER_SECOND = 320 * 1000 / 8;
+        private final int mWindowCount;
+        private final long mBytes;
+        private final long mSeconds;
+
+        /**
+         * @param windowCount The number of upcoming windows to preload.
+         * @param bytes       The minimum number of bytes to preload per window.
+         * @param seconds     The minimum number of seconds to preload per window.
+         */
+        Policy(int windowCount, long bytes, long seconds) {
+            mWindowCount = windowCount;
+            mBytes = bytes;
+            mSeconds = seconds;
+        }
+
+        int getWindowCount() {
+            return mWindowCount;
+        }
+
+        /**
+         * @return The number of bytes to preload per window, covering both minimums.
+         */
+        long getBytesPerWindow() {
+            return Math.max(mBytes, mSeconds * ASSUMED_BYTES_PER_SECOND);
+        }
+    }
+}
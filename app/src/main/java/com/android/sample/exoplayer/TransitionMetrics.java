@@ -0,0 +1,145 @@
+package com.android.sample.exoplayer;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.Player;
+
+import java.util.Locale;
+
+/**
+ * Measures the time from an automatic track transition until the player is playing again, and
+ * the latency from a user skip until audio plays again. This is not the audible gap: when the
+ * next track is buffered the player stays ready and the time is zero, so it only shows
+ * transitions that had to wait for data. The times go into a histogram shared with
+ * {@link QoeMetrics}, which reports them without measuring them again. A skip is only timed
+ * while the user wants playback, time spent paused is not latency. Must be used on the player
+ * thread.
+ */
+final class TransitionMetrics implements Player.EventListener {
+
+    private static final long NONE = -1;
+    private final Player mPlayer;
+    private final Histogram mTransitionReadyTime;
+    private final Latency mSkipLatency = new Latency();
+    private long mTransitionStartMs = NONE;
+    private long mSkipStartMs = NONE;
+    private boolean mSkipApplied;
+
+    /**
+     * @param player              The player.
+     * @param transitionReadyTime The histogram the times until playing after a transition are
+     *                            added to, in milliseconds.
+     */
+    TransitionMetrics(Player player, Histogram transitionReadyTime) {
+        mPlayer = player;
+        mTransitionReadyTime = transitionReadyTime;
+    }
+
+    /**
+     * Marks the start of a user skip, to be called right before the player is asked to skip.
+     * Ignored while paused.
+     */
+    void onSkipRequested() {
+        if (!mPlayer.getPlayWhenReady()) {
+            mSkipStartMs = NONE;
+            return;
+        }
+        mSkipStartMs = SystemClock.elapsedRealtime();
+        mSkipApplied = false;
+    }
+
+    /**
+     * @return The times from a track transition until the player is playing again.
+     */
+    Histogram getTransitionReadyTime() {
+        return mTransitionReadyTime;
+    }
+
+    /**
+     * @return The latencies from a user skip until audio plays.
+     */
+    Latency getSkipLatency() {
+        return mSkipLatency;
+    }
+
+    @Override
+    public void onPositionDiscontinuity(int reason) {
+        if (reason == Player.DISCONTINUITY_REASON_PERIOD_TRANSITION) {
+            mTransitionStartMs = SystemClock.elapsedRealtime();
+        } else if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+            // The transition was cut short, the time until audio is a seek.
+            mTransitionStartMs = NONE;
+        }
+        if (mSkipStartMs != NONE) {
+            mSkipApplied = true;
+        }
+        checkAudible();
+    }
+
+    @Override
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        if (!playWhenReady) {
+            // Paused before the skip played, the rest would be the user's time.
+            mSkipStartMs = NONE;
+        }
+        checkAudible();
+    }
+
+    @Override
+    public void onIsPlayingChanged(boolean isPlaying) {
+        checkAudible();
+    }
+
+    private void checkAudible() {
+        if (!mPlayer.isPlaying()) {
+            return;
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        if (mTransitionStartMs != NONE) {
+            mTransitionReadyTime.add(nowMs - mTransitionStartMs);
+            mTransitionStartMs = NONE;
+        }
+        if (mSkipStartMs != NONE && mSkipApplied) {
+            mSkipLatency.add(nowMs - mSkipStartMs);
+            mSkipStartMs = NONE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "transition to playing: " + mTransitionReadyTime + ", skip latency: " + mSkipLatency;
+    }
+
+    /**
+     * Count, mean and maximum of a latency, in milliseconds.
+     */
+    static final class Latency {
+
+        private int mCount;
+        private long mTotalMs;
+        private long mMaxMs;
+
+        void add(long latencyMs) {
+            mCount++;
+            mTotalMs += latencyMs;
+            mMaxMs = Math.max(mMaxMs, latencyMs);
+        }
+
+        int getCount() {
+            return mCount;
+        }
+
+        long getMeanMs() {
+            return mCount == 0 ? 0 : mTotalMs / mCount;
+        }
+
+        long getMaxMs() {
+            return mMaxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "n=%d mean=%dms max=%dms", mCount, getMeanMs(), mMaxMs);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.android.sample.exoplayer;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Coalesces bursts of update requests into at most one update per interval. Requests made while
+ * an update is pending are folded into it, so the update always sees the latest state.
+ */
+final class UpdateScheduler {
+
+    private final Handler mHandler;
+    private final long mIntervalMs;
+    private final Runnable mUpdate;
+    private final Runnable mDispatch = new Runnable() {
+        @Override
+        public void run() {
+            mScheduled = false;
+            mLastUpdateMs = SystemClock.uptimeMillis();
+            mUpdate.run();
+        }
+    };
+    private boolean mScheduled;
+    private long mLastUpdateMs = Long.MIN_VALUE / 2;
+
+    /**
+     * @param handler    The handler the update runs on.
+     * @param intervalMs The minimum time between two updates, in milliseconds.
+     * @param update     The update to run.
+     */
+    UpdateScheduler(Handler handler, long intervalMs, Runnable update) {
+        mHandler = handler;
+        mIntervalMs = intervalMs;
+        mUpdate = update;
+    }
+
+    /**
+     * Requests an update. Must be called on the handler thread.
+     */
+    void schedule() {
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        long delayMs = mLastUpdateMs + mIntervalMs - SystemClock.uptimeMillis();
+        mHandler.postDelayed(mDispatch, Math.max(0, delayMs));
+    }
+
+    /**
+     * Drops a pending update, if any.
+     */
+    void cancel() {
+        mHandler.removeCallbacks(mDispatch);
+        mScheduled = false;
+    }
+}
@@ -0,0 +1,47 @@
+package com.android.sample.exoplayer;
+
+/**
+ * Summary of a sample's audio for display: the peak and RMS amplitude of each of a fixed number
+ * of equally long buckets, relative to full scale with 8 bits of precision. Immutable.
+ */
+final class Waveform {
+
+    static final int BUCKET_COUNT = 1024;
+    private final byte[] mPeaks;
+    private final byte[] mRms;
+
+    /**
+     * @param peaks The peak of each bucket, from 0 to 255.
+     * @param rms   The RMS of each bucket, from 0 to 255.
+     */
+    Waveform(byte[] peaks, byte[] rms) {
+        mPeaks = peaks;
+        mRms = rms;
+    }
+
+    int size() {
+        return mPeaks.length;
+    }
+
+    /**
+     * @return The peak of a bucket, from 0 to 255.
+     */
+    int getPeak(int bucket) {
+        return mPeaks[bucket] & 0xff;
+    }
+
+    /**
+     * @return The RMS of a bucket, from 0 to 255.
+     */
+    int getRms(int bucket) {
+        return mRms[bucket] & 0xff;
+    }
+
+    byte[] getPeaks() {
+        return mPeaks;
+    }
+
+    byte[] getRms() {
+        return mRms;
+    }
+}
@@ -0,0 +1,278 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Waveforms of the samples, shared by the service and the activity. A missing waveform is
+ * computed once on a fork/join pool, which splits the sample into time ranges decoded in
+ * parallel, and stored in a {@link WaveformFile}. The service prefetches a waveform on every
+ * sample change, so the pool is kept to {@link #MAX_WORKERS} threads and off one core.
+ * Everything, including reading the file, happens off the main thread, so showing the player
+ * never waits for a waveform. Only local media has a waveform, see {@link PcmDecoder}.
+ */
+final class WaveformCache {
+
+    private static final String TAG = WaveformCache.class.getSimpleName();
+    private static final String FILE_NAME = "waveforms.bin";
+    private static final int SLOT_COUNT = 256;
+    // Ranges are decoded from the sync sample before them, keep them long enough for the
+    // decoding overhead not to dominate.
+    private static final long MIN_RANGE_US = 15_000_000;
+    private static final int MIN_RANGE_BUCKETS = 32;
+    private static final int MAX_WORKERS = 2;
+    private static WaveformCache sInstance;
+    private final PcmDecoder mDecoder;
+    private final WaveformFile mFile;
+    private final ForkJoinPool mPool = new ForkJoinPool(
+            Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1)));
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Sample IDs being loaded to the callbacks waiting for them, guarded by itself.
+    private final Map<Integer, List<Callback>> mPending = new HashMap<>();
+
+    private WaveformCache(Context context) {
+        mDecoder = new PcmDecoder(context);
+        mFile = new WaveformFile(new File(context.getFilesDir(), FILE_NAME), SLOT_COUNT);
+    }
+
+    public synchronized static WaveformCache getInstance(Context context) {
+        if (sInstance == null) {
+            //Use application Context to prevent leak.
+            sInstance = new WaveformCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Loads the waveform of a sample, computing it if it isn't cached. Loads of the same sample
+     * are merged.
+     * @param sample   The sample.
+     * @param callback The callback, called on the main thread.
+     */
+    void load(final Sample sample, @Nullable Callback callback) {
+        final int sampleID = sample.getSampleID();
+        synchronized (mPending) {
+            List<Callback> callbacks = mPending.get(sampleID);
+            if (callbacks != null) {
+                if (callback != null) {
+                    callbacks.add(callback);
+                }
+                return;
+            }
+            callbacks = new ArrayList<>();
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            mPending.put(sampleID, callbacks);
+        }
+        mPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                int uriHash = hash(sample);
+                Waveform waveform = mFile.read(sampleID, uriHash);
+                if (waveform == null) {
+                    waveform = compute(sample);
+                    if (waveform != null) {
+                        mFile.write(sampleID, uriHash, waveform);
+                    }
+                }
+                deliver(sample, waveform);
+            }
+        });
+    }
+
+    /**
+     * Computes the waveform of a sample in the background if it isn't cached yet.
+     * @param sample The sample.
+     */
+    void prefetch(Sample sample) {
+        load(sample, null);
+    }
+
+    private void deliver(final Sample sample, @Nullable final Waveform waveform) {
+        final List<Callback> callbacks;
+        synchronized (mPending) {
+            callbacks = mPending.remove(sample.getSampleID());
+        }
+        if (callbacks == null || callbacks.isEmpty()) {
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback callback : callbacks) {
+                    callback.onWaveformLoaded(sample, waveform);
+                }
+            }
+        });
+    }
+
+    /**
+     * Decodes a sample on the pool. Must be called from a pool thread.
+     * @return The waveform, or null if the sample has no local audio of known duration.
+     */
+    @Nullable
+    private Waveform compute(Sample sample) {
+        Uri uri = Uri.parse(sample.getUri());
+        try {
+            long durationUs = mDecoder.getDurationUs(uri);
+            if (durationUs == C.TIME_UNSET || durationUs <= 0) {
+                return null;
+            }
+            Buckets buckets = new Buckets();
+            new RangeAction(uri, durationUs, buckets, 0, Waveform.BUCKET_COUNT).invoke();
+            return buckets.toWaveform();
+        } catch (IOException | RuntimeException e) {
+            // Codec errors surface as runtime exceptions, the sample simply has no waveform.
+            Log.w(TAG, "Unable to compute the waveform of " + sample.getUri(), e);
+            return null;
+        }
+    }
+
+    private static int hash(Sample sample) {
+        String uri = sample.getUri();
+        return uri == null ? 0 : uri.hashCode();
+    }
+
+    /**
+     * Receives loaded waveforms.
+     */
+    interface Callback {
+
+        /**
+         * @param sample   The sample.
+         * @param waveform The waveform, or null if the sample has none.
+         */
+        void onWaveformLoaded(Sample sample, @Nullable Waveform waveform);
+    }
+
+    /**
+     * Accumulators of a waveform being computed. Ranges write disjoint buckets, so no locking is
+     * needed, the join publishes their writes.
+     */
+    private static final class Buckets {
+
+        final float[] mPeaks = new float[Waveform.BUCKET_COUNT];
+        final double[] mSumSquares = new double[Waveform.BUCKET_COUNT];
+        final int[] mCounts = new int[Waveform.BUCKET_COUNT];
+
+        Waveform toWaveform() {
+            byte[] peaks = new byte[Waveform.BUCKET_COUNT];
+            byte[] rms = new byte[Waveform.BUCKET_COUNT];
+            for (int i = 0; i < Waveform.BUCKET_COUNT; i++) {
+                peaks[i] = quantize(mPeaks[i]);
+                rms[i] = mCounts[i] == 0 ? 0 : quantize(Math.sqrt(mSumSquares[i] / mCounts[i]));
+            }
+            return new Waveform(peaks, rms);
+        }
+
+        private static byte quantize(double amplitude) {
+            return (byte) Math.min(255, Math.round(amplitude * 255));
+        }
+    }
+
+    /**
+     * Computes a range of buckets, splitting it in halves while it is long enough.
+     */
+    private final class RangeAction extends RecursiveAction {
+
+        private final Uri mUri;
+        private final long mDurationUs;
+        private final Buckets mBuckets;
+        private final int mFrom;
+        private final int mTo;
+
+        RangeAction(Uri uri, long durationUs, Buckets buckets, int from, int to) {
+            mUri = uri;
+            mDurationUs = durationUs;
+            mBuckets = buckets;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            int count = mTo - mFrom;
+            if (count >= 2 * MIN_RANGE_BUCKETS
+                    && getTimeUs(mTo) - getTimeUs(mFrom) >= 2 * MIN_RANGE_US) {
+                int middle = mFrom + count / 2;
+                invokeAll(new RangeAction(mUri, mDurationUs, mBuckets, mFrom, middle),
+                        new RangeAction(mUri, mDurationUs, mBuckets, middle, mTo));
+                return;
+            }
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                decode();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void decode() throws IOException {
+            final long startUs = getTimeUs(mFrom);
+            // The last range takes everything up to the end, the declared duration may be short.
+            final long endUs = mTo == Waveform.BUCKET_COUNT ? Long.MAX_VALUE : getTimeUs(mTo);
+            mDecoder.decode(mUri, startUs, new PcmDecoder.Sink() {
+                private int mSampleRate;
+                private int mChannelCount;
+
+                @Override
+                public boolean onFormat(int sampleRate, int channelCount) {
+                    mSampleRate = sampleRate;
+                    mChannelCount = channelCount;
+                    return true;
+                }
+
+                @Override
+                public boolean onSamples(short[] samples, int count, long timeUs) {
+                    int frameCount = count / mChannelCount;
+                    for (int frame = 0; frame < frameCount; frame++) {
+                        long frameUs = timeUs + frame * 1_000_000L / mSampleRate;
+                        if (frameUs >= endUs) {
+                            return false;
+                        }
+                        if (frameUs < startUs) {
+                            continue;
+                        }
+                        int bucket = (int) (frameUs * Waveform.BUCKET_COUNT / mDurationUs);
+                        bucket = Math.max(mFrom, Math.min(mTo - 1, bucket));
+                        float peak = mBuckets.mPeaks[bucket];
+                        double sumSquares = 0;
+                        int offset = frame * mChannelCount;
+                        for (int channel = 0; channel < mChannelCount; channel++) {
+                            float amplitude = Math.abs(samples[offset + channel] / 32768f);
+                            peak = Math.max(peak, amplitude);
+                            sumSquares += amplitude * amplitude;
+                        }
+                        mBuckets.mPeaks[bucket] = peak;
+                        mBuckets.mSumSquares[bucket] += sumSquares;
+                        mBuckets.mCounts[bucket] += mChannelCount;
+                    }
+                    return true;
+                }
+            });
+        }
+
+        private long getTimeUs(int bucket) {
+            return bucket * mDurationUs / Waveform.BUCKET_COUNT;
+        }
+    }
+}
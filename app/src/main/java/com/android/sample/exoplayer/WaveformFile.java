@@ -0,0 +1,196 @@
+package com.android.sample.exoplayer;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped cache of {@link Waveform}s. The file has a fixed number of fixed-size slots and
+ * a sample always goes into the slot its ID maps to, replacing whatever was there, so the file
+ * never grows and neighbouring catalog samples don't evict each other. Each slot is guarded by a
+ * CRC, a torn write only loses that slot. The playback and UI processes may map the file at the
+ * same time, so the header setup holds a lock on the whole file and a slot is only written or
+ * read under a lock on that slot. The in-process monitor only keeps the threads of one process
+ * apart, file locks are held per process.
+ */
+final class WaveformFile {
+
+    private static final String TAG = WaveformFile.class.getSimpleName();
+    private static final int MAGIC = 0x45585746;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_HEADER_SIZE = 12;
+    private static final int SLOT_SIZE = SLOT_HEADER_SIZE + 2 * Waveform.BUCKET_COUNT;
+    private final File mFile;
+    private final int mSlotCount;
+    private final byte[] mSlot = new byte[SLOT_SIZE - SLOT_HEADER_SIZE];
+    private final CRC32 mCrc = new CRC32();
+    // Kept open, closing the channel would release the locks of the process.
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+
+    /**
+     * @param file      The cache file.
+     * @param slotCount The number of waveforms the file holds. A file with a different number of
+     *                  slots is cleared.
+     */
+    WaveformFile(File file, int slotCount) {
+        mFile = file;
+        mSlotCount = slotCount;
+    }
+
+    /**
+     * Reads a waveform. Maps the file on first use, so it should not be called on the main thread.
+     * @param sampleID The sample ID.
+     * @param uriHash  The hash of the sample URI.
+     * @return The waveform, or null if it isn't cached.
+     */
+    @Nullable
+    synchronized Waveform read(int sampleID, int uriHash) {
+        if (!open()) {
+            return null;
+        }
+        int offset = getSlotOffset(sampleID);
+        FileLock lock = lockSlot(offset, true);
+        if (lock == null) {
+            return null;
+        }
+        try {
+            if (mBuffer.getInt(offset) != sampleID || mBuffer.getInt(offset + 4) != uriHash) {
+                return null;
+            }
+            mBuffer.position(offset + SLOT_HEADER_SIZE);
+            mBuffer.get(mSlot);
+            if (computeCrc(sampleID, uriHash) != mBuffer.getInt(offset + 8)) {
+                return null;
+            }
+        } finally {
+            release(lock);
+        }
+        byte[] peaks = new byte[Waveform.BUCKET_COUNT];
+        byte[] rms = new byte[Waveform.BUCKET_COUNT];
+        System.arraycopy(mSlot, 0, peaks, 0, Waveform.BUCKET_COUNT);
+        System.arraycopy(mSlot, Waveform.BUCKET_COUNT, rms, 0, Waveform.BUCKET_COUNT);
+        return new Waveform(peaks, rms);
+    }
+
+    /**
+     * Writes a waveform, replacing the one in its slot.
+     * @param sampleID The sample ID.
+     * @param uriHash  The hash of the sample URI.
+     * @param waveform The waveform, which must have {@link Waveform#BUCKET_COUNT} buckets.
+     */
+    synchronized void write(int sampleID, int uriHash, Waveform waveform) {
+        if (!open()) {
+            return;
+        }
+        System.arraycopy(waveform.getPeaks(), 0, mSlot, 0, Waveform.BUCKET_COUNT);
+        System.arraycopy(waveform.getRms(), 0, mSlot, Waveform.BUCKET_COUNT,
+                Waveform.BUCKET_COUNT);
+        int offset = getSlotOffset(sampleID);
+        FileLock lock = lockSlot(offset, false);
+        if (lock == null) {
+            return;
+        }
+        try {
+            mBuffer.position(offset + SLOT_HEADER_SIZE);
+            mBuffer.put(mSlot);
+            mBuffer.putInt(offset, sampleID);
+            mBuffer.putInt(offset + 4, uriHash);
+            mBuffer.putInt(offset + 8, computeCrc(sampleID, uriHash));
+        } finally {
+            release(lock);
+        }
+    }
+
+    @Nullable
+    private FileLock lockSlot(int offset, boolean shared) {
+        try {
+            return mChannel.lock(offset, SLOT_SIZE, shared);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to lock " + mFile, e);
+            return null;
+        }
+    }
+
+    private void release(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to unlock " + mFile, e);
+        }
+    }
+
+    private int getSlotOffset(int sampleID) {
+        return HEADER_SIZE + ((sampleID & Integer.MAX_VALUE) % mSlotCount) * SLOT_SIZE;
+    }
+
+    private int computeCrc(int sampleID, int uriHash) {
+        mCrc.reset();
+        updateCrc(sampleID);
+        updateCrc(uriHash);
+        mCrc.update(mSlot, 0, mSlot.length);
+        return (int) mCrc.getValue();
+    }
+
+    private void updateCrc(int value) {
+        // CRC32.update(int) only takes the low byte.
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            mCrc.update(value >>> shift);
+        }
+    }
+
+    private boolean open() {
+        if (mBuffer != null) {
+            return true;
+        }
+        long size = HEADER_SIZE + (long) mSlotCount * SLOT_SIZE;
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            FileChannel channel = file.getChannel();
+            // The other process either set the file up already, in which case it is valid and
+            // left alone, or waits here until this one did.
+            FileLock lock = channel.lock();
+            try {
+                boolean valid = file.length() == size && file.readInt() == MAGIC
+                        && file.readInt() == VERSION && file.readInt() == mSlotCount
+                        && file.readInt() == Waveform.BUCKET_COUNT;
+                if (!valid) {
+                    // Missing, or written with another layout, start over with empty slots.
+                    file.setLength(0);
+                    file.setLength(size);
+                    file.seek(0);
+                    file.writeInt(MAGIC);
+                    file.writeInt(VERSION);
+                    file.writeInt(mSlotCount);
+                    file.writeInt(Waveform.BUCKET_COUNT);
+                }
+                mBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                lock.release();
+            }
+            mChannel = channel;
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to map " + mFile, e);
+            mBuffer = null;
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                    // Nothing was mapped.
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.android.sample.exoplayer;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Draws a {@link Waveform} as one vertical line per pixel column, the peak in a faint and the RMS
+ * in a stronger color, mirrored around the vertical center. Meant to sit behind the time bar, so
+ * it draws inside its padding to line up with the bar.
+ */
+public final class WaveformView extends View {
+
+    private final Paint mPeakPaint = new Paint();
+    private final Paint mRmsPaint = new Paint();
+    private Waveform mWaveform;
+    // Line endpoints, rebuilt only when the waveform or the size changes.
+    private float[] mPeakLines = new float[0];
+    private float[] mRmsLines = new float[0];
+    private int mLineCount;
+
+    public WaveformView(Context context) {
+        this(context, null);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        mPeakPaint.setColor(ContextCompat.getColor(context, R.color.waveformPeak));
+        mRmsPaint.setColor(ContextCompat.getColor(context, R.color.waveformRms));
+    }
+
+    /**
+     * @param waveform The waveform to draw, or null to draw nothing.
+     */
+    void setWaveform(@Nullable Waveform waveform) {
+        if (mWaveform != waveform) {
+            mWaveform = waveform;
+            mLineCount = -1;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        mLineCount = -1;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mWaveform == null) {
+            return;
+        }
+        if (mLineCount < 0) {
+            buildLines();
+        }
+        canvas.drawLines(mPeakLines, 0, mLineCount * 4, mPeakPaint);
+        canvas.drawLines(mRmsLines, 0, mLineCount * 4, mRmsPaint);
+    }
+
+    private void buildLines() {
+        int left = getPaddingLeft();
+        int width = getWidth() - left - getPaddingRight();
+        int top = getPaddingTop();
+        int height = getHeight() - top - getPaddingBottom();
+        mLineCount = Math.max(0, width);
+        if (mPeakLines.length < mLineCount * 4) {
+            mPeakLines = new float[mLineCount * 4];
+            mRmsLines = new float[mLineCount * 4];
+        }
+        float center = top + height / 2f;
+        float scale = height / 2f / 255;
+        int size = mWaveform.size();
+        for (int x = 0; x < mLineCount; x++) {
+            // Each column shows the loudest of the buckets it covers.
+            int from = x * size / mLineCount;
+            int to = Math.max(from + 1, (x + 1) * size / mLineCount);
+            int peak = 0;
+            int rms = 0;
+            for (int bucket = from; bucket < to; bucket++) {
+                peak = Math.max(peak, mWaveform.getPeak(bucket));
+                rms = Math.max(rms, mWaveform.getRms(bucket));
+            }
+            float lineX = left + x + 0.5f;
+            setLine(mPeakLines, x, lineX, center, Math.max(1, peak * scale));
+            setLine(mRmsLines, x, lineX, center, rms * scale);
+        }
+    }
+
+    private static void setLine(float[] lines, int index, float x, float center, float extent) {
+        int offset = index * 4;
+        lines[offset] = x;
+        lines[offset + 1] = center - extent;
+        lines[offset + 2] = x;
+        lines[offset + 3] = center + extent;
+    }
+}
@@ -0,0 +1,296 @@
+package com.android.sample.exoplayer;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Playlist over the whole catalog that only holds media sources for a window of samples around
+ * the current one. The catalog itself serves as the queue, the window is moved along with the
+ * playhead, widened in the direction the user skips and narrowed again during steady playback,
+ * so the number of resident media sources does not depend on the size of the catalog. A window
+ * can be restored from a {@link SessionSnapshot} before the catalog is loaded, it stays where it
+ * is until the catalog is set. Must be used on the main thread.
+ */
+final class WindowedPlaylist implements Player.EventListener {
+
+    private static final int MIN_BEHIND = 1;
+    private static final int MAX_BEHIND = 8;
+    private static final int MIN_AHEAD = 3;
+    private static final int MAX_AHEAD = 16;
+    // Samples kept on either side of the current one while constrained.
+    private static final int ADJACENT = 1;
+    private final Player mPlayer;
+    private SampleCatalog mCatalog;
+    private final SampleMediaSourceFactory mMediaSourceFactory;
+    private final ConcatenatingMediaSource mPlaylist = new ConcatenatingMediaSource();
+    private final Timeline.Window mWindow = new Timeline.Window();
+    // The samples of the sources in the playlist, in playlist order.
+    private final List<Sample> mSamples = new ArrayList<>();
+    private int mFirst;
+    private int mBehind = MIN_BEHIND;
+    private int mAhead = MIN_AHEAD;
+    private int mLastIndex = -1;
+    private Sample mPendingSeekSample;
+    private long mPendingSeekPosition;
+    private boolean mConstrained;
+
+    /**
+     * @param player             The player, which must be prepared with {@link #getMediaSource()}.
+     * @param catalog            The catalog, or null if it is set once loaded.
+     * @param mediaSourceFactory The factory creating a media source per sample.
+     */
+    WindowedPlaylist(Player player, @Nullable SampleCatalog catalog,
+                     SampleMediaSourceFactory mediaSourceFactory) {
+        mPlayer = player;
+        mCatalog = catalog;
+        mMediaSourceFactory = mediaSourceFactory;
+    }
+
+    /**
+     * @return The media source to prepare the player with.
+     */
+    MediaSource getMediaSource() {
+        return mPlaylist;
+    }
+
+    /**
+     * @return The number of media sources currently in the playlist.
+     */
+    int getResidentCount() {
+        return mSamples.size();
+    }
+
+    /**
+     * @return The catalog position of the first resident sample.
+     */
+    int getFirstIndex() {
+        return mFirst;
+    }
+
+    /**
+     * @return The resident samples, in playlist order.
+     */
+    List<Sample> getResidentSamples() {
+        return new ArrayList<>(mSamples);
+    }
+
+    /**
+     * @return The catalog position of the current sample, or -1 if there is none yet.
+     */
+    int getCurrentIndex() {
+        Sample sample = (Sample) mPlayer.getCurrentTag();
+        if (sample == null) {
+            return -1;
+        }
+        if (mCatalog == null) {
+            int offset = mSamples.indexOf(sample);
+            return offset < 0 ? -1 : mFirst + offset;
+        }
+        return mCatalog.indexOf(sample.getSampleID());
+    }
+
+    /**
+     * @return false while a restored playlist waits for its catalog, it can't seek until then.
+     */
+    boolean hasCatalog() {
+        return mCatalog != null;
+    }
+
+    /**
+     * Restores a window without the catalog. Must be called on an empty playlist.
+     * @param first        The catalog position of the first sample.
+     * @param samples      The samples of the window.
+     * @param currentIndex The catalog position to play.
+     * @param positionMs   The position within the sample.
+     */
+    void restore(int first, List<Sample> samples, int currentIndex, long positionMs) {
+        mFirst = first;
+        mPlaylist.addMediaSources(createMediaSources(samples));
+        mSamples.addAll(samples);
+        mPendingSeekSample = mSamples.get(currentIndex - mFirst);
+        mPendingSeekPosition = positionMs;
+        mLastIndex = currentIndex;
+        seekToPendingSample();
+    }
+
+    /**
+     * Sets the catalog of a restored playlist. If the catalog no longer has the restored samples
+     * at their positions, the window is rebuilt around the current sample.
+     * @param catalog The catalog.
+     */
+    void setCatalog(SampleCatalog catalog) {
+        mCatalog = catalog;
+        boolean matches = true;
+        for (int i = 0; i < mSamples.size() && matches; i++) {
+            matches = catalog.indexOf(mSamples.get(i).getSampleID()) == mFirst + i;
+        }
+        if (matches || catalog.size() == 0) {
+            return;
+        }
+        Sample sample = mPendingSeekSample != null ? mPendingSeekSample
+                : (Sample) mPlayer.getCurrentTag();
+        long positionMs = mPendingSeekSample != null ? mPendingSeekPosition
+                : mPlayer.getCurrentPosition();
+        int index = sample == null ? SampleIdIndex.NOT_FOUND
+                : catalog.indexOf(sample.getSampleID());
+        if (index == SampleIdIndex.NOT_FOUND) {
+            index = 0;
+            positionMs = 0;
+        }
+        seekTo(index, positionMs);
+    }
+
+    /**
+     * Limits the window to the samples adjacent to the current one, releasing the other sources,
+     * or lifts the limit again. Skips don't widen the window while it is limited.
+     * @param constrained true to limit the window.
+     * @return The number of sources released.
+     */
+    int setConstrained(boolean constrained) {
+        mConstrained = constrained;
+        int count = mSamples.size();
+        int index = getCurrentIndex();
+        if (index >= 0 && mPendingSeekSample == null) {
+            moveWindow(index);
+        }
+        return Math.max(0, count - mSamples.size());
+    }
+
+    /**
+     * @return true while a seek waits for the player to see the updated playlist. The player's
+     * current sample is not the requested one until then.
+     */
+    boolean isSeekPending() {
+        return mPendingSeekSample != null;
+    }
+
+    /**
+     * Plays a sample of the catalog. The window is rebuilt around the sample if it is not
+     * resident, the seek happens once the player has seen the updated playlist. Requires the
+     * catalog, see {@link #hasCatalog()}.
+     * @param index      The catalog position.
+     * @param positionMs The position within the sample.
+     */
+    void seekTo(int index, long positionMs) {
+        if (index < mFirst || index >= mFirst + mSamples.size()) {
+            mPlaylist.clear();
+            mSamples.clear();
+            mFirst = index;
+        }
+        moveWindow(index);
+        mPendingSeekSample = mSamples.get(index - mFirst);
+        mPendingSeekPosition = positionMs;
+        mLastIndex = index;
+        seekToPendingSample();
+    }
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, int reason) {
+        seekToPendingSample();
+    }
+
+    @Override
+    public void onPositionDiscontinuity(int reason) {
+        int index = getCurrentIndex();
+        if (index < 0 || mPendingSeekSample != null) {
+            return;
+        }
+        if (reason == Player.DISCONTINUITY_REASON_SEEK && mLastIndex >= 0 && index != mLastIndex) {
+            // Skipping, read further ahead in the direction of the skips.
+            if (index > mLastIndex) {
+                mAhead = Math.min(MAX_AHEAD, mAhead * 2);
+            } else {
+                mBehind = Math.min(MAX_BEHIND, mBehind * 2);
+            }
+        } else if (reason == Player.DISCONTINUITY_REASON_PERIOD_TRANSITION) {
+            mAhead = Math.max(MIN_AHEAD, mAhead - 1);
+            mBehind = Math.max(MIN_BEHIND, mBehind - 1);
+        }
+        mLastIndex = index;
+        moveWindow(index);
+    }
+
+    /**
+     * Trims and extends the resident sources to the window around a resident sample.
+     */
+    private void moveWindow(int index) {
+        if (mCatalog == null) {
+            // Restored, keep the window until the catalog is known.
+            return;
+        }
+        int from = Math.max(0, index - (mConstrained ? ADJACENT : mBehind));
+        int to = Math.min(mCatalog.size(), index + (mConstrained ? ADJACENT : mAhead) + 1);
+        if (mSamples.isEmpty()) {
+            mFirst = from;
+            mPlaylist.addMediaSources(createMediaSources(from, to, mSamples.size()));
+            return;
+        }
+        int end = mFirst + mSamples.size();
+        if (end > to) {
+            mPlaylist.removeMediaSourceRange(to - mFirst, mSamples.size());
+            mSamples.subList(to - mFirst, mSamples.size()).clear();
+        }
+        if (mFirst < from) {
+            mPlaylist.removeMediaSourceRange(0, from - mFirst);
+            mSamples.subList(0, from - mFirst).clear();
+            mFirst = from;
+        }
+        end = mFirst + mSamples.size();
+        if (to > end) {
+            mPlaylist.addMediaSources(createMediaSources(end, to, mSamples.size()));
+        }
+        if (from < mFirst) {
+            mPlaylist.addMediaSources(0, createMediaSources(from, mFirst, 0));
+            mFirst = from;
+        }
+    }
+
+    /**
+     * Creates the media sources of a catalog range and records their samples.
+     * @param from   The first catalog position.
+     * @param to     The catalog position after the last one.
+     * @param offset The playlist index the sources are inserted at.
+     * @return The media sources.
+     */
+    private List<MediaSource> createMediaSources(int from, int to, int offset) {
+        List<Sample> samples = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            samples.add(mCatalog.getSampleAt(i));
+        }
+        mSamples.addAll(offset, samples);
+        return createMediaSources(samples);
+    }
+
+    private List<MediaSource> createMediaSources(List<Sample> samples) {
+        List<MediaSource> mediaSources = new ArrayList<>(samples.size());
+        for (Sample sample : samples) {
+            mediaSources.add(mMediaSourceFactory.createMediaSource(sample));
+        }
+        return mediaSources;
+    }
+
+    /**
+     * Performs a pending seek once the player's timeline contains the target sample. Playlist
+     * changes reach the player asynchronously, so playlist indexes can't be used directly.
+     */
+    private void seekToPendingSample() {
+        if (mPendingSeekSample == null) {
+            return;
+        }
+        Timeline timeline = mPlayer.getCurrentTimeline();
+        for (int i = 0; i < timeline.getWindowCount(); i++) {
+            if (timeline.getWindow(i, mWindow).tag == mPendingSeekSample) {
+                mPendingSeekSample = null;
+                mPlayer.seekTo(i, mPendingSeekPosition);
+                return;
+            }
+        }
+    }
+}
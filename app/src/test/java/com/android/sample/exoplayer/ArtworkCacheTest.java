@@ -0,0 +1,21 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArtworkCacheTest {
+
+    @Test
+    public void calculateInSampleSize_keepsBothDimensionsAboveRequested() {
+        assertEquals(1, ArtworkCache.calculateInSampleSize(1000, 800, 1000, 800));
+        assertEquals(2, ArtworkCache.calculateInSampleSize(1000, 800, 400, 400));
+        assertEquals(8, ArtworkCache.calculateInSampleSize(2048, 2048, 256, 256));
+        assertEquals(4, ArtworkCache.calculateInSampleSize(2048, 1024, 256, 256));
+    }
+
+    @Test
+    public void calculateInSampleSize_unknownTargetSize_decodesFullSize() {
+        assertEquals(1, ArtworkCache.calculateInSampleSize(2048, 2048, 0, 0));
+    }
+}
@@ -0,0 +1,76 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CatalogFileTest {
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void open_returnsWrittenSamples() throws IOException {
+        File file = new File(mTemporaryFolder.getRoot(), "catalog.bin");
+        CatalogFile.Writer writer = new CatalogFile.Writer();
+        for (int i = 0; i < 1000; i++) {
+            writer.add(new Sample(i * 3 + 7, "Composer " + i % 10, "Title " + i,
+                    "asset:///" + i + ".mp3", i % 2 == 0 ? null : "art"));
+        }
+        writer.write(file, 1);
+
+        CatalogFile catalogFile = CatalogFile.open(file, 1);
+        assertEquals(1000, catalogFile.size());
+        assertEquals(7, catalogFile.getSampleID(0));
+        assertEquals(999, catalogFile.indexOf(999 * 3 + 7));
+        assertEquals(SampleIdIndex.NOT_FOUND, catalogFile.indexOf(8));
+        Sample sample = catalogFile.getSample(123);
+        assertEquals(123 * 3 + 7, sample.getSampleID());
+        assertEquals("Composer 3", sample.getComposer());
+        assertEquals("Title 123", sample.getTitle());
+        assertEquals("asset:///123.mp3", sample.getUri());
+        assertEquals("art", sample.getAlbumArtID());
+        assertNull(catalogFile.getSample(122).getAlbumArtID());
+    }
+
+    @Test
+    public void open_staleOrTruncatedFile_returnsNull() throws IOException {
+        File file = new File(mTemporaryFolder.getRoot(), "catalog.bin");
+        assertNull(CatalogFile.open(file, 1));
+
+        CatalogFile.Writer writer = new CatalogFile.Writer();
+        writer.add(new Sample(1, "Composer", "Title", "asset:///1.mp3", null));
+        writer.write(file, 1);
+        assertNull(CatalogFile.open(file, 2));
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 1);
+        }
+        assertNull(CatalogFile.open(file, 1));
+    }
+
+    @Test
+    public void write_storesRepeatedStringsOnce() throws IOException {
+        File single = new File(mTemporaryFolder.getRoot(), "single.bin");
+        CatalogFile.Writer writer = new CatalogFile.Writer();
+        writer.add(new Sample(1, "Composer", "Title", "uri", null));
+        writer.write(single, 1);
+
+        File repeated = new File(mTemporaryFolder.getRoot(), "repeated.bin");
+        writer = new CatalogFile.Writer();
+        writer.add(new Sample(1, "Composer", "Title", "uri", null));
+        writer.add(new Sample(2, "Composer", "Title", "uri", null));
+        writer.write(repeated, 1);
+
+        // Only a record and possibly a larger index are added, no strings.
+        long growth = repeated.length() - single.length();
+        assertEquals(0, (growth - 20) % 8);
+    }
+}
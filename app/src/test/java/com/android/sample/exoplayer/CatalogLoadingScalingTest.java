@@ -0,0 +1,82 @@
+package com.android.sample.exoplayer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that compiling and loading the catalog scales linearly with its size. Allocations are
+ * compared rather than times, they don't depend on the machine: a catalog four times as large
+ * must not allocate much more than four times as much, a quadratic step would allocate sixteen
+ * times as much.
+ */
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 28)
+public class CatalogLoadingScalingTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int SMALL = 5_000;
+    private static final int LARGE = 4 * SMALL;
+    private static final double MAX_GROWTH = 6;
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void load_scalesLinearly() throws IOException {
+        // Warm up class loading and the JIT.
+        allocatedByLoading(SMALL);
+        long small = allocatedByLoading(SMALL);
+        long large = allocatedByLoading(LARGE);
+        double growth = (double) large / small;
+        assertTrue("Loading " + LARGE + " samples allocated " + growth + " times as much as "
+                + SMALL + " samples", growth <= MAX_GROWTH);
+    }
+
+    /**
+     * @return The bytes allocated on this thread while compiling a catalog, opening it and
+     * reading every sample.
+     */
+    private long allocatedByLoading(int count) throws IOException {
+        byte[] json = createCatalog(count);
+        File file = new File(mTemporaryFolder.getRoot(), count + ".bin");
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        SampleCatalog.compile(new ByteArrayInputStream(json), file, 1);
+        CatalogFile catalogFile = CatalogFile.open(file, 1);
+        for (int i = 0; i < catalogFile.size(); i++) {
+            catalogFile.getSample(i);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(count, catalogFile.size());
+        return allocated;
+    }
+
+    private static byte[] createCatalog(int count) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "" : ",")
+                    .append("{\"name\":\"Title ").append(i)
+                    .append("\",\"id\":").append(i)
+                    .append(",\"uri\":\"asset:///sample_").append(i)
+                    .append(".mp3\",\"composer\":\"Composer ").append(i % 50)
+                    .append("\",\"albumArtID\":\"composer").append(i % 50).append("\"}");
+        }
+        return builder.append(']').toString().getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CheckpointStoreTest {
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read_withoutCheckpoint_returnsNull() throws IOException {
+        CheckpointStore store = new CheckpointStore(mTemporaryFolder.newFile(), DIRECT_EXECUTOR);
+        assertNull(store.read());
+    }
+
+    @Test
+    public void read_returnsNewestCheckpoint() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        CheckpointStore store = new CheckpointStore(file, DIRECT_EXECUTOR);
+        store.write(new MainPosition(1, 1000, 11, 100));
+        store.write(new MainPosition(2, 2000, 12, 200));
+        store.write(new MainPosition(3, 3000, 13, 300));
+
+        MainPosition position = new CheckpointStore(file, DIRECT_EXECUTOR).read();
+        assertEquals(3, position.getCurrentWindowIndex());
+        assertEquals(3000, position.getCurrentPosition());
+        assertEquals(13, position.getSampleID());
+        assertEquals(300, position.getTimestamp());
+    }
+
+    @Test
+    public void read_tornWrite_fallsBackToPreviousCheckpoint() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        CheckpointStore store = new CheckpointStore(file, DIRECT_EXECUTOR);
+        store.write(new MainPosition(1, 1000, 11, 100));
+        store.write(new MainPosition(2, 2000, 12, 200));
+
+        // The second checkpoint went to slot 0, damage its position field.
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(20);
+            randomAccessFile.writeInt(0x7FFFFFFF);
+        }
+
+        MainPosition position = new CheckpointStore(file, DIRECT_EXECUTOR).read();
+        assertEquals(1, position.getCurrentWindowIndex());
+        assertEquals(1000, position.getCurrentPosition());
+    }
+
+    @Test
+    public void write_afterReopen_continuesSequence() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        new CheckpointStore(file, DIRECT_EXECUTOR).write(new MainPosition(1, 1000, 11, 100));
+        new CheckpointStore(file, DIRECT_EXECUTOR).write(new MainPosition(2, 2000, 12, 200));
+
+        assertEquals(2, new CheckpointStore(file, DIRECT_EXECUTOR).read().getCurrentWindowIndex());
+    }
+}
@@ -0,0 +1,51 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogram_reportsZero() {
+        Histogram histogram = new Histogram("ms", new long[]{10, 100});
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void add_tracksCountSumAndMax() {
+        Histogram histogram = new Histogram("ms", new long[]{10, 100});
+        histogram.add(5);
+        histogram.add(50);
+        histogram.add(500);
+        assertEquals(3, histogram.getCount());
+        assertEquals(555, histogram.getSum());
+        assertEquals(185, histogram.getMean());
+        assertEquals(500, histogram.getMax());
+    }
+
+    @Test
+    public void getPercentile_returnsBucketUpperBound() {
+        Histogram histogram = new Histogram("ms", new long[]{10, 100, 1_000});
+        for (int i = 0; i < 90; i++) {
+            histogram.add(8);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.add(400);
+        }
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(90));
+        assertEquals(400, histogram.getPercentile(95));
+    }
+
+    @Test
+    public void getPercentile_inOverflowBucket_returnsMax() {
+        Histogram histogram = new Histogram("ms", new long[]{10});
+        histogram.add(5);
+        histogram.add(70);
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(70, histogram.getPercentile(100));
+    }
+}
@@ -0,0 +1,170 @@
+package com.android.sample.exoplayer;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Measures lifecycle steps under Robolectric's paused main looper: wall time, the number of main
+ * looper tasks and the bytes allocated on the main thread. Main looper tasks are only run through
+ * the profiler, so every task a step causes is counted. Steps that exceed their {@link Budget}
+ * are collected and reported together by {@link #assertWithinBudgets()}, which also writes the
+ * measurements of every step to {@link #REPORT_DIRECTORY} so budgets can be set from them.
+ */
+final class LifecycleProfiler {
+
+    // Background threads post to the main looper asynchronously, poll them at this rate.
+    private static final long POLL_INTERVAL_MS = 10;
+    /**
+     * Where reports are written, relative to the module directory unit tests run in.
+     */
+    static final File REPORT_DIRECTORY = new File("build/reports/lifecycle");
+    private final com.sun.management.ThreadMXBean mThreadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final ShadowLooper mMainLooper = shadowOf(Looper.getMainLooper());
+    private final List<String> mReport = new ArrayList<>();
+    private final List<String> mViolations = new ArrayList<>();
+    private int mTaskCount;
+
+    /**
+     * Runs a step and then the main looper tasks it caused, and checks them against a budget.
+     * @param name   The step name used in the report.
+     * @param budget The budget of the step.
+     * @param step   The step, run on the main thread.
+     */
+    void measure(String name, Budget budget, Runnable step) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = mThreadBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        mTaskCount = 0;
+        step.run();
+        runMainLooper();
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long allocated = mThreadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        String line = String.format(Locale.US, "%-24s wall=%5dms tasks=%4d allocated=%8dKB",
+                name, wallMs, mTaskCount, allocated / 1024);
+        mReport.add(line);
+        if (wallMs > budget.wallMs || mTaskCount > budget.mainLooperTasks
+                || allocated > budget.allocatedBytes) {
+            mViolations.add(line + " exceeds " + budget);
+        }
+    }
+
+    /**
+     * Runs main looper tasks until a condition holds, letting simulated time pass meanwhile.
+     * Used inside steps that wait for background work.
+     * @param what      What is waited for, used in the failure message.
+     * @param condition The condition, checked on the main thread.
+     * @param timeoutMs The real time to wait at most.
+     */
+    void runUntil(String what, Condition condition, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (!condition.isMet()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting until " + what);
+            }
+            runMainLooperFor(POLL_INTERVAL_MS);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Lets simulated time pass, running every main looper task that becomes due.
+     * @param durationMs The simulated duration.
+     */
+    void runMainLooperFor(long durationMs) {
+        long end = SystemClock.uptimeMillis() + durationMs;
+        while (true) {
+            runMainLooper();
+            long next = mMainLooper.getNextScheduledTaskTime().toMillis();
+            if (next == 0 || next > end || next <= SystemClock.uptimeMillis()) {
+                break;
+            }
+            SystemClock.setCurrentTimeMillis(next);
+        }
+        if (end > SystemClock.uptimeMillis()) {
+            SystemClock.setCurrentTimeMillis(end);
+        }
+        runMainLooper();
+    }
+
+    /**
+     * Writes the report and fails with every step that exceeded its budget.
+     * @param name The name of the report file, without extension.
+     */
+    void assertWithinBudgets(String name) throws IOException {
+        StringBuilder report = new StringBuilder();
+        for (String line : mReport) {
+            report.append(line).append('\n');
+        }
+        if (!REPORT_DIRECTORY.isDirectory() && !REPORT_DIRECTORY.mkdirs()) {
+            throw new IOException("Unable to create " + REPORT_DIRECTORY);
+        }
+        try (Writer writer = new FileWriter(new File(REPORT_DIRECTORY, name + ".txt"))) {
+            writer.write(report.toString());
+        }
+        if (!mViolations.isEmpty()) {
+            StringBuilder message = new StringBuilder("Lifecycle budgets exceeded:\n");
+            for (String violation : mViolations) {
+                message.append(violation).append('\n');
+            }
+            throw new AssertionError(message.append(report).toString());
+        }
+    }
+
+    /**
+     * Runs the main looper tasks that are due now, one at a time.
+     */
+    private void runMainLooper() {
+        while (!mMainLooper.isIdle()) {
+            mMainLooper.runOneTask();
+            mTaskCount++;
+        }
+    }
+
+    /**
+     * The most a step may cost. Task counts and allocations are stable between runs and catch most
+     * regressions, wall time varies with the machine running Robolectric.
+     */
+    static final class Budget {
+
+        final long wallMs;
+        final int mainLooperTasks;
+        final long allocatedBytes;
+
+        Budget(long wallMs, int mainLooperTasks, long allocatedBytes) {
+            this.wallMs = wallMs;
+            this.mainLooperTasks = mainLooperTasks;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "budget wall=%dms tasks=%d allocated=%dKB",
+                    wallMs, mainLooperTasks, allocatedBytes / 1024);
+        }
+    }
+
+    interface Condition {
+
+        boolean isMet();
+    }
+}
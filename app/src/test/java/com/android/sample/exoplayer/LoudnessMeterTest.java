@@ -0,0 +1,69 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LoudnessMeterTest {
+
+    private static final double TOLERANCE_LU = 0.1;
+
+    @Test
+    public void fullScaleSine_measuresMinusThreeLufsPerChannel() {
+        LoudnessMeter mono = new LoudnessMeter(48_000, 1);
+        process(mono, sine(48_000, 1, 1, 5));
+        assertEquals(-3.01, mono.getIntegratedLoudness(), TOLERANCE_LU);
+
+        LoudnessMeter stereo = new LoudnessMeter(44_100, 2);
+        process(stereo, sine(44_100, 2, 1, 5));
+        assertEquals(0, stereo.getIntegratedLoudness(), TOLERANCE_LU);
+        assertEquals(1, stereo.getPeak(), 0.001);
+    }
+
+    @Test
+    public void silence_isGatedOut() {
+        LoudnessMeter meter = new LoudnessMeter(48_000, 2);
+        process(meter, sine(48_000, 2, 0.1, 10));
+        process(meter, new short[48_000 * 2 * 10]);
+        assertEquals(-20, meter.getIntegratedLoudness(), 0.2);
+
+        LoudnessMeter silent = new LoudnessMeter(48_000, 2);
+        process(silent, new short[48_000 * 2]);
+        assertEquals(Double.NEGATIVE_INFINITY, silent.getIntegratedLoudness(), 0);
+    }
+
+    @Test
+    public void process_inChunks_matchesSingleCall() {
+        short[] samples = sine(44_100, 2, 0.5, 3);
+        LoudnessMeter whole = new LoudnessMeter(44_100, 2);
+        process(whole, samples);
+        LoudnessMeter chunked = new LoudnessMeter(44_100, 2);
+        for (int i = 0; i < samples.length; i += 999) {
+            int count = Math.min(999, samples.length - i);
+            short[] chunk = new short[count];
+            System.arraycopy(samples, i, chunk, 0, count);
+            chunked.process(chunk, count);
+        }
+        assertEquals(whole.getIntegratedLoudness(), chunked.getIntegratedLoudness(), 1e-9);
+    }
+
+    private static void process(LoudnessMeter meter, short[] samples) {
+        meter.process(samples, samples.length);
+    }
+
+    /**
+     * @return A 997Hz sine, the frequency at which K-weighting has no effect.
+     */
+    private static short[] sine(int sampleRate, int channelCount, double amplitude,
+                                int seconds) {
+        short[] samples = new short[sampleRate * seconds * channelCount];
+        for (int frame = 0; frame < sampleRate * seconds; frame++) {
+            short sample = (short) Math.round(
+                    amplitude * Short.MAX_VALUE * Math.sin(2 * Math.PI * 997 * frame / sampleRate));
+            for (int channel = 0; channel < channelCount; channel++) {
+                samples[frame * channelCount + channel] = sample;
+            }
+        }
+        return samples;
+    }
+}
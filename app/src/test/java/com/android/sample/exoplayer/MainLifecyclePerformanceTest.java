@@ -0,0 +1,221 @@
+package com.android.sample.exoplayer;
+
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v4.media.session.MediaControllerCompat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Drives the service and the activity through their lifecycle and checks every step against a
+ * budget of wall time, main looper tasks and main thread allocations, see
+ * {@link LifecycleProfiler}. Idle steps let simulated time pass, so a runnable that keeps
+ * reposting itself shows up as a task count that grows with time. The restart is a warm restart
+ * from the session snapshot, every other start is cold. The lifecycle is run once to load classes
+ * and resources before the measured run, whose report ends up in
+ * {@link LifecycleProfiler#REPORT_DIRECTORY}. The budgets are estimates that were never checked
+ * against a report, so the test is left out of the default test task until they are set from
+ * one; run it with -PlifecycleBudgets=true.
+ */
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class MainLifecyclePerformanceTest {
+
+    private static final long KB = 1024;
+    private static final long MB = 1024 * KB;
+    private static final long TIMEOUT_MS = 10_000;
+    // The sample played by the skip step, one whose asset is bundled.
+    private static final int SKIP_SAMPLE_ID = 7;
+    private static final LifecycleProfiler.Budget CREATE_SERVICE =
+            new LifecycleProfiler.Budget(1_000, 20, 4 * MB);
+    private static final LifecycleProfiler.Budget LOAD_PLAYLIST =
+            new LifecycleProfiler.Budget(3_000, 60, 4 * MB);
+    private static final LifecycleProfiler.Budget CREATE_ACTIVITY =
+            new LifecycleProfiler.Budget(3_000, 100, 16 * MB);
+    private static final LifecycleProfiler.Budget PLAY =
+            new LifecycleProfiler.Budget(3_000, 300, 8 * MB);
+    private static final LifecycleProfiler.Budget SKIP =
+            new LifecycleProfiler.Budget(3_000, 300, 8 * MB);
+    private static final LifecycleProfiler.Budget STOP_ACTIVITY =
+            new LifecycleProfiler.Budget(1_000, 20, 2 * MB);
+    // Ten snapshots and two checkpoints, the rest are the player's loading updates.
+    private static final LifecycleProfiler.Budget PLAY_IN_BACKGROUND_10S =
+            new LifecycleProfiler.Budget(3_000, 24, 4 * MB);
+    private static final LifecycleProfiler.Budget PAUSE =
+            new LifecycleProfiler.Budget(1_000, 30, 2 * MB);
+    // Nothing is scheduled while paused, the budget allows a late loading update.
+    private static final LifecycleProfiler.Budget IDLE_PAUSED_60S =
+            new LifecycleProfiler.Budget(1_000, 2, 1 * MB);
+    private static final LifecycleProfiler.Budget DESTROY_ACTIVITY =
+            new LifecycleProfiler.Budget(1_000, 20, 2 * MB);
+    private static final LifecycleProfiler.Budget DESTROY_SERVICE =
+            new LifecycleProfiler.Budget(1_000, 20, 2 * MB);
+    private static final LifecycleProfiler.Budget RESTART_SERVICE =
+            new LifecycleProfiler.Budget(3_000, 80, 8 * MB);
+
+    private Application mApplication;
+    private ServiceController<MainService> mServiceController;
+    private MainService.MainServiceBinder mBinder;
+    private ActivityController<MainActivity> mActivityController;
+
+    @Before
+    public void setUp() {
+        mApplication = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void lifecycle_staysWithinBudgets() throws IOException {
+        runLifecycle(new LifecycleProfiler());
+        LifecycleProfiler profiler = new LifecycleProfiler();
+        runLifecycle(profiler);
+        profiler.assertWithinBudgets(getClass().getSimpleName());
+    }
+
+    private void runLifecycle(final LifecycleProfiler profiler) {
+        profiler.measure("create service", CREATE_SERVICE, new Runnable() {
+            @Override
+            public void run() {
+                createService(new Intent(mApplication, MainService.class));
+            }
+        });
+        profiler.measure("load playlist", LOAD_PLAYLIST, new Runnable() {
+            @Override
+            public void run() {
+                waitForSample(profiler);
+            }
+        });
+        profiler.measure("create activity", CREATE_ACTIVITY, new Runnable() {
+            @Override
+            public void run() {
+                mActivityController = Robolectric.buildActivity(MainActivity.class).setup();
+            }
+        });
+        profiler.measure("play", PLAY, new Runnable() {
+            @Override
+            public void run() {
+                play(profiler, true);
+            }
+        });
+        profiler.measure("skip", SKIP, new Runnable() {
+            @Override
+            public void run() {
+                new MediaControllerCompat(mApplication,
+                        mServiceController.get().getSessionToken()).getTransportControls()
+                        .playFromMediaId(MediaLibrary.getMediaId(SKIP_SAMPLE_ID), Bundle.EMPTY);
+                profiler.runUntil("the skipped to sample plays", new LifecycleProfiler.Condition() {
+                    @Override
+                    public boolean isMet() {
+                        Sample sample = mBinder.getSample();
+                        return sample != null && sample.getSampleID() == SKIP_SAMPLE_ID
+                                && mBinder.getExoPlayerInstance().isPlaying();
+                    }
+                }, TIMEOUT_MS);
+            }
+        });
+        profiler.measure("stop activity", STOP_ACTIVITY, new Runnable() {
+            @Override
+            public void run() {
+                mActivityController.pause().stop();
+            }
+        });
+        profiler.measure("play in background 10s", PLAY_IN_BACKGROUND_10S, new Runnable() {
+            @Override
+            public void run() {
+                profiler.runMainLooperFor(10_000);
+            }
+        });
+        profiler.measure("pause", PAUSE, new Runnable() {
+            @Override
+            public void run() {
+                play(profiler, false);
+            }
+        });
+        profiler.measure("idle paused 60s", IDLE_PAUSED_60S, new Runnable() {
+            @Override
+            public void run() {
+                profiler.runMainLooperFor(60_000);
+            }
+        });
+        profiler.measure("destroy activity", DESTROY_ACTIVITY, new Runnable() {
+            @Override
+            public void run() {
+                mActivityController.destroy();
+            }
+        });
+        profiler.measure("destroy service", DESTROY_SERVICE, new Runnable() {
+            @Override
+            public void run() {
+                mServiceController.destroy();
+            }
+        });
+        shadowOf(mApplication).clearStartedServices();
+        profiler.measure("restart service", RESTART_SERVICE, new Runnable() {
+            @Override
+            public void run() {
+                Intent restart = new Intent(mApplication,
+                        MainService.RestartServiceBroadcastReceiver.class);
+                new MainService.RestartServiceBroadcastReceiver().onReceive(mApplication, restart);
+                Intent intent = shadowOf(mApplication).getNextStartedService();
+                assertNotNull(intent);
+                assertEquals(MainService.class.getName(), intent.getComponent().getClassName());
+                createService(intent);
+                waitForSample(profiler);
+                assertTrue(mBinder.getQoeMetrics().isWarmRestart());
+            }
+        });
+        // Stop without a restart, as the stop action does, so the next run starts cold.
+        MainStorage.getInstance(mApplication).setRestartService(false);
+        mServiceController.destroy();
+    }
+
+    private void createService(Intent intent) {
+        mServiceController = Robolectric.buildService(MainService.class, intent)
+                .create()
+                .startCommand(0, 1);
+        mBinder = (MainService.MainServiceBinder) mServiceController.get()
+                .onBind(new Intent(mApplication, MainService.class));
+        // Let the activity's bindService connect to the service under test.
+        shadowOf(mApplication).setComponentNameAndServiceForBindService(
+                new ComponentName(mApplication, MainService.class), mBinder);
+    }
+
+    private void waitForSample(LifecycleProfiler profiler) {
+        profiler.runUntil("the playlist is loaded", new LifecycleProfiler.Condition() {
+            @Override
+            public boolean isMet() {
+                return mBinder.getSample() != null;
+            }
+        }, TIMEOUT_MS);
+    }
+
+    private void play(LifecycleProfiler profiler, final boolean playing) {
+        PlaybackEventBus.PLAY_REQUEST.publish(playing);
+        profiler.runUntil(playing ? "playback starts" : "playback pauses",
+                new LifecycleProfiler.Condition() {
+                    @Override
+                    public boolean isMet() {
+                        return mBinder.getExoPlayerInstance().isPlaying() == playing;
+                    }
+                }, TIMEOUT_MS);
+    }
+}
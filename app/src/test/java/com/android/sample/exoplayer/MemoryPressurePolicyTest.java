@@ -0,0 +1,122 @@
+package com.android.sample.exoplayer;
+
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.android.sample.exoplayer.MemoryPressurePolicy.Tier;
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class MemoryPressurePolicyTest {
+
+    private final List<String> mCalls = new ArrayList<>();
+    private int mTrimLevel;
+    private MemoryPressurePolicy mPolicy;
+
+    @Before
+    public void setUp() {
+        mPolicy = new MemoryPressurePolicy(new Handler(Looper.getMainLooper()),
+                new MemoryPressurePolicy.TrimLevelSource() {
+                    @Override
+                    public int getTrimLevel() {
+                        return mTrimLevel;
+                    }
+                });
+        mPolicy.add(Tier.MODERATE, "a", reclaimer("a", 100));
+        mPolicy.add(Tier.MODERATE, "b", reclaimer("b", 20));
+        mPolicy.add(Tier.LOW, "c", reclaimer("c", 3));
+        mPolicy.add(Tier.CRITICAL, "d", reclaimer("d", 0));
+    }
+
+    @Test
+    public void getTier_mapsTrimLevels() {
+        assertEquals(Tier.NORMAL, MemoryPressurePolicy.getTier(0));
+        assertEquals(Tier.MODERATE, MemoryPressurePolicy.getTier(
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(Tier.LOW, MemoryPressurePolicy.getTier(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(Tier.CRITICAL, MemoryPressurePolicy.getTier(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(Tier.CRITICAL, MemoryPressurePolicy.getTier(
+                ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void onTrimMemory_entersTiersInOrder_andCountsBytes() {
+        mPolicy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        mPolicy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+
+        assertEquals(Tier.LOW, mPolicy.getTier());
+        assertEquals(Arrays.asList("reclaim a", "reclaim b", "reclaim c"), mCalls);
+        assertEquals(120, mPolicy.getReclaimedBytes(Tier.MODERATE));
+        assertEquals(3, mPolicy.getReclaimedBytes(Tier.LOW));
+        assertEquals(0, mPolicy.getReclaimedBytes(Tier.CRITICAL));
+    }
+
+    @Test
+    public void targetReclaimer_isNotCountedAsReclaimed() {
+        mPolicy.addTarget(Tier.LOW, "e", reclaimer("e", 4_000));
+        mPolicy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        assertEquals(3, mPolicy.getReclaimedBytes(Tier.LOW));
+        assertEquals(4_000, mPolicy.getTargetBytes(Tier.LOW));
+        assertEquals(0, mPolicy.getTargetBytes(Tier.MODERATE));
+    }
+
+    @Test
+    public void clearedPressure_restoresInReverseOrder() {
+        mPolicy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        mCalls.clear();
+
+        mTrimLevel = ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+        idleFor(MemoryPressurePolicy.RECOVERY_CHECK_INTERVAL_MS);
+        assertEquals(Tier.MODERATE, mPolicy.getTier());
+        assertEquals(Arrays.asList("restore d", "restore c"), mCalls);
+
+        mTrimLevel = 0;
+        idleFor(MemoryPressurePolicy.RECOVERY_CHECK_INTERVAL_MS);
+        assertEquals(Tier.NORMAL, mPolicy.getTier());
+        assertEquals(Arrays.asList("restore d", "restore c", "restore b", "restore a"), mCalls);
+
+        // Polling stops once back to normal, and the next pressure enters the tiers again.
+        assertEquals(Duration.ZERO, shadowOf(Looper.getMainLooper()).getNextScheduledTaskTime());
+        mPolicy.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(240, mPolicy.getReclaimedBytes(Tier.MODERATE));
+    }
+
+    private MemoryPressurePolicy.Reclaimer reclaimer(final String name, final long bytes) {
+        return new MemoryPressurePolicy.Reclaimer() {
+            @Override
+            public long reclaim() {
+                mCalls.add("reclaim " + name);
+                return bytes;
+            }
+
+            @Override
+            public void restore() {
+                mCalls.add("restore " + name);
+            }
+        };
+    }
+
+    private static void idleFor(long ms) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(ms));
+    }
+}
@@ -0,0 +1,125 @@
+package com.android.sample.exoplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.SeekMap;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class Mp3SeekIndexTest {
+
+    // MPEG-1 Layer III, 44.1kHz, joint stereo, at 128 and 320kbps.
+    private static final int HEADER_128 = 0xFFFB9064;
+    private static final int HEADER_320 = 0xFFFBE064;
+    private static final int FRAME_SIZE_128 = 417;
+    private static final int FRAME_SIZE_320 = 1044;
+    private static final long FRAME_US = 1152 * C.MICROS_PER_SECOND / 44100;
+
+    @Test
+    public void build_variableBitrate_indexesFrameOffsets() throws IOException {
+        // Ten seconds at 128kbps followed by ten seconds at 320kbps.
+        int frameCount = (int) (20 * C.MICROS_PER_SECOND / FRAME_US);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 0; i < frameCount; i++) {
+            writeFrame(output, i < frameCount / 2 ? HEADER_128 : HEADER_320);
+        }
+        Mp3SeekIndex index = Mp3SeekIndex.build(new ByteArrayInputStream(output.toByteArray()));
+
+        assertNotNull(index);
+        assertEquals(frameCount * 1152 * C.MICROS_PER_SECOND / 44100, index.getDurationUs());
+        // The first frame in the second half starts after all 128kbps frames.
+        long timeUs = (frameCount / 2) * 1152 * C.MICROS_PER_SECOND / 44100;
+        SeekMap.SeekPoints seekPoints = index.getSeekPoints(timeUs);
+        assertTrue(seekPoints.first.timeUs <= timeUs);
+        assertTrue(timeUs - seekPoints.first.timeUs < C.MICROS_PER_SECOND);
+        int frame = (int) Math.round(seekPoints.first.timeUs / (double) FRAME_US);
+        assertEquals(getOffset(frame, frameCount / 2), seekPoints.first.position);
+        assertEquals(seekPoints.first.timeUs, index.getTimeUs(seekPoints.first.position));
+    }
+
+    @Test
+    public void build_skipsId3TagAndSeekFrame() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // ID3v2 tag with 20 bytes of content.
+        output.write(new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, 0, 20});
+        output.write(new byte[20]);
+        byte[] xingFrame = createFrame(HEADER_128);
+        xingFrame[36] = 'X';
+        xingFrame[37] = 'i';
+        xingFrame[38] = 'n';
+        xingFrame[39] = 'g';
+        output.write(xingFrame);
+        for (int i = 0; i < 10; i++) {
+            writeFrame(output, HEADER_128);
+        }
+        Mp3SeekIndex index = Mp3SeekIndex.build(new ByteArrayInputStream(output.toByteArray()));
+
+        assertNotNull(index);
+        assertEquals(10 * 1152 * C.MICROS_PER_SECOND / 44100, index.getDurationUs());
+        SeekMap.SeekPoints seekPoints = index.getSeekPoints(0);
+        assertEquals(0, seekPoints.first.timeUs);
+        assertEquals(30 + FRAME_SIZE_128, seekPoints.first.position);
+    }
+
+    @Test
+    public void build_notMpegAudio_returnsNull() throws IOException {
+        assertNull(Mp3SeekIndex.build(new ByteArrayInputStream(new byte[64 * 1024])));
+    }
+
+    @Test
+    public void getTimeUs_offsetBetweenEntries_returnsUnset() throws IOException {
+        Mp3SeekIndex index = buildConstantBitrate(100);
+        assertEquals(C.TIME_UNSET, index.getTimeUs(FRAME_SIZE_128));
+    }
+
+    @Test
+    public void writeTo_readFrom_roundTrips() throws IOException {
+        Mp3SeekIndex index = buildConstantBitrate(200);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(output));
+        Mp3SeekIndex read = Mp3SeekIndex.readFrom(
+                new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+
+        assertEquals(index.size(), read.size());
+        assertEquals(index.getDurationUs(), read.getDurationUs());
+        long timeUs = 3 * C.MICROS_PER_SECOND + 1;
+        assertEquals(index.getSeekPoints(timeUs).first, read.getSeekPoints(timeUs).first);
+        assertEquals(index.getSeekPoints(timeUs).second, read.getSeekPoints(timeUs).second);
+    }
+
+    private static Mp3SeekIndex buildConstantBitrate(int frameCount) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int i = 0; i < frameCount; i++) {
+            writeFrame(output, HEADER_128);
+        }
+        return Mp3SeekIndex.build(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    private static long getOffset(int frame, int firstFrame320) {
+        int frames128 = Math.min(frame, firstFrame320);
+        return (long) frames128 * FRAME_SIZE_128 + (long) (frame - frames128) * FRAME_SIZE_320;
+    }
+
+    private static void writeFrame(ByteArrayOutputStream output, int header) throws IOException {
+        output.write(createFrame(header));
+    }
+
+    private static byte[] createFrame(int header) {
+        byte[] frame = new byte[header == HEADER_128 ? FRAME_SIZE_128 : FRAME_SIZE_320];
+        frame[0] = (byte) (header >>> 24);
+        frame[1] = (byte) (header >>> 16);
+        frame[2] = (byte) (header >>> 8);
+        frame[3] = (byte) header;
+        return frame;
+    }
+}
@@ -0,0 +1,150 @@
+package com.android.sample.exoplayer;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.support.v4.media.session.MediaSessionCompat;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.Player;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.android.sample.exoplayer.PlaybackEventBus.SAMPLE;
+import static com.android.sample.exoplayer.PlaybackEventBus.SNAPSHOT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks the batching of {@link PlaybackServer} with a client in the same process, messages are
+ * delivered the same way apart from the parceling.
+ */
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PlaybackServerTest {
+
+    private final List<Message> mReceived = new ArrayList<>();
+    private final Messenger mClient = new Messenger(new Handler(Looper.getMainLooper()) {
+        @Override
+        public void handleMessage(@NonNull Message msg) {
+            mReceived.add(Message.obtain(msg));
+        }
+    });
+    private MediaSessionCompat mSession;
+    private PlaybackServer mServer;
+
+    @Before
+    public void setUp() throws RemoteException {
+        mSession = new MediaSessionCompat(ApplicationProvider.getApplicationContext(), "test");
+        mServer = new PlaybackServer(mSession.getController().getTransportControls());
+        mServer.start();
+        Message register = Message.obtain(null, PlaybackServer.MSG_REGISTER);
+        register.replyTo = mClient;
+        new Messenger(mServer.getBinder()).send(register);
+        shadowOf(Looper.getMainLooper()).idle();
+        mReceived.clear();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+        mSession.release();
+    }
+
+    @Test
+    public void register_sendsCurrentState() throws RemoteException {
+        Sample sample = sample(1);
+        SAMPLE.publish(sample);
+        SNAPSHOT.publish(snapshot(sample, 2_000));
+        Message register = Message.obtain(null, PlaybackServer.MSG_REGISTER);
+        register.replyTo = new Messenger(new Handler(Looper.getMainLooper()));
+        new Messenger(mServer.getBinder()).send(register);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(2, mServer.getClientCount());
+        assertEquals(1, mReceived.size());
+    }
+
+    @Test
+    public void updatesInOneLooperTurn_areSentAsOneMessage() {
+        Sample sample = sample(2);
+        SAMPLE.publish(sample);
+        SNAPSHOT.publish(snapshot(sample, 1_000));
+        SNAPSHOT.publish(snapshot(sample, 3_000));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, mReceived.size());
+        Message message = mReceived.get(0);
+        assertEquals(PlaybackServer.MSG_STATE, message.what);
+        Bundle data = message.getData();
+        data.setClassLoader(Sample.class.getClassLoader());
+        Sample received = data.getParcelable(PlaybackServer.KEY_SAMPLE);
+        assertNotNull(received);
+        assertEquals(2, received.getSampleID());
+        PlaybackSnapshot snapshot = PlaybackSnapshot.readFrom(message, received);
+        assertNotNull(snapshot);
+        assertEquals(3_000, snapshot.getPosition());
+        assertEquals(60_000, snapshot.getDuration());
+        assertEquals(Player.STATE_READY, snapshot.getPlaybackState());
+        assertTrue(snapshot.getPlayWhenReady());
+        assertTrue(snapshot.isPlaying());
+        assertEquals(1.5f, snapshot.getSpeed(), 0);
+        assertEquals(10_000, snapshot.getTimestamp());
+    }
+
+    @Test
+    public void unchangedSample_isNotSentAgain() {
+        Sample sample = sample(3);
+        SAMPLE.publish(sample);
+        shadowOf(Looper.getMainLooper()).idle();
+        SAMPLE.publish(sample);
+        SNAPSHOT.publish(snapshot(sample, 4_000));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(2, mReceived.size());
+        assertNull(PlaybackSnapshot.readFrom(mReceived.get(0), sample));
+        assertFalse(mReceived.get(1).getData().containsKey(PlaybackServer.KEY_SAMPLE));
+        assertNotNull(PlaybackSnapshot.readFrom(mReceived.get(1), sample));
+    }
+
+    @Test
+    public void unregisteredClient_receivesNothing() throws RemoteException {
+        Message unregister = Message.obtain(null, PlaybackServer.MSG_UNREGISTER);
+        unregister.replyTo = mClient;
+        new Messenger(mServer.getBinder()).send(unregister);
+        shadowOf(Looper.getMainLooper()).idle();
+        SNAPSHOT.publish(snapshot(sample(4), 0));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(0, mServer.getClientCount());
+        assertTrue(mReceived.isEmpty());
+    }
+
+    private static Sample sample(int sampleID) {
+        return new Sample(sampleID, "Composer", "Title", "asset:///sample.mp3", "art");
+    }
+
+    private static PlaybackSnapshot snapshot(Sample sample, long position) {
+        return new PlaybackSnapshot(sample, Player.STATE_READY, true, true, position,
+                position + 5_000, 60_000, 1.5f, 10_000);
+    }
+}
@@ -0,0 +1,35 @@
+package com.android.sample.exoplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlaybackSnapshotTest {
+
+    @Test
+    public void getPositionAt_whilePaused_returnsSnapshotPosition() {
+        PlaybackSnapshot snapshot = snapshot(false, 5_000, 60_000, 1f);
+        assertEquals(5_000, snapshot.getPositionAt(11_000));
+    }
+
+    @Test
+    public void getPositionAt_whilePlaying_extrapolatesWithSpeed() {
+        assertEquals(7_000, snapshot(true, 5_000, 60_000, 1f).getPositionAt(3_000));
+        assertEquals(9_000, snapshot(true, 5_000, 60_000, 2f).getPositionAt(3_000));
+    }
+
+    @Test
+    public void getPositionAt_isBoundedByDuration() {
+        assertEquals(6_000, snapshot(true, 5_000, 6_000, 1f).getPositionAt(10_000));
+        assertEquals(15_000, snapshot(true, 5_000, C.TIME_UNSET, 1f).getPositionAt(11_000));
+    }
+
+    private static PlaybackSnapshot snapshot(boolean playing, long position, long duration,
+                                             float speed) {
+        return new PlaybackSnapshot(null, Player.STATE_READY, playing, playing, position,
+                position, duration, speed, 1_000);
+    }
+}
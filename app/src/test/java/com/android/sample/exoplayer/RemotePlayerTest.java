@@ -0,0 +1,168 @@
+package com.android.sample.exoplayer;
+
+import android.os.SystemClock;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which listener callbacks {@link RemotePlayer} derives from consecutive snapshots. The
+ * client is not connected, so commands go nowhere.
+ */
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class RemotePlayerTest {
+
+    private final List<String> mEvents = new ArrayList<>();
+    private RemotePlayer mPlayer;
+
+    @Before
+    public void setUp() {
+        mPlayer = new RemotePlayer(new PlaybackClient(ApplicationProvider.getApplicationContext()));
+        mPlayer.addListener(new Player.EventListener() {
+            @Override
+            public void onTimelineChanged(Timeline timeline, int reason) {
+                mEvents.add("timeline");
+            }
+
+            @Override
+            public void onTracksChanged(TrackGroupArray trackGroups,
+                                        TrackSelectionArray trackSelections) {
+                mEvents.add("tracks");
+            }
+
+            @Override
+            public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+                mEvents.add("state");
+            }
+
+            @Override
+            public void onIsPlayingChanged(boolean isPlaying) {
+                mEvents.add("playing=" + isPlaying);
+            }
+
+            @Override
+            public void onPositionDiscontinuity(int reason) {
+                mEvents.add(reason == Player.DISCONTINUITY_REASON_SEEK ? "seek" : "transition");
+            }
+
+            @Override
+            public void onSeekProcessed() {
+                mEvents.add("seekProcessed");
+            }
+        });
+    }
+
+    @Test
+    public void firstSnapshot_changesTimelineTracksAndState() {
+        Sample sample = sample(1);
+        mPlayer.setSnapshot(snapshot(sample, true, 0));
+
+        assertEquals(Arrays.asList("timeline", "tracks", "transition", "state", "playing=true"),
+                mEvents);
+        assertEquals(1, mPlayer.getCurrentTimeline().getWindowCount());
+        assertSame(sample, mPlayer.getCurrentTag());
+        assertEquals(60_000, mPlayer.getDuration());
+        assertTrue(mPlayer.isPlaying());
+    }
+
+    @Test
+    public void snapshotFollowingPlayback_changesNothing() {
+        Sample sample = sample(1);
+        mPlayer.setSnapshot(snapshot(sample, true, 0));
+        mEvents.clear();
+        SystemClock.setCurrentTimeMillis(SystemClock.uptimeMillis() + 1_000);
+        mPlayer.setSnapshot(snapshot(sample, true, 1_100));
+
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void positionJump_isSeekDiscontinuity() {
+        Sample sample = sample(1);
+        mPlayer.setSnapshot(snapshot(sample, true, 0));
+        mEvents.clear();
+        mPlayer.setSnapshot(snapshot(sample, true, 30_000));
+
+        assertEquals(Arrays.asList("seek"), mEvents);
+    }
+
+    @Test
+    public void otherSample_isPeriodTransition() {
+        mPlayer.setSnapshot(snapshot(sample(1), true, 0));
+        mEvents.clear();
+        mPlayer.setSnapshot(snapshot(sample(2), true, 0));
+
+        assertEquals(Arrays.asList("timeline", "tracks", "transition"), mEvents);
+        assertEquals(2, ((Sample) mPlayer.getCurrentTag()).getSampleID());
+    }
+
+    @Test
+    public void pause_changesStateAndIsPlaying() {
+        Sample sample = sample(1);
+        mPlayer.setSnapshot(snapshot(sample, true, 0));
+        mEvents.clear();
+        mPlayer.setSnapshot(snapshot(sample, false, 0));
+
+        assertEquals(Arrays.asList("state", "playing=false"), mEvents);
+        assertFalse(mPlayer.isPlaying());
+    }
+
+    @Test
+    public void seekTo_goesThroughSnapshot() {
+        Sample sample = sample(1);
+        mPlayer.setSnapshot(snapshot(sample, false, 0));
+        mEvents.clear();
+        mPlayer.seekTo(100);
+
+        assertEquals(Arrays.asList("seek", "seekProcessed"), mEvents);
+        assertEquals(100, mPlayer.getCurrentPosition());
+        // A snapshot confirming the seek is not another discontinuity.
+        mEvents.clear();
+        mPlayer.setSnapshot(snapshot(sample, false, 100));
+
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void goneAway_emptiesTimeline() {
+        mPlayer.setSnapshot(snapshot(sample(1), true, 0));
+        mEvents.clear();
+        mPlayer.setSnapshot(null);
+
+        assertEquals(Arrays.asList("timeline", "tracks", "transition", "state", "playing=false"),
+                mEvents);
+        assertTrue(mPlayer.getCurrentTimeline().isEmpty());
+        assertEquals(Player.STATE_IDLE, mPlayer.getPlaybackState());
+    }
+
+    private static Sample sample(int sampleID) {
+        return new Sample(sampleID, "Composer", "Title", "asset:///sample.mp3", "art");
+    }
+
+    private static PlaybackSnapshot snapshot(Sample sample, boolean playing, long position) {
+        return new PlaybackSnapshot(sample, Player.STATE_READY, playing, playing, position,
+                position + 5_000, 60_000, 1f, SystemClock.elapsedRealtime());
+    }
+}
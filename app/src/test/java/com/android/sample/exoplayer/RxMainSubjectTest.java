@@ -0,0 +1,86 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+
+public class RxMainSubjectTest {
+
+    @Test
+    public void subscribeOnScheduler_conflatesPendingValues() {
+        RxMainSubject<Integer> subject = new RxMainSubject<>("test", false);
+        TestScheduler scheduler = new TestScheduler();
+        List<Integer> received = new ArrayList<>();
+        subject.subscribe(collect(received), scheduler);
+
+        subject.publish(1);
+        subject.publish(2);
+        subject.publish(3);
+        scheduler.triggerActions();
+        subject.publish(4);
+        scheduler.triggerActions();
+
+        assertEquals(Arrays.asList(3, 4), received);
+        assertEquals(4, subject.getPublishedCount());
+        assertEquals(2, subject.getConflatedCount());
+        assertEquals(2, subject.getDeliveredCount());
+    }
+
+    @Test
+    public void replay_deliversLatestValueToNewSubscriber() {
+        RxMainSubject<Integer> subject = new RxMainSubject<>("test", true);
+        subject.publish(1);
+        subject.publish(2);
+
+        List<Integer> received = new ArrayList<>();
+        subject.subscribe(collect(received));
+
+        assertEquals(Arrays.asList(2), received);
+        assertEquals(0, subject.getDroppedCount());
+    }
+
+    @Test
+    public void clear_stopsReplay_andKeepsSubscribers() {
+        RxMainSubject<Integer> subject = new RxMainSubject<>("test", true);
+        List<Integer> subscribed = new ArrayList<>();
+        subject.subscribe(collect(subscribed));
+        subject.publish(1);
+        subject.clear();
+
+        List<Integer> received = new ArrayList<>();
+        subject.subscribe(collect(received));
+        assertEquals(0, received.size());
+
+        subject.publish(2);
+        assertEquals(Arrays.asList(2), received);
+        assertEquals(Arrays.asList(1, 2), subscribed);
+    }
+
+    @Test
+    public void publish_withoutSubscribers_isDropped() {
+        RxMainSubject<Integer> subject = new RxMainSubject<>("test", false);
+        subject.publish(1);
+
+        List<Integer> received = new ArrayList<>();
+        subject.subscribe(collect(received));
+
+        assertEquals(0, received.size());
+        assertEquals(1, subject.getDroppedCount());
+    }
+
+    private static Consumer<Integer> collect(final List<Integer> received) {
+        return new Consumer<Integer>() {
+            @Override
+            public void accept(Integer value) {
+                received.add(value);
+            }
+        };
+    }
+}
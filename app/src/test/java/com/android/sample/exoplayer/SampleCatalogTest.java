@@ -0,0 +1,58 @@
+package com.android.sample.exoplayer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 28)
+public class SampleCatalogTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ENTRY = "{\"name\":\"Title\",\"id\":1,"
+            + "\"uri\":\"asset:///sample.mp3\",\"composer\":\"Composer\",\"albumArtID\":\"art\"}";
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void compile_wellFormed_isStampedWithSource() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        long stamp = compile("[" + ENTRY + "]", file);
+
+        assertEquals(42, stamp);
+        CatalogFile catalogFile = CatalogFile.open(file, 42);
+        assertNotNull(catalogFile);
+        assertEquals(1, catalogFile.size());
+    }
+
+    @Test
+    public void compile_malformed_isNotTakenAsUpToDate() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        long stamp = compile("[" + ENTRY + ",{\"id\":", file);
+
+        assertEquals(SampleCatalog.PARTIAL_SOURCE_STAMP, stamp);
+        assertNull(CatalogFile.open(file, 42));
+        // The samples read before the error are still usable until the next load.
+        CatalogFile catalogFile = CatalogFile.open(file, stamp);
+        assertNotNull(catalogFile);
+        assertEquals(1, catalogFile.size());
+    }
+
+    private static long compile(String json, File file) throws IOException {
+        return SampleCatalog.compile(new ByteArrayInputStream(json.getBytes(UTF_8)), file, 42);
+    }
+}
@@ -0,0 +1,37 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SampleIdIndexTest {
+
+    @Test
+    public void get_returnsStoredPositions() {
+        SampleIdIndex index = new SampleIdIndex(4);
+        for (int i = 0; i < 10_000; i++) {
+            index.put(i * 7 - 500, i);
+        }
+        assertEquals(10_000, index.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, index.get(i * 7 - 500));
+        }
+    }
+
+    @Test
+    public void get_unknownID_returnsNotFound() {
+        SampleIdIndex index = new SampleIdIndex(2);
+        index.put(3, 0);
+        assertEquals(SampleIdIndex.NOT_FOUND, index.get(4));
+        assertEquals(SampleIdIndex.NOT_FOUND, index.get(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void put_existingID_replacesPosition() {
+        SampleIdIndex index = new SampleIdIndex(2);
+        index.put(3, 0);
+        index.put(3, 5);
+        assertEquals(1, index.size());
+        assertEquals(5, index.get(3));
+    }
+}
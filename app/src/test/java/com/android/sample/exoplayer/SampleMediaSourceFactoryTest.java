@@ -0,0 +1,52 @@
+package com.android.sample.exoplayer;
+
+import android.util.JsonReader;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(AndroidJUnit4.class)
+@Config(sdk = 28)
+public class SampleMediaSourceFactoryTest {
+
+    @Test
+    public void createMediaSource_tagsEverySourceWithItsSample() {
+        DataSource.Factory dataSourceFactory = new DefaultDataSourceFactory(
+                ApplicationProvider.getApplicationContext(), "test");
+        // Remote samples are not indexed, so nothing runs in the background.
+        SampleMediaSourceFactory factory = new SampleMediaSourceFactory(dataSourceFactory,
+                new Mp3SeekIndexStore(new File("unused"), dataSourceFactory));
+        Sample first = sample(1);
+        Sample second = sample(2);
+        Sample third = sample(3);
+
+        MediaSource firstSource = factory.createMediaSource(first);
+        MediaSource secondSource = factory.createMediaSource(second);
+        MediaSource thirdSource = factory.createMediaSource(third);
+
+        assertSame(first, firstSource.getTag());
+        assertSame(second, secondSource.getTag());
+        assertSame(third, thirdSource.getTag());
+        assertNotSame(firstSource, secondSource);
+    }
+
+    private static Sample sample(int sampleID) {
+        return Sample.readEntry(new JsonReader(new StringReader("{\"id\": " + sampleID
+                + ", \"composer\": \"Composer\", \"title\": \"Title\","
+                + " \"uri\": \"https://example.com/" + sampleID + ".mp3\"}")));
+    }
+}
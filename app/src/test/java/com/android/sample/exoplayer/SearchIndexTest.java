@@ -0,0 +1,51 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SearchIndexTest {
+
+    private final SearchIndex mIndex = new SearchIndex.Builder()
+            .add(0, "Toccata and Fugue in D Minor", "Johann Sebastian Bach")
+            .add(1, "Hungarian Dance No. 5", "Johannes Brahms")
+            .add(2, "String Quartet No. 14", "Ludwig van Beethoven")
+            .add(3, "Slavonic Dance", "Anton\u00edn Dvo\u0159\u00e1k")
+            .add(4, "Brahms Lullaby", "Traditional")
+            .build();
+
+    @Test
+    public void search_matchesWordPrefixes() {
+        assertArrayEquals(new int[]{1}, mIndex.search("hung", 10));
+        assertArrayEquals(new int[]{0}, mIndex.search("Toccata fug", 10));
+    }
+
+    @Test
+    public void search_requiresEveryTerm() {
+        assertArrayEquals(new int[]{1}, mIndex.search("dance brahms", 10));
+        assertEquals(0, mIndex.search("dance bach", 10).length);
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        assertArrayEquals(new int[]{3}, mIndex.search("DVORAK", 10));
+    }
+
+    @Test
+    public void search_ranksTitlesAndExactWordsFirst() {
+        // An exact title word beats an exact composer word.
+        assertArrayEquals(new int[]{4, 1}, mIndex.search("brahms", 10));
+        // An exact word beats a prefix.
+        assertArrayEquals(new int[]{0, 1}, mIndex.search("johann", 10));
+        // Ties keep catalog order.
+        assertArrayEquals(new int[]{1, 3}, mIndex.search("dance", 10));
+        assertArrayEquals(new int[]{4}, mIndex.search("brahms", 1));
+    }
+
+    @Test
+    public void search_emptyQuery_returnsNothing() {
+        assertEquals(0, mIndex.search("", 10).length);
+        assertEquals(0, mIndex.search(" ,.", 10).length);
+    }
+}
@@ -0,0 +1,67 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SessionSnapshotTest {
+
+    @Test
+    public void writeTo_readFrom_roundTrips() throws IOException {
+        List<Sample> samples = Arrays.asList(
+                new Sample(11, "Bach", "Toccata", "asset:///toccata_fugue.mp3", "bach"),
+                new Sample(12, null, "Untitled", "https://example.com/12.mp3", null));
+        SessionSnapshot snapshot = new SessionSnapshot(1234, 40, samples, 41, 56_789, true,
+                BufferingProfile.AGGRESSIVE);
+
+        SessionSnapshot read = roundTrip(snapshot);
+
+        assertEquals(1234, read.getRealtimeMs());
+        assertEquals(40, read.getFirstIndex());
+        assertEquals(41, read.getCurrentIndex());
+        assertEquals(56_789, read.getPositionMs());
+        assertEquals(true, read.getPlayWhenReady());
+        assertEquals(BufferingProfile.AGGRESSIVE, read.getBufferingProfile());
+        assertEquals(2, read.getSamples().size());
+        Sample first = read.getSamples().get(0);
+        assertEquals(11, first.getSampleID());
+        assertEquals("Bach", first.getComposer());
+        assertEquals("Toccata", first.getTitle());
+        assertEquals("asset:///toccata_fugue.mp3", first.getUri());
+        assertEquals("bach", first.getAlbumArtID());
+        Sample second = read.getSamples().get(1);
+        assertNull(second.getComposer());
+        assertNull(second.getAlbumArtID());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_currentIndexOutsideWindow_throws() {
+        new SessionSnapshot(0, 5, Arrays.asList(new Sample(1, null, null, null, null)), 6, 0,
+                false, BufferingProfile.BALANCED);
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_truncated_throws() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new SessionSnapshot(0, 0, Arrays.asList(new Sample(1, null, null, null, null)), 0, 0,
+                false, BufferingProfile.BALANCED).writeTo(new DataOutputStream(output));
+        byte[] data = Arrays.copyOf(output.toByteArray(), output.size() - 4);
+        SessionSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static SessionSnapshot roundTrip(SessionSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(output));
+        return SessionSnapshot.readFrom(
+                new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+    }
+}
@@ -0,0 +1,86 @@
+package com.android.sample.exoplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class WaveformFileTest {
+
+    private static final int SLOT_COUNT = 4;
+
+    @Rule
+    public final TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read_emptyFile_returnsNull() throws IOException {
+        WaveformFile file = new WaveformFile(mTemporaryFolder.newFile(), SLOT_COUNT);
+        assertNull(file.read(0, 0));
+    }
+
+    @Test
+    public void read_returnsWrittenWaveformAfterReopening() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        Waveform waveform = createWaveform(7);
+        new WaveformFile(file, SLOT_COUNT).write(3, 33, waveform);
+
+        Waveform read = new WaveformFile(file, SLOT_COUNT).read(3, 33);
+        assertNotNull(read);
+        assertArrayEquals(waveform.getPeaks(), read.getPeaks());
+        assertArrayEquals(waveform.getRms(), read.getRms());
+    }
+
+    @Test
+    public void read_changedUri_returnsNull() throws IOException {
+        WaveformFile file = new WaveformFile(mTemporaryFolder.newFile(), SLOT_COUNT);
+        file.write(3, 33, createWaveform(7));
+        assertNull(file.read(3, 34));
+    }
+
+    @Test
+    public void write_sameSlot_replacesWaveform() throws IOException {
+        WaveformFile file = new WaveformFile(mTemporaryFolder.newFile(), SLOT_COUNT);
+        file.write(1, 11, createWaveform(1));
+        file.write(1 + SLOT_COUNT, 12, createWaveform(2));
+
+        assertNull(file.read(1, 11));
+        assertArrayEquals(createWaveform(2).getPeaks(), file.read(1 + SLOT_COUNT, 12).getPeaks());
+    }
+
+    @Test
+    public void read_corruptedPayload_returnsNull() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        new WaveformFile(file, SLOT_COUNT).write(0, 10, createWaveform(5));
+
+        // Slot 0 starts after the 16-byte file header, damage its first peak.
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(16 + 12);
+            randomAccessFile.write(0xFF);
+        }
+        assertNull(new WaveformFile(file, SLOT_COUNT).read(0, 10));
+    }
+
+    @Test
+    public void read_differentSlotCount_clearsFile() throws IOException {
+        File file = mTemporaryFolder.newFile();
+        new WaveformFile(file, SLOT_COUNT).write(2, 22, createWaveform(3));
+        assertNull(new WaveformFile(file, SLOT_COUNT * 2).read(2, 22));
+    }
+
+    private static Waveform createWaveform(int seed) {
+        byte[] peaks = new byte[Waveform.BUCKET_COUNT];
+        byte[] rms = new byte[Waveform.BUCKET_COUNT];
+        for (int i = 0; i < Waveform.BUCKET_COUNT; i++) {
+            peaks[i] = (byte) (i * seed);
+            rms[i] = (byte) (i * seed / 2);
+        }
+        return new Waveform(peaks, rms);
+    }
+}
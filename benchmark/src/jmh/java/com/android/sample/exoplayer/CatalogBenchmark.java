@@ -0,0 +1,152 @@
+package com.android.sample.exoplayer;
+
+import android.util.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the catalog: parsing the JSON asset entry by entry with {@link Sample#readEntry} as the
+ * app used to on every start, compiling it into a {@link CatalogFile} as it does on first start,
+ * and mapping the compiled file as it does on every later start.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CatalogBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long SOURCE_STAMP = 1;
+
+    @Param({"100", "10000", "100000"})
+    public int count;
+
+    private byte[] mJson;
+    private File mDirectory;
+    private File mCompiledFile;
+    private CatalogFile mCatalogFile;
+    private int[] mLookupIDs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mJson = SyntheticCatalog.toJson(count).getBytes(UTF_8);
+        mDirectory = File.createTempFile("catalog", "");
+        if (!mDirectory.delete() || !mDirectory.mkdir()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+        mCompiledFile = new File(mDirectory, "catalog.bin");
+        compile(mCompiledFile);
+        mCatalogFile = CatalogFile.open(mCompiledFile, SOURCE_STAMP);
+        Random random = new Random(count);
+        mLookupIDs = new int[1024];
+        for (int i = 0; i < mLookupIDs.length; i++) {
+            mLookupIDs[i] = random.nextInt(count);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * Parses every entry into a sample object.
+     */
+    @Benchmark
+    public int parseJson() throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        JsonReader reader = newReader();
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                samples.add(Sample.readEntry(reader));
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        return samples.size();
+    }
+
+    /**
+     * Parses every entry and writes the compiled file, the cost of a first start.
+     */
+    @Benchmark
+    public void compileCatalogFile() throws IOException {
+        compile(new File(mDirectory, "compiled.bin"));
+    }
+
+    /**
+     * Maps the compiled file and validates its header, the cost of a later start.
+     */
+    @Benchmark
+    public int openCatalogFile() throws IOException {
+        return CatalogFile.open(mCompiledFile, SOURCE_STAMP).size();
+    }
+
+    /**
+     * Materializes every sample of the mapped file, comparable to {@link #parseJson()}.
+     */
+    @Benchmark
+    public void readCatalogFile(Blackhole blackhole) {
+        for (int i = 0; i < mCatalogFile.size(); i++) {
+            blackhole.consume(mCatalogFile.getSample(i).getTitle());
+        }
+    }
+
+    /**
+     * Looks up and materializes samples by ID in the mapped file.
+     */
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public void lookupByID(Blackhole blackhole) {
+        for (int sampleID : mLookupIDs) {
+            blackhole.consume(mCatalogFile.getSample(mCatalogFile.indexOf(sampleID)).getUri());
+        }
+    }
+
+    private JsonReader newReader() {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(mJson), UTF_8));
+    }
+
+    private void compile(File file) throws IOException {
+        CatalogFile.Writer writer = new CatalogFile.Writer();
+        JsonReader reader = newReader();
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                writer.add(Sample.readEntry(reader));
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        writer.write(file, SOURCE_STAMP);
+    }
+}
@@ -0,0 +1,91 @@
+package com.android.sample.exoplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Throughput of an {@link RxMainSubject} channel: publishing to subscribers that receive every
+ * value on the publishing thread, publishing to subscribers on another thread that conflate
+ * values, and subscribing to a replaying channel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventBusBenchmark {
+
+    @Param({"0", "1", "4"})
+    public int subscribers;
+
+    @Param({"false", "true"})
+    public boolean replay;
+
+    private final List<Disposable> mDisposables = new ArrayList<>();
+    private RxMainSubject<Long> mSynchronousChannel;
+    private RxMainSubject<Long> mScheduledChannel;
+    private RxMainSubject<Long> mReplayChannel;
+    // Written by every subscriber, so deliveries can't be optimized away.
+    private Long mReceived;
+    private long mValue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Consumer<Long> consumer = new Consumer<Long>() {
+            @Override
+            public void accept(Long value) {
+                mReceived = value;
+            }
+        };
+        mSynchronousChannel = new RxMainSubject<>("synchronous", replay);
+        mScheduledChannel = new RxMainSubject<>("scheduled", replay);
+        for (int i = 0; i < subscribers; i++) {
+            mDisposables.add(mSynchronousChannel.subscribe(consumer));
+            mDisposables.add(mScheduledChannel.subscribe(consumer, Schedulers.single()));
+        }
+        mReplayChannel = new RxMainSubject<>("replay", true);
+        mReplayChannel.publish(0L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Disposable disposable : mDisposables) {
+            disposable.dispose();
+        }
+        mDisposables.clear();
+    }
+
+    @Benchmark
+    public void publishSynchronous() {
+        mSynchronousChannel.publish(mValue++);
+    }
+
+    @Benchmark
+    public void publishScheduled() {
+        mScheduledChannel.publish(mValue++);
+    }
+
+    @Benchmark
+    public void subscribeReplayed() {
+        mReplayChannel.subscribe(new Consumer<Long>() {
+            @Override
+            public void accept(Long value) {
+                mReceived = value;
+            }
+        }).dispose();
+    }
+}
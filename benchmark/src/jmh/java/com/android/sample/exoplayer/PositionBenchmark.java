@@ -0,0 +1,75 @@
+package com.android.sample.exoplayer;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persisting the playback position: the Gson round trip {@link MainStorage} performs for the
+ * legacy position, with a new {@link Gson} per call as it does and with a shared one, against a
+ * synchronous write and read of the {@link CheckpointStore}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PositionBenchmark {
+
+    private final Gson mGson = new Gson();
+    private MainPosition mPosition;
+    private String mJson;
+    private File mCheckpointFile;
+    private CheckpointStore mCheckpointStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mPosition = new MainPosition(42, 123_456L, 4_711, System.currentTimeMillis());
+        mJson = mGson.toJson(mPosition);
+        mCheckpointFile = File.createTempFile("checkpoint", ".bin");
+        mCheckpointStore = new CheckpointStore(mCheckpointFile, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mCheckpointFile.delete();
+    }
+
+    @Benchmark
+    public MainPosition gsonRoundTrip() {
+        String json = new Gson().toJson(mPosition);
+        return new Gson().fromJson(json, MainPosition.class);
+    }
+
+    @Benchmark
+    public MainPosition gsonRoundTripSharedInstance() {
+        return mGson.fromJson(mGson.toJson(mPosition), MainPosition.class);
+    }
+
+    @Benchmark
+    public MainPosition gsonRead() {
+        return new Gson().fromJson(mJson, MainPosition.class);
+    }
+
+    @Benchmark
+    public MainPosition checkpointRoundTrip() {
+        mCheckpointStore.write(mPosition);
+        return mCheckpointStore.read();
+    }
+}
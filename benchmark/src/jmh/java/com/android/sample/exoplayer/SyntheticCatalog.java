@@ -0,0 +1,74 @@
+package com.android.sample.exoplayer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates catalogs in the {@code *.exolist.json} format with any number of entries. Titles and
+ * composers are drawn from small vocabularies with a fixed seed, so generated catalogs are
+ * reproducible and have realistic string lengths and repetition.
+ */
+public final class SyntheticCatalog {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long SEED = 0x5eedL;
+    private static final String[] COMPOSERS = {"Johann Sebastian Bach", "Ludwig van Beethoven",
+            "Wolfgang Amadeus Mozart", "Fr\u00e9d\u00e9ric Chopin", "Johannes Brahms",
+            "Antonin Dvo\u0159\u00e1k", "Pyotr Ilyich Tchaikovsky", "Claude Debussy",
+            "Franz Schubert", "Antonio Vivaldi", "George Frideric Handel", "Edvard Grieg"};
+    private static final String[] FORMS = {"Sonata", "Nocturne", "Prelude", "Fugue", "Etude",
+            "Symphony", "Concerto", "Rondo", "Waltz", "Mazurka", "Hungarian Dance", "Toccata",
+            "String Quartet", "Impromptu", "Ballade", "Partita"};
+    private static final String[] KEYS = {"C major", "C minor", "D major", "D minor", "E-flat major",
+            "E minor", "F major", "F minor", "G major", "G minor", "A major", "A minor",
+            "B-flat major", "B minor"};
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * @param count The number of entries.
+     * @return The catalog as JSON, formatted like the bundled asset.
+     */
+    public static String toJson(int count) {
+        Random random = new Random(SEED);
+        StringBuilder builder = new StringBuilder(count * 200);
+        builder.append("[\n");
+        for (int i = 0; i < count; i++) {
+            String composer = COMPOSERS[random.nextInt(COMPOSERS.length)];
+            String title = FORMS[random.nextInt(FORMS.length)] + " No. " + (1 + random.nextInt(32))
+                    + " in " + KEYS[random.nextInt(KEYS.length)];
+            builder.append("  {\n")
+                    .append("    \"name\": \"").append(title).append("\",\n")
+                    .append("    \"id\": ").append(i).append(",\n")
+                    .append("    \"uri\": \"asset:///sample_").append(i).append(".mp3\",\n")
+                    .append("    \"composer\": \"").append(composer).append("\",\n")
+                    .append("    \"albumArtID\": \"")
+                    .append(composer.substring(composer.lastIndexOf(' ') + 1).toLowerCase())
+                    .append("\"\n")
+                    .append(i == count - 1 ? "  }\n" : "  },\n");
+        }
+        return builder.append("]\n").toString();
+    }
+
+    /**
+     * Writes a generated catalog, for example to try a large catalog in the app's assets.
+     * Usage: {@code SyntheticCatalog <count> <file>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SyntheticCatalog <count> <file>");
+            System.exit(1);
+        }
+        OutputStream outputStream = new FileOutputStream(new File(args[1]));
+        try {
+            outputStream.write(toJson(Integer.parseInt(args[0])).getBytes(UTF_8));
+        } finally {
+            outputStream.close();
+        }
+    }
+}
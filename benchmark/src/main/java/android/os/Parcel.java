@@ -0,0 +1,34 @@
+package android.os;
+
+/**
+ * JVM stand-in for the framework class. Parceling is not benchmarked, so every method throws.
+ */
+public final class Parcel {
+
+    private Parcel() {
+    }
+
+    public void writeInt(int val) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void writeLong(long val) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void writeString(String val) {
+        throw new UnsupportedOperationException();
+    }
+
+    public int readInt() {
+        throw new UnsupportedOperationException();
+    }
+
+    public long readLong() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String readString() {
+        throw new UnsupportedOperationException();
+    }
+}
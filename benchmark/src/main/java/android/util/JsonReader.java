@@ -0,0 +1,59 @@
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * JVM stand-in for the framework class. The framework reader and Gson's streaming reader share
+ * their implementation, so this delegates to the latter.
+ */
+public final class JsonReader implements Closeable {
+
+    private final com.google.gson.stream.JsonReader mReader;
+
+    public JsonReader(Reader in) {
+        mReader = new com.google.gson.stream.JsonReader(in);
+    }
+
+    public void beginArray() throws IOException {
+        mReader.beginArray();
+    }
+
+    public void endArray() throws IOException {
+        mReader.endArray();
+    }
+
+    public void beginObject() throws IOException {
+        mReader.beginObject();
+    }
+
+    public void endObject() throws IOException {
+        mReader.endObject();
+    }
+
+    public boolean hasNext() throws IOException {
+        return mReader.hasNext();
+    }
+
+    public String nextName() throws IOException {
+        return mReader.nextName();
+    }
+
+    public String nextString() throws IOException {
+        return mReader.nextString();
+    }
+
+    public int nextInt() throws IOException {
+        return mReader.nextInt();
+    }
+
+    public void skipValue() throws IOException {
+        mReader.skipValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
@@ -0,0 +1,16 @@
+package android.util;
+
+/**
+ * JVM stand-in for the framework class, printing to standard error.
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        System.err.println(tag + ": " + msg);
+        tr.printStackTrace();
+        return 0;
+    }
+}